@@ -0,0 +1,197 @@
+/*-
+ * =LICENSE=
+ * ORAS Java SDK
+ * ===
+ * Copyright (C) 2024 - 2026 ORAS
+ * ===
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =LICENSEEND=
+ */
+
+package land.oras;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Source of chunks for a chunked upload. Chunks are returned as buffers over reusable or mapped memory,
+ * so no per-chunk copy is made. A returned buffer is only valid until the next call to {@link #next(long, int)}.
+ * Closing the source does not close the underlying stream or channel.
+ */
+@NullMarked
+abstract sealed class ChunkSource implements AutoCloseable {
+
+    /**
+     * Get the chunk starting at the given offset
+     * @param offset The offset of the chunk in the blob
+     * @param length The maximum length of the chunk
+     * @return The chunk, empty at end of data
+     * @throws IOException if the source cannot be read
+     */
+    abstract ByteBuffer next(long offset, int length) throws IOException;
+
+    @Override
+    public void close() {
+        // Nothing to release by default
+    }
+
+    /**
+     * Chunks read sequentially from a stream into a single reusable buffer
+     * @param stream The stream positioned at the first chunk
+     * @param chunkSize The chunk size
+     * @return The chunk source
+     */
+    static ChunkSource of(InputStream stream, long chunkSize) {
+        return new StreamChunkSource(stream, (int) Math.min(chunkSize, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Chunks mapped from a file. The region following the returned chunk is mapped and paged in
+     * in the background so disk reads overlap with the upload of the current chunk.
+     * @param channel The file channel
+     * @param executor The executor paging in the next region
+     * @return The chunk source
+     */
+    static ChunkSource of(FileChannel channel, Executor executor) {
+        return new MappedChunkSource(channel, executor);
+    }
+
+    private static final class StreamChunkSource extends ChunkSource {
+
+        private final InputStream stream;
+        private final byte[] buffer;
+
+        private StreamChunkSource(InputStream stream, int chunkSize) {
+            this.stream = stream;
+            this.buffer = new byte[chunkSize];
+        }
+
+        @Override
+        ByteBuffer next(long offset, int length) throws IOException {
+            int read = stream.readNBytes(buffer, 0, Math.min(length, buffer.length));
+            return ByteBuffer.wrap(buffer, 0, read);
+        }
+    }
+
+    private static final class MappedChunkSource extends ChunkSource {
+
+        private final FileChannel channel;
+        private final Executor executor;
+        private @Nullable MappedByteBuffer prefetched;
+        private long prefetchedOffset = -1;
+        private @Nullable Prefetch prefetch;
+
+        private MappedChunkSource(FileChannel channel, Executor executor) {
+            this.channel = channel;
+            this.executor = executor;
+        }
+
+        @Override
+        ByteBuffer next(long offset, int length) throws IOException {
+            long size = channel.size();
+            MappedByteBuffer chunk = prefetched;
+            if (chunk == null || prefetchedOffset != offset || chunk.capacity() != clamp(offset, length, size)) {
+                chunk = map(offset, length, size);
+            }
+            // Page in the next region while this chunk is being sent
+            long nextOffset = offset + chunk.capacity();
+            if (nextOffset < size) {
+                MappedByteBuffer next = map(nextOffset, length, size);
+                cancelPrefetch();
+                prefetch = new Prefetch(next);
+                try {
+                    executor.execute(prefetch);
+                } catch (RejectedExecutionException e) {
+                    prefetch.cancel();
+                }
+                prefetched = next;
+                prefetchedOffset = nextOffset;
+            } else {
+                prefetched = null;
+                prefetchedOffset = -1;
+            }
+            return chunk;
+        }
+
+        /**
+         * Wait for a page-in already running, a pending one is cancelled
+         */
+        @Override
+        public void close() {
+            Prefetch running = prefetch;
+            prefetch = null;
+            if (running != null) {
+                running.cancel();
+                try {
+                    running.done.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        private void cancelPrefetch() {
+            if (prefetch != null) {
+                prefetch.cancel();
+            }
+        }
+
+        private MappedByteBuffer map(long offset, int length, long size) throws IOException {
+            return channel.map(FileChannel.MapMode.READ_ONLY, offset, clamp(offset, length, size));
+        }
+
+        private static long clamp(long offset, int length, long size) {
+            return Math.max(0, Math.min(length, size - offset));
+        }
+    }
+
+    /**
+     * Page-in of a mapped region, skipped when cancelled before it starts
+     */
+    private static final class Prefetch implements Runnable {
+
+        private final MappedByteBuffer region;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        private Prefetch(MappedByteBuffer region) {
+            this.region = region;
+        }
+
+        @Override
+        public void run() {
+            if (claimed.compareAndSet(false, true)) {
+                try {
+                    region.load();
+                } finally {
+                    done.countDown();
+                }
+            }
+        }
+
+        private void cancel() {
+            if (claimed.compareAndSet(false, true)) {
+                done.countDown();
+            }
+        }
+    }
+}
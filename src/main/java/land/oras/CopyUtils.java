@@ -20,6 +20,7 @@ package land.oras;
  * =LICENSEEND=
  */
 
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
@@ -135,55 +136,171 @@ public final class CopyUtils {
     }
 
     /**
-     * Copy all layers for a given reference and content type from source to target.
+     * Copy the layers and the config of a manifest from source to target. The existence of every blob is first
+     * checked concurrently on the target, then only the missing blobs are copied, largest first.
+     * @param manifest The manifest
      * @param source The source OCI
      * @param sourceRef The source reference
      * @param target The target OCI
      * @param targetRef The target reference
-     * @param contentType The content type (manifest or index media type)
      * @param <SourceRefType> The source reference type
      * @param <TargetRefType> The target reference type
      */
-    @SuppressWarnings("unchecked")
     private static <
                     SourceRefType extends Ref<@NonNull SourceRefType>,
                     TargetRefType extends Ref<@NonNull TargetRefType>>
-            void copyLayers(
+            void copyBlobs(
+                    Manifest manifest,
                     OCI<SourceRefType> source,
                     SourceRefType sourceRef,
                     OCI<TargetRefType> target,
-                    TargetRefType targetRef,
-                    String contentType) {
-        CompletableFuture.allOf(source.collectLayers(sourceRef, contentType, true).stream()
-                        .map(layer -> {
-                            Objects.requireNonNull(layer.getDigest(), "Layer digest is required for streaming copy");
-                            Objects.requireNonNull(layer.getSize(), "Layer size is required for streaming copy");
-                            return CompletableFuture.runAsync(
-                                    () -> {
-                                        if (canMount(source, sourceRef, target, targetRef)) {
-                                            boolean result = target.mountBlob(
-                                                    (TargetRefType) sourceRef.withDigest(layer.getDigest()),
-                                                    targetRef.withDigest(layer.getDigest()));
-                                            if (result) {
-                                                LOG.debug(
-                                                        "Copied layer (mounted from {}) {}",
-                                                        sourceRef.getRepository(),
-                                                        layer.getDigest());
-                                                return;
-                                            }
-                                        }
-                                        target.pushBlob(
-                                                targetRef.withDigest(layer.getDigest()),
-                                                layer.getSize(),
-                                                () -> source.fetchBlob(sourceRef.withDigest(layer.getDigest())),
-                                                layer.getAnnotations());
-                                    },
-                                    source.getExecutorService());
-                        })
+                    TargetRefType targetRef) {
+        TransferPlan plan = TransferPlan.of(target, targetRef, blobsOf(manifest));
+        LOG.debug("Copy plan of manifest {}: {}", manifest.getDigest(), plan);
+        boolean mount = canMount(source, sourceRef, target, targetRef);
+        CompletableFuture.allOf(plan.getMissing().stream()
+                        .map(blob -> CompletableFuture.runAsync(
+                                () -> copyBlob(blob, mount, source, sourceRef, target, targetRef),
+                                source.getExecutorService()))
                         .toArray(CompletableFuture[]::new))
                 .join();
     }
 
+    /**
+     * Copy a single blob from source to target, mounting it when possible.
+     * @param blob The blob, a layer or a config
+     * @param mount Whether the blob can be mounted from the source
+     * @param source The source OCI
+     * @param sourceRef The source reference
+     * @param target The target OCI
+     * @param targetRef The target reference
+     * @param <SourceRefType> The source reference type
+     * @param <TargetRefType> The target reference type
+     */
+    @SuppressWarnings("unchecked")
+    private static <
+                    SourceRefType extends Ref<@NonNull SourceRefType>,
+                    TargetRefType extends Ref<@NonNull TargetRefType>>
+            void copyBlob(
+                    Descriptor blob,
+                    boolean mount,
+                    OCI<SourceRefType> source,
+                    SourceRefType sourceRef,
+                    OCI<TargetRefType> target,
+                    TargetRefType targetRef) {
+        String digest = Objects.requireNonNull(blob.getDigest(), "Blob digest is required for streaming copy");
+        Long size = Objects.requireNonNull(blob.getSize(), "Blob size is required for streaming copy");
+        TargetRefType blobTargetRef = targetRef.forTarget(target).withDigest(digest);
+        if (mount && target.mountBlob((TargetRefType) sourceRef.withDigest(digest), blobTargetRef)) {
+            LOG.debug("Copied blob (mounted from {}) {}", sourceRef.getRepository(), digest);
+            return;
+        }
+        // Known to be missing from the plan, the target does not check its existence again
+        target.pushMissingBlob(
+                blobTargetRef,
+                size,
+                () -> blob instanceof Config config
+                        ? source.pullConfig(sourceRef, config)
+                        : source.fetchBlob(sourceRef.withDigest(digest)),
+                blob.getAnnotations());
+        LOG.debug("Copied blob {}", digest);
+    }
+
+    /**
+     * Plan a copy from source to target without copying anything. The plan covers the layers and configs of every
+     * manifest that would be copied, honoring the platform filter of the options. Manifests, indexes and referrers
+     * are not part of the plan.
+     * @param source The source OCI
+     * @param sourceRef The source reference
+     * @param target The target OCI
+     * @param targetRef The target reference
+     * @param options The copy option
+     * @param <SourceRefType> The source reference type
+     * @param <TargetRefType> The target reference type
+     * @return The plan
+     */
+    public static <SourceRefType extends Ref<@NonNull SourceRefType>, TargetRefType extends Ref<@NonNull TargetRefType>>
+            TransferPlan plan(
+                    OCI<SourceRefType> source,
+                    SourceRefType sourceRef,
+                    OCI<TargetRefType> target,
+                    TargetRefType targetRef,
+                    CopyOptions options) {
+        Descriptor descriptor = source.probeDescriptor(sourceRef);
+        String resolveSourceRegistry = descriptor.getRegistry();
+        Objects.requireNonNull(resolveSourceRegistry, "Registry is required for streaming copy");
+        String effectiveTargetRegistry = targetRef.getTarget(target);
+        Objects.requireNonNull(effectiveTargetRegistry, "Target registry is required for streaming copy");
+
+        SourceRefType effectiveSourceRef = sourceRef.forTarget(source).forTarget(resolveSourceRegistry);
+        TargetRefType effectiveTargetRef = targetRef.forTarget(target).forTarget(effectiveTargetRegistry);
+
+        List<Descriptor> blobs = new ArrayList<>();
+        collectBlobs(source, effectiveSourceRef, descriptor.getMediaType(), options, blobs, new HashSet<>(), 0);
+        return TransferPlan.of(target, effectiveTargetRef, blobs);
+    }
+
+    /**
+     * Collect the layers and configs of a manifest or of the manifests of an index.
+     * @param source The source OCI
+     * @param sourceRef The source reference
+     * @param contentType The content type (manifest or index media type)
+     * @param options The copy option
+     * @param blobs The collected blobs
+     * @param visited The digests already visited
+     * @param depth The current recursion depth
+     * @param <SourceRefType> The source reference type
+     */
+    private static <SourceRefType extends Ref<@NonNull SourceRefType>> void collectBlobs(
+            OCI<SourceRefType> source,
+            SourceRefType sourceRef,
+            String contentType,
+            CopyOptions options,
+            List<Descriptor> blobs,
+            Set<String> visited,
+            int depth) {
+        if (depth > MAX_COPY_DEPTH) {
+            throw new OrasException(
+                    "Maximum copy recursion depth (%d) exceeded; the source may serve an unbounded index or referrer graph"
+                            .formatted(MAX_COPY_DEPTH));
+        }
+        if (source.isManifestMediaType(contentType)) {
+            blobs.addAll(blobsOf(source.getManifest(sourceRef)));
+        } else if (source.isIndexMediaType(contentType)) {
+            Index index = source.getIndex(sourceRef);
+            for (ManifestDescriptor manifestDescriptor : index.getManifests()) {
+                if (options.platformFilter() != null
+                        && options.platformFilter().stream()
+                                .noneMatch(p -> Platform.matches(manifestDescriptor.getPlatform(), p))) {
+                    continue;
+                }
+                if (visited.add(manifestDescriptor.getDigest())) {
+                    collectBlobs(
+                            source,
+                            sourceRef.withDigest(manifestDescriptor.getDigest()),
+                            manifestDescriptor.getMediaType(),
+                            options,
+                            blobs,
+                            visited,
+                            depth + 1);
+                }
+            }
+        } else {
+            throw new OrasException("Unsupported content type: %s".formatted(contentType));
+        }
+    }
+
+    /**
+     * Get the blobs referenced by a manifest
+     * @param manifest The manifest
+     * @return The layers and the config
+     */
+    private static List<Descriptor> blobsOf(Manifest manifest) {
+        List<Descriptor> blobs = new ArrayList<>(manifest.getLayers());
+        blobs.add(manifest.getConfig());
+        return blobs;
+    }
+
     /**
      * Copy a container from source to target.
      * @param source The source OCI
@@ -261,17 +378,13 @@ public final class CopyUtils {
         // Single manifest
         if (source.isManifestMediaType(contentType)) {
 
-            // Write all layers
-            copyLayers(source, effectiveSourceRef, target, effectiveTargetRef, contentType);
-
-            // Write manifest as any blob
             Manifest manifest = source.getManifest(effectiveSourceRef);
             String targetTag = effectiveTargetRef.getTag();
 
             Objects.requireNonNull(manifest.getDigest(), "Manifest digest is required for streaming copy");
 
-            // Push config
-            copyConfig(manifest, source, effectiveSourceRef, target, effectiveTargetRef);
+            // Write all layers and the config
+            copyBlobs(manifest, source, effectiveSourceRef, target, effectiveTargetRef);
 
             // Push the manifest
             LOG.debug("Copying manifest {}", manifestDigest);
@@ -335,16 +448,13 @@ public final class CopyUtils {
                     Manifest manifest =
                             source.getManifest(effectiveSourceRef.withDigest(manifestDescriptor.getDigest()));
 
-                    // Copy all layers for this manifest
-                    copyLayers(
+                    // Copy all layers and the config for this manifest
+                    copyBlobs(
+                            manifest,
                             source,
                             effectiveSourceRef.withDigest(manifestDescriptor.getDigest()),
                             target,
-                            effectiveTargetRef,
-                            manifestDescriptor.getMediaType());
-
-                    // Push config
-                    copyConfig(manifest, source, effectiveSourceRef, target, effectiveTargetRef);
+                            effectiveTargetRef);
 
                     // Push the manifest
                     LOG.debug("Copying nested manifest {}", manifestDescriptor.getDigest());
@@ -392,37 +502,4 @@ public final class CopyUtils {
         // Safe due to class comparison before
         return source.canMount(target, sourceRef, (SourceRefType) targetRef);
     }
-
-    @SuppressWarnings("unchecked")
-    private static <
-                    SourceRefType extends Ref<@NonNull SourceRefType>,
-                    TargetRefType extends Ref<@NonNull TargetRefType>>
-            void copyConfig(
-                    Manifest manifest,
-                    OCI<SourceRefType> source,
-                    SourceRefType sourceRef,
-                    OCI<TargetRefType> target,
-                    TargetRefType targetRef) {
-        // Write config as any blob
-        LOG.debug("Copying config {}", manifest.getConfig().getDigest());
-        Config config = manifest.getConfig();
-        Objects.requireNonNull(config.getDigest(), "Config digest is required for streaming copy");
-        Objects.requireNonNull(config.getSize(), "Config size is required for streaming copy");
-        TargetRefType configTargetRef =
-                targetRef.forTarget(target).withDigest(manifest.getConfig().getDigest());
-        if (canMount(source, sourceRef, target, targetRef)) {
-            target.mountBlob((TargetRefType) sourceRef.withDigest(config.getDigest()), configTargetRef);
-            LOG.debug(
-                    "Copied config (mounted from {}) {}",
-                    sourceRef.getRepository(),
-                    manifest.getConfig().getDigest());
-            return;
-        }
-        target.pushBlob(
-                configTargetRef,
-                config.getSize(),
-                () -> source.pullConfig(sourceRef, manifest.getConfig()),
-                config.getAnnotations());
-        LOG.debug("Copied config {}", manifest.getConfig().getDigest());
-    }
 }
@@ -0,0 +1,380 @@
+/*-
+ * =LICENSE=
+ * ORAS Java SDK
+ * ===
+ * Copyright (C) 2024 - 2026 ORAS
+ * ===
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =LICENSEEND=
+ */
+
+package land.oras;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import land.oras.auth.HttpClient;
+import land.oras.exception.OrasException;
+import land.oras.utils.Const;
+import land.oras.utils.SupportedAlgorithm;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Body handler that writes a blob to a temporary file next to its target while hashing it, so the
+ * content is verified in the same pass as the network transfer. One {@link MessageDigest} is kept per
+ * distinct algorithm (pinned digest and {@code Docker-Content-Digest} header). The target is only
+ * replaced once the caller has checked the digests, see {@link Result#commit(Path)}.
+ * <p>
+ * The handler is stateful and used for a single download: when a transfer fails midway the partial file
+ * and digest state are kept, and the next attempt asks for the missing bytes only with a
+ * {@code Range: bytes=N-} header. A server answering with the full content restarts the file from scratch.
+ */
+@NullMarked
+final class DigestingBodyHandler implements HttpClient.ResumableBodyHandler<DigestingBodyHandler.@Nullable Result> {
+
+    /**
+     * Logger
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(DigestingBodyHandler.class);
+
+    /**
+     * The final path of the blob
+     */
+    private final Path target;
+
+    /**
+     * The digest pinned by the caller, if any
+     */
+    private final @Nullable String pinnedDigest;
+
+    /**
+     * The temporary file, created on first response
+     */
+    private @Nullable Path file;
+
+    /**
+     * The running digests by algorithm prefix
+     */
+    private Map<String, MessageDigest> digests = new HashMap<>();
+
+    /**
+     * Number of bytes written and hashed so far
+     */
+    private volatile long written;
+
+    /**
+     * Constructor
+     * @param target The final path of the blob
+     * @param pinnedDigest The digest pinned by the caller, if any
+     */
+    DigestingBodyHandler(Path target, @Nullable String pinnedDigest) {
+        this.target = target;
+        this.pinnedDigest = pinnedDigest;
+    }
+
+    @Override
+    public Map<String, String> resumeHeaders() {
+        long offset = written;
+        if (offset == 0) {
+            return Map.of();
+        }
+        LOG.debug("Resuming download of {} at byte {}", target, offset);
+        return Map.of(Const.RANGE_HEADER, "bytes=%d-".formatted(offset));
+    }
+
+    @Override
+    public synchronized HttpResponse.BodySubscriber<@Nullable Result> apply(HttpResponse.ResponseInfo responseInfo) {
+        int status = responseInfo.statusCode();
+        // Redirects, auth challenges and errors are not blob content
+        if (status != 200 && status != 206) {
+            return HttpResponse.BodySubscribers.replacing(null);
+        }
+        String header = responseInfo
+                .headers()
+                .firstValue(Const.DOCKER_CONTENT_DIGEST_HEADER)
+                .orElse(null);
+        if (status == 206) {
+            String contentRange = responseInfo
+                    .headers()
+                    .firstValue(Const.CONTENT_RANGE_HEADER)
+                    .orElse("");
+            boolean resumable = file != null
+                    && written > 0
+                    && contentRange.startsWith("bytes %d-".formatted(written))
+                    && (header == null
+                            || digests.containsKey(
+                                    SupportedAlgorithm.fromDigest(header).getPrefix()));
+            if (!resumable) {
+                // Start over on next attempt without range
+                written = 0;
+                return new FailingSubscriber(new IOException(
+                        "Unexpected content range '%s' when resuming download".formatted(contentRange)));
+            }
+            return new DigestingSubscriber(this, file, written);
+        }
+        // Full content: (re)start from the beginning
+        digests = new HashMap<>();
+        written = 0;
+        if (pinnedDigest != null && SupportedAlgorithm.isSupported(pinnedDigest)) {
+            addDigest(digests, SupportedAlgorithm.fromDigest(pinnedDigest));
+        }
+        if (header != null) {
+            addDigest(digests, SupportedAlgorithm.fromDigest(header));
+        }
+        if (file == null) {
+            file = createTempFile(target);
+        }
+        return new DigestingSubscriber(this, file, 0);
+    }
+
+    /**
+     * Delete the temporary file of an abandoned download, if any
+     */
+    synchronized void discard() {
+        if (file != null) {
+            deleteQuietly(file);
+            file = null;
+        }
+        written = 0;
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOG.warn("Failed to delete temporary file {}: {}", file, e.getMessage());
+        }
+    }
+
+    private static void addDigest(Map<String, MessageDigest> digests, SupportedAlgorithm algorithm) {
+        digests.computeIfAbsent(algorithm.getPrefix(), p -> {
+            try {
+                return MessageDigest.getInstance(algorithm.getAlgorithmName());
+            } catch (NoSuchAlgorithmException e) {
+                throw new OrasException("Unsupported digest algorithm: " + algorithm.getAlgorithmName(), e);
+            }
+        });
+    }
+
+    /**
+     * Create a temporary file in the same directory as the target so it can be moved atomically
+     * @param target The final path of the blob
+     * @return The temporary file
+     */
+    static Path createTempFile(Path target) {
+        Path absolute = target.toAbsolutePath();
+        try {
+            return Files.createTempFile(absolute.getParent(), ".%s".formatted(absolute.getFileName()), ".part");
+        } catch (IOException e) {
+            throw new OrasException("Failed to create temporary file for blob: %s".formatted(target), e);
+        }
+    }
+
+    /**
+     * A downloaded blob waiting to be committed to its target
+     * @param file The temporary file holding the content
+     * @param size The number of bytes written
+     * @param digests The computed digests by algorithm prefix
+     */
+    record Result(Path file, long size, Map<String, String> digests) {
+
+        /**
+         * Ensure the content matches every expected digest. The temporary file is deleted on mismatch.
+         * @param expectedDigests The expected digests
+         */
+        void verify(List<String> expectedDigests) {
+            for (String expected : expectedDigests) {
+                String actual =
+                        digests.get(SupportedAlgorithm.fromDigest(expected).getPrefix());
+                if (!expected.equals(actual)) {
+                    discard();
+                    throw new OrasException("Digest mismatch: %s != %s".formatted(expected, actual));
+                }
+            }
+        }
+
+        /**
+         * Atomically move the content to the target path, replacing any existing file
+         * @param target The target path
+         */
+        void commit(Path target) {
+            try {
+                try {
+                    Files.move(file, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    LOG.debug("Atomic move not supported for {}, falling back to regular move", target);
+                    Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (IOException e) {
+                discard();
+                throw new OrasException("Failed to move downloaded blob to %s".formatted(target), e);
+            }
+        }
+
+        /**
+         * Delete the temporary file
+         */
+        void discard() {
+            deleteQuietly(file);
+        }
+    }
+
+    /**
+     * Subscriber failing the exchange so it is retried
+     */
+    private static final class FailingSubscriber implements HttpResponse.BodySubscriber<@Nullable Result> {
+
+        private final CompletableFuture<@Nullable Result> result = new CompletableFuture<>();
+        private final IOException error;
+
+        private FailingSubscriber(IOException error) {
+            this.error = error;
+        }
+
+        @Override
+        public CompletionStage<@Nullable Result> getBody() {
+            return result;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.cancel();
+            result.completeExceptionally(error);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> item) {
+            // Cancelled
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            result.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            result.completeExceptionally(error);
+        }
+    }
+
+    /**
+     * Subscriber writing each received buffer to the temporary file and into every digest. Bytes are only
+     * hashed once written so the handler state always matches the file content up to {@code written}.
+     */
+    private static final class DigestingSubscriber implements HttpResponse.BodySubscriber<@Nullable Result> {
+
+        private final CompletableFuture<@Nullable Result> result = new CompletableFuture<>();
+        private final DigestingBodyHandler handler;
+        private final Path file;
+        private long position;
+        private @Nullable FileChannel channel;
+        private Flow.@Nullable Subscription subscription;
+
+        private DigestingSubscriber(DigestingBodyHandler handler, Path file, long position) {
+            this.handler = handler;
+            this.file = file;
+            this.position = position;
+        }
+
+        @Override
+        public CompletionStage<@Nullable Result> getBody() {
+            return result;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            try {
+                this.channel = FileChannel.open(file, StandardOpenOption.WRITE);
+            } catch (IOException e) {
+                subscription.cancel();
+                fail(e);
+                return;
+            }
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            try {
+                for (ByteBuffer buffer : buffers) {
+                    ByteBuffer content = buffer.duplicate();
+                    while (buffer.hasRemaining()) {
+                        position += channel.write(buffer, position);
+                    }
+                    for (MessageDigest digest : handler.digests.values()) {
+                        digest.update(content.duplicate());
+                    }
+                    handler.written = position;
+                }
+            } catch (IOException e) {
+                subscription.cancel();
+                fail(e);
+                return;
+            }
+            subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            fail(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            try {
+                // Drop any bytes left over from an earlier, longer attempt
+                channel.truncate(position);
+                channel.close();
+            } catch (IOException e) {
+                fail(e);
+                return;
+            }
+            Map<String, String> computed = new HashMap<>();
+            handler.digests.forEach((prefix, digest) ->
+                    computed.put(prefix, prefix + ":" + HexFormat.of().formatHex(digest.digest())));
+            result.complete(new Result(file, position, computed));
+        }
+
+        private void fail(Throwable throwable) {
+            // Keep the partial file so the next attempt can resume it
+            try {
+                if (channel != null) {
+                    channel.close();
+                }
+            } catch (IOException e) {
+                LOG.warn("Failed to close temporary file {}: {}", file, e.getMessage());
+            }
+            result.completeExceptionally(throwable);
+        }
+    }
+}
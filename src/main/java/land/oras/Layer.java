@@ -196,6 +196,21 @@ public final class Layer extends Descriptor {
                 annotations);
     }
 
+    /**
+     * Create a layer from a file whose digest is already known, without reading the file
+     * @param file The file
+     * @param digest The digest of the file
+     * @return The layer
+     */
+    public static Layer fromFile(Path file, String digest) {
+        if (!SupportedAlgorithm.isSupported(digest)) {
+            throw new OrasException("Unsupported digest: %s".formatted(digest));
+        }
+        Map<String, String> annotations =
+                Map.of(Const.ANNOTATION_TITLE, file.getFileName().toString());
+        return new Layer(Const.DEFAULT_BLOB_MEDIA_TYPE, digest, file.toFile().length(), file, annotations);
+    }
+
     /**
      * Create a layer from data
      * @param containerRef The container reference
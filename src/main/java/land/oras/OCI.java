@@ -27,7 +27,9 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -36,11 +38,14 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
 import java.util.function.Supplier;
+import java.util.stream.IntStream;
 import land.oras.exception.OrasException;
 import land.oras.utils.ArchiveUtils;
+import land.oras.utils.CompressionOptions;
 import land.oras.utils.Const;
 import land.oras.utils.SupportedAlgorithm;
 import land.oras.utils.SupportedCompression;
+import land.oras.utils.TreeCache;
 import org.jspecify.annotations.NonNull;
 import org.jspecify.annotations.Nullable;
 import org.slf4j.Logger;
@@ -69,10 +74,12 @@ public abstract sealed class OCI<T extends Ref<@NonNull T>> permits Registry, OC
 
         private final boolean chunkedEnabled;
         private final long chunkSize;
+        private final CompressionOptions compression;
 
-        private PushOptions(boolean chunkedEnabled, long chunkSize) {
+        private PushOptions(boolean chunkedEnabled, long chunkSize, CompressionOptions compression) {
             this.chunkedEnabled = chunkedEnabled;
             this.chunkSize = chunkSize;
+            this.compression = compression;
         }
 
         /**
@@ -80,7 +87,7 @@ public abstract sealed class OCI<T extends Ref<@NonNull T>> permits Registry, OC
          * @return The default push options
          */
         public static PushOptions defaults() {
-            return new PushOptions(false, DEFAULT_CHUNK_SIZE);
+            return new PushOptions(false, DEFAULT_CHUNK_SIZE, CompressionOptions.defaults());
         }
 
         /**
@@ -88,7 +95,7 @@ public abstract sealed class OCI<T extends Ref<@NonNull T>> permits Registry, OC
          * @return Push options with chunked upload enabled
          */
         public static PushOptions chunked() {
-            return new PushOptions(true, DEFAULT_CHUNK_SIZE);
+            return new PushOptions(true, DEFAULT_CHUNK_SIZE, CompressionOptions.defaults());
         }
 
         /**
@@ -97,7 +104,7 @@ public abstract sealed class OCI<T extends Ref<@NonNull T>> permits Registry, OC
          * @return Push options with chunked upload enabled
          */
         public static PushOptions chunked(long chunkSize) {
-            return new PushOptions(true, chunkSize);
+            return new PushOptions(true, chunkSize, CompressionOptions.defaults());
         }
 
         /**
@@ -115,6 +122,23 @@ public abstract sealed class OCI<T extends Ref<@NonNull T>> permits Registry, OC
         public long chunkSize() {
             return chunkSize;
         }
+
+        /**
+         * Return options compressing directory archives with the given compression options.
+         * @param compression The compression options
+         * @return Push options with the given compression options
+         */
+        public PushOptions withCompression(CompressionOptions compression) {
+            return new PushOptions(chunkedEnabled, chunkSize, compression);
+        }
+
+        /**
+         * Return the options used to compress directory archives.
+         * @return The compression options
+         */
+        public CompressionOptions compression() {
+            return compression;
+        }
     }
 
     /**
@@ -124,17 +148,19 @@ public abstract sealed class OCI<T extends Ref<@NonNull T>> permits Registry, OC
     public static final class PullOptions {
 
         private final boolean overwriteEnabled;
+        private final int extractionThreads;
 
-        private PullOptions(boolean overwriteEnabled) {
+        private PullOptions(boolean overwriteEnabled, int extractionThreads) {
             this.overwriteEnabled = overwriteEnabled;
+            this.extractionThreads = extractionThreads;
         }
 
         /**
-         * Default options: do not overwrite existing files.
+         * Default options: do not overwrite existing files, extract on a single thread.
          * @return The default pull options
          */
         public static PullOptions defaults() {
-            return new PullOptions(false);
+            return new PullOptions(false, 1);
         }
 
         /**
@@ -142,7 +168,20 @@ public abstract sealed class OCI<T extends Ref<@NonNull T>> permits Registry, OC
          * @return Pull options with overwrite enabled
          */
         public static PullOptions overwrite() {
-            return new PullOptions(true);
+            return new PullOptions(true, 1);
+        }
+
+        /**
+         * Return options writing the files of unpacked directory layers with the given number of threads.
+         * Archives with many small files are bound by per file latency and benefit from several writers.
+         * @param extractionThreads The number of threads, 1 to write on the pulling thread
+         * @return Pull options with the given number of extraction threads
+         */
+        public PullOptions withExtractionThreads(int extractionThreads) {
+            if (extractionThreads < 1) {
+                throw new IllegalArgumentException("Threads must be greater than 0");
+            }
+            return new PullOptions(overwriteEnabled, extractionThreads);
         }
 
         /**
@@ -152,6 +191,14 @@ public abstract sealed class OCI<T extends Ref<@NonNull T>> permits Registry, OC
         public boolean isOverwrite() {
             return overwriteEnabled;
         }
+
+        /**
+         * Return the number of threads writing the files of unpacked directory layers.
+         * @return The number of threads
+         */
+        public int extractionThreads() {
+            return extractionThreads;
+        }
     }
 
     /**
@@ -263,12 +310,21 @@ public abstract sealed class OCI<T extends Ref<@NonNull T>> permits Registry, OC
      * @return The layer
      */
     public Layer pushBlob(T ref, InputStream input) {
+        Path tempFile = null;
         try {
-            Path tempFile = Files.createTempFile("oras", "layer");
+            tempFile = Files.createTempFile("oras", "layer");
             Files.copy(input, tempFile, StandardCopyOption.REPLACE_EXISTING);
             return pushBlob(ref, tempFile);
         } catch (IOException e) {
             throw new OrasException("Failed to push blob", e);
+        } finally {
+            if (tempFile != null) {
+                try {
+                    Files.deleteIfExists(tempFile);
+                } catch (IOException e) {
+                    LOG.warn("Failed to delete temporary file {}: {}", tempFile, e.getMessage());
+                }
+            }
         }
     }
 
@@ -337,17 +393,83 @@ public abstract sealed class OCI<T extends Ref<@NonNull T>> permits Registry, OC
      */
     protected final List<Layer> pushLayers(
             T ref, Annotations annotations, boolean withDigest, PushOptions options, LocalPath... paths) {
+        Map<Integer, Layer> files = hashFiles(ref, paths);
+        TransferPlan plan = TransferPlan.of(this, ref, files.values());
+        LOG.debug("Push plan: {}", plan);
+
+        // Directories first since their digest is only known once archived, then missing files largest first
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < paths.length; i++) {
+            if (!files.containsKey(i)) {
+                order.add(i);
+            }
+        }
+        files.keySet().stream()
+                .sorted(Comparator.comparing((Integer i) -> !plan.isMissing(files.get(i).getDigest()))
+                        .thenComparing(i -> files.get(i).getSize(), Comparator.reverseOrder()))
+                .forEach(order::add);
         try {
-            return Arrays.stream(paths)
-                    .map(p -> CompletableFuture.supplyAsync(
-                            () -> pushLayer(ref, annotations, withDigest, p, options), getExecutorService()))
-                    .map(CompletableFuture::join)
+            // Submit every layer before joining so they are pushed concurrently
+            Map<Integer, CompletableFuture<Layer>> layers = new HashMap<>();
+            for (int i : order) {
+                Layer file = files.get(i);
+                if (file != null && !plan.isMissing(file.getDigest())) {
+                    LOG.info("Blob already exists: {}", file.getDigest());
+                    layers.put(i, CompletableFuture.completedFuture(fileLayer(file, annotations, paths[i])));
+                    continue;
+                }
+                layers.put(
+                        i,
+                        CompletableFuture.supplyAsync(
+                                () -> pushLayer(ref, annotations, withDigest, paths[i], file, options),
+                                getExecutorService()));
+            }
+            return IntStream.range(0, paths.length)
+                    .mapToObj(i -> layers.get(i).join())
                     .toList();
         } catch (CompletionException e) {
             throw new OrasException("Failed to push layers", e.getCause());
         }
     }
 
+    /**
+     * Plan the push of files to the target without pushing anything. Every file is hashed and its existence on the
+     * target checked concurrently. Directories are not part of the plan since they are only archived when pushed.
+     * @param ref The ref
+     * @param paths The paths to the files
+     * @return The plan
+     */
+    public final TransferPlan planPush(T ref, LocalPath... paths) {
+        return TransferPlan.of(this, ref, hashFiles(ref, paths).values());
+    }
+
+    /**
+     * Hash the regular files among the paths concurrently
+     * @param ref The ref, for the digest algorithm
+     * @param paths The paths
+     * @return The layers of the regular files by index of their path
+     */
+    private Map<Integer, Layer> hashFiles(T ref, LocalPath... paths) {
+        Map<Integer, CompletableFuture<Layer>> hashes = new LinkedHashMap<>();
+        for (int i = 0; i < paths.length; i++) {
+            Path path = paths[i].getPath();
+            if (!Files.isDirectory(path)) {
+                hashes.put(
+                        i,
+                        CompletableFuture.supplyAsync(
+                                () -> Layer.fromFile(path, ref.getAlgorithm().cachedDigest(path)),
+                                getExecutorService()));
+            }
+        }
+        try {
+            Map<Integer, Layer> files = new LinkedHashMap<>();
+            hashes.forEach((i, hash) -> files.put(i, hash.join()));
+            return files;
+        } catch (CompletionException e) {
+            throw new OrasException("Failed to hash files", e.getCause());
+        }
+    }
+
     /**
      * Return if a media type is an index media type
      * @param mediaType The media type
@@ -630,6 +752,27 @@ public abstract sealed class OCI<T extends Ref<@NonNull T>> permits Registry, OC
     }
 
     protected Layer pushLayer(T ref, Annotations annotations, boolean withDigest, LocalPath path, PushOptions options) {
+        return pushLayer(ref, annotations, withDigest, path, null, options);
+    }
+
+    /**
+     * Push a layer
+     * @param ref The ref
+     * @param annotations The annotations for layers (selected by title annotation).
+     * @param withDigest Push with digest
+     * @param path The path to the file or directory
+     * @param missingFile The layer of a regular file known to be missing on the target, or null to hash the file and
+     * check its existence
+     * @param options The push options
+     * @return The layer
+     */
+    private Layer pushLayer(
+            T ref,
+            Annotations annotations,
+            boolean withDigest,
+            LocalPath path,
+            @Nullable Layer missingFile,
+            PushOptions options) {
         try {
             // Create tar.gz archive for directory
             if (Files.isDirectory(path.getPath())) {
@@ -637,12 +780,6 @@ public abstract sealed class OCI<T extends Ref<@NonNull T>> permits Registry, OC
 
                 // If source need to be packed first
                 boolean autoUnpack = compression.isAutoUnpack();
-                LocalPath tempSource = autoUnpack ? ArchiveUtils.tar(path) : path;
-                LocalPath tempArchive = ArchiveUtils.compress(tempSource, path.getMediaType());
-
-                if (withDigest) {
-                    ref = ref.withDigest(ref.getAlgorithm().digest(tempArchive.getPath()));
-                }
 
                 String title = path.getPath().isAbsolute()
                         ? path.getPath().getFileName().toString()
@@ -661,33 +798,36 @@ public abstract sealed class OCI<T extends Ref<@NonNull T>> permits Registry, OC
                 // Add oras digest/unpack
                 // For example zip can be packed application/zip but never unpacked by the runtime
                 // This is convenience method to pack zip layer as directories
-                if (compression.isAutoUnpack()) {
-                    layerAnnotations.put(
-                            Const.ANNOTATION_ORAS_CONTENT_DIGEST,
-                            ref.getAlgorithm().digest(tempSource.getPath()));
+                Layer layer;
+                if (autoUnpack) {
+                    // Tar, compress and hash in a single pass unless the directory is unchanged
+                    PushedArchive archive = pushCachedArchive(ref, path, withDigest, options);
+                    layerAnnotations.put(Const.ANNOTATION_ORAS_CONTENT_DIGEST, archive.contentDigest());
                     layerAnnotations.put(Const.ANNOTATION_ORAS_UNPACK, "true");
+                    layer = archive.layer();
                 } else {
-                    layerAnnotations.put(Const.ANNOTATION_ORAS_UNPACK, "false");
+                    LocalPath tempArchive = ArchiveUtils.compress(path, path.getMediaType(), options.compression());
+                    try {
+                        // Hash the archive once, the digest is threaded down to the layer
+                        String digest = ref.getAlgorithm().digest(tempArchive.getPath());
+                        layerAnnotations.put(Const.ANNOTATION_ORAS_UNPACK, "false");
+                        T target = withDigest ? ref.withDigest(digest) : ref;
+                        layer = doPushBlob(target, tempArchive.getPath(), digest, false, options);
+                    } finally {
+                        Files.deleteIfExists(tempArchive.getPath());
+                    }
                 }
-
-                Layer layer = doPushBlob(ref, tempArchive.getPath(), options)
-                        .withMediaType(path.getMediaType())
-                        .withAnnotations(layerAnnotations);
+                layer = layer.withMediaType(path.getMediaType()).withAnnotations(layerAnnotations);
                 LOG.info("Uploaded directory: {}", layer.getDigest());
-                Files.delete(tempArchive.getPath());
                 return layer;
             } else {
+                String digest =
+                        missingFile != null ? missingFile.getDigest() : ref.getAlgorithm().cachedDigest(path.getPath());
                 if (withDigest) {
-                    ref = ref.withDigest(ref.getAlgorithm().digest(path.getPath()));
+                    ref = ref.withDigest(digest);
                 }
-                String title = path.getPath().getFileName().toString();
-                Map<String, String> layerAnnotations = annotations.hasFileAnnotations(title)
-                        ? annotations.getFileAnnotations(title)
-                        : Map.of(Const.ANNOTATION_TITLE, title);
-
-                Layer layer = doPushBlob(ref, path.getPath(), options)
-                        .withMediaType(path.getMediaType())
-                        .withAnnotations(layerAnnotations);
+                Layer layer = fileLayer(
+                        doPushBlob(ref, path.getPath(), digest, missingFile != null, options), annotations, path);
                 LOG.info("Uploaded: {}", layer.getDigest());
                 return layer;
             }
@@ -697,18 +837,107 @@ public abstract sealed class OCI<T extends Ref<@NonNull T>> permits Registry, OC
     }
 
     /**
-     * Push a blob from a file path, respecting the given push options.
-     * Subclasses may override to support chunked upload.
+     * Describe a regular file as a layer, with its media type and the annotations selected by its title
+     * @param file The layer of the file
+     * @param annotations The annotations for layers (selected by title annotation).
+     * @param path The path to the file
+     * @return The layer
+     */
+    private static Layer fileLayer(Layer file, Annotations annotations, LocalPath path) {
+        String title = path.getPath().getFileName().toString();
+        Map<String, String> layerAnnotations = annotations.hasFileAnnotations(title)
+                ? annotations.getFileAnnotations(title)
+                : Map.of(Const.ANNOTATION_TITLE, title);
+        return file.withMediaType(path.getMediaType()).withAnnotations(layerAnnotations);
+    }
+
+    /**
+     * Push the archive of a directory, reusing the archive previously produced for it when the {@link TreeCache}
+     * is enabled, the directory is unchanged and the blob already exists on the target
      * @param ref The ref
-     * @param blob The blob file
+     * @param directory The directory, with the media type of the archive
+     * @param withDigest Whether the blob must be pushed with its digest set on the ref
      * @param options The push options
-     * @return The layer
+     * @return The pushed archive
      */
-    protected Layer doPushBlob(T ref, Path blob, PushOptions options) {
-        try (InputStream is = Files.newInputStream(blob)) {
-            return pushBlob(ref, is);
-        } catch (IOException e) {
-            throw new OrasException("Failed to push blob", e);
+    private PushedArchive pushCachedArchive(T ref, LocalPath directory, boolean withDigest, PushOptions options) {
+        TreeCache treeCache = TreeCache.get();
+        TreeCache.Snapshot snapshot = treeCache != null ? treeCache.snapshot(directory, ref.getAlgorithm()) : null;
+        if (treeCache == null || snapshot == null) {
+            return pushArchive(ref, directory, withDigest, options);
+        }
+        TreeCache.Archive cached = treeCache.get(snapshot);
+        if (cached != null && hasBlob(ref.withDigest(cached.digest()))) {
+            LOG.info("Directory {} unchanged, blob already exists: {}", directory.getPath(), cached.digest());
+            return new PushedArchive(Layer.fromDigest(cached.digest(), cached.size()), cached.contentDigest());
+        }
+        PushedArchive archive = pushArchive(ref, directory, withDigest, options);
+        Layer layer = archive.layer();
+        treeCache.put(snapshot, new TreeCache.Archive(layer.getDigest(), archive.contentDigest(), layer.getSize()));
+        return archive;
+    }
+
+    /**
+     * Pack a directory as a tar based archive and push it. The default implementation tars, compresses and hashes
+     * the directory in a single pass into a temporary file, then pushes that file. Implementations may override it
+     * to stream the archive straight to the target.
+     * @param ref The ref
+     * @param directory The directory, with the media type of the archive
+     * @param withDigest Whether the blob must be pushed with its digest set on the ref
+     * @param options The push options
+     * @return The pushed archive
+     */
+    protected PushedArchive pushArchive(T ref, LocalPath directory, boolean withDigest, PushOptions options) {
+        ArchiveUtils.PackedArchive packed = ArchiveUtils.tarcompress(
+                directory, directory.getMediaType(), ref.getAlgorithm(), options.compression());
+        try {
+            String digest = packed.digests().digest();
+            T target = withDigest ? ref.withDigest(digest) : ref;
+            Layer layer = doPushBlob(target, packed.path().getPath(), digest, false, options);
+            return new PushedArchive(layer, packed.digests().contentDigest());
+        } finally {
+            try {
+                Files.deleteIfExists(packed.path().getPath());
+            } catch (IOException e) {
+                LOG.debug("Failed to delete temporary archive {}", packed.path(), e);
+            }
         }
     }
+
+    /**
+     * A pushed tar based archive
+     * @param layer The pushed layer
+     * @param contentDigest The digest of the uncompressed tar content
+     */
+    protected record PushedArchive(Layer layer, String contentDigest) {}
+
+    /**
+     * Push a blob from a file path whose digest is already known, respecting the given push options.
+     * Implementations must not hash the file again.
+     * @param ref The ref
+     * @param blob The blob file
+     * @param digest The digest of the blob file
+     * @param missing Whether the blob is known to be missing on the target, so its existence is not checked again
+     * @param options The push options
+     * @return The layer
+     */
+    protected abstract Layer doPushBlob(T ref, Path blob, String digest, boolean missing, PushOptions options);
+
+    /**
+     * Push a blob stream known to be missing on the target, without checking its existence again
+     * @param ref The ref with the digest of the blob
+     * @param size The size of the blob
+     * @param stream The supplier of the blob stream
+     * @param annotations The annotations
+     * @return The layer
+     */
+    protected abstract Layer pushMissingBlob(
+            T ref, long size, Supplier<InputStream> stream, Map<String, String> annotations);
+
+    /**
+     * Return if the target already contains the blob
+     * @param ref The ref with the digest of the blob
+     * @return True if the blob exists
+     */
+    protected abstract boolean hasBlob(T ref);
 }
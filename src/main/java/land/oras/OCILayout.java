@@ -363,8 +363,36 @@ public final class OCILayout extends OCI<LayoutRef> {
         }
     }
 
+    @Override
+    protected Layer doPushBlob(LayoutRef ref, Path blob, String digest, boolean missing, PushOptions options) {
+        return pushBlob(ref, blob, digest, Map.of());
+    }
+
+    @Override
+    protected Layer pushMissingBlob(
+            LayoutRef ref, long size, Supplier<InputStream> stream, Map<String, String> annotations) {
+        return pushBlob(ref, size, stream, annotations);
+    }
+
+    @Override
+    protected boolean hasBlob(LayoutRef ref) {
+        return Files.exists(getBlobPath(ref));
+    }
+
     @Override
     public Layer pushBlob(LayoutRef ref, Path blob, Map<String, String> annotations) {
+        return pushBlob(ref, blob, null, annotations);
+    }
+
+    /**
+     * Push a blob from a file
+     * @param ref The ref with the digest as tag
+     * @param blob The blob
+     * @param knownDigest The digest of the blob already computed by the caller, or null to hash it
+     * @param annotations The annotations
+     * @return The layer
+     */
+    private Layer pushBlob(LayoutRef ref, Path blob, @Nullable String knownDigest, Map<String, String> annotations) {
         if (ref.getTag() == null) {
             throw new OrasException("Missing ref");
         }
@@ -378,11 +406,15 @@ public final class OCILayout extends OCI<LayoutRef> {
         try {
             if (Files.exists(blobPath)) {
                 LOG.info("Blob already exists: {}", digest);
-                return Layer.fromFile(blobPath, ref.getAlgorithm()).withAnnotations(annotations);
+                return Layer.fromFile(blobPath, digest).withAnnotations(annotations);
+            }
+            if (knownDigest == null) {
+                ensureDigest(ref, blob);
+            } else if (!digest.equals(knownDigest)) {
+                throw new OrasException("Digest mismatch: %s != %s".formatted(digest, knownDigest));
             }
-            ensureDigest(ref, blob);
             Files.copy(blob, blobPath);
-            Layer layer = Layer.fromFile(blobPath, ref.getAlgorithm()).withAnnotations(annotations);
+            Layer layer = Layer.fromFile(blobPath, digest).withAnnotations(annotations);
             packToTar();
             LOG.debug("Blob pushed to OCI layout: {}", digest);
             return layer;
@@ -406,13 +438,13 @@ public final class OCILayout extends OCI<LayoutRef> {
             Path blobPath = getBlobPath(ref);
             if (Files.exists(blobPath)) {
                 LOG.info("Blob already exists: {}", digest);
-                return Layer.fromFile(blobPath, ref.getAlgorithm()).withAnnotations(annotations);
+                return Layer.fromFile(blobPath, digest).withAnnotations(annotations);
             }
             try (InputStream is = stream.get()) {
                 Files.copy(is, blobPath);
             }
             ensureDigest(ref, blobPath);
-            Layer layer = Layer.fromFile(blobPath, ref.getAlgorithm()).withAnnotations(annotations);
+            Layer layer = Layer.fromFile(blobPath, digest).withAnnotations(annotations);
             packToTar();
             return layer;
         } catch (IOException e) {
@@ -0,0 +1,126 @@
+/*-
+ * =LICENSE=
+ * ORAS Java SDK
+ * ===
+ * Copyright (C) 2024 - 2026 ORAS
+ * ===
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =LICENSEEND=
+ */
+
+package land.oras;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Body handler writing a byte range of a blob at its offset in a shared, preallocated file. A
+ * {@code 206 Partial Content} response is written at the requested offset while a {@code 200 OK}
+ * (the server or redirect target ignored the {@code Range} header) is written from the start of the file.
+ * The body is the number of bytes written.
+ */
+@NullMarked
+final class RangeBodyHandler implements HttpResponse.BodyHandler<Long> {
+
+    /**
+     * The shared file channel. Positional writes are safe to perform concurrently
+     */
+    private final FileChannel channel;
+
+    /**
+     * The offset of the requested range
+     */
+    private final long offset;
+
+    /**
+     * Constructor
+     * @param channel The shared file channel
+     * @param offset The offset of the requested range
+     */
+    RangeBodyHandler(FileChannel channel, long offset) {
+        this.channel = channel;
+        this.offset = offset;
+    }
+
+    @Override
+    public HttpResponse.BodySubscriber<Long> apply(HttpResponse.ResponseInfo responseInfo) {
+        return switch (responseInfo.statusCode()) {
+            case 206 -> new PositionalSubscriber(channel, offset);
+            case 200 -> new PositionalSubscriber(channel, 0);
+            default -> HttpResponse.BodySubscribers.replacing(0L);
+        };
+    }
+
+    /**
+     * Subscriber writing each received buffer at the next position of the channel
+     */
+    private static final class PositionalSubscriber implements HttpResponse.BodySubscriber<Long> {
+
+        private final CompletableFuture<Long> result = new CompletableFuture<>();
+        private final FileChannel channel;
+        private final long start;
+        private long position;
+        private Flow.@Nullable Subscription subscription;
+
+        private PositionalSubscriber(FileChannel channel, long start) {
+            this.channel = channel;
+            this.start = start;
+            this.position = start;
+        }
+
+        @Override
+        public CompletionStage<Long> getBody() {
+            return result;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            try {
+                for (ByteBuffer buffer : buffers) {
+                    while (buffer.hasRemaining()) {
+                        position += channel.write(buffer, position);
+                    }
+                }
+            } catch (IOException e) {
+                subscription.cancel();
+                result.completeExceptionally(e);
+                return;
+            }
+            subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            result.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            result.complete(position - start);
+        }
+    }
+}
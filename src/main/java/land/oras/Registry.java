@@ -20,29 +20,44 @@
 
 package land.oras;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.ByteArrayInputStream;
 import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.SequenceInputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HexFormat;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiFunction;
 import java.util.function.Supplier;
 import land.oras.auth.AuthProvider;
@@ -60,7 +75,9 @@ import land.oras.policy.Transport;
 import land.oras.utils.ArchiveUtils;
 import land.oras.utils.Const;
 import land.oras.utils.JsonUtils;
+import land.oras.utils.ManifestCache;
 import land.oras.utils.SupportedAlgorithm;
+import land.oras.utils.UploadSessionStore;
 import org.jspecify.annotations.NullMarked;
 import org.jspecify.annotations.Nullable;
 
@@ -70,10 +87,30 @@ import org.jspecify.annotations.Nullable;
 @NullMarked
 public final class Registry extends OCI<ContainerRef> {
 
+    /**
+     * Default size of each byte range of a segmented download (32 MiB)
+     */
+    public static final long DEFAULT_SEGMENT_SIZE = 32L * 1024 * 1024;
+
+    /**
+     * Maximum number of blobs known to be present on the registries
+     */
+    static final int MAX_KNOWN_BLOBS = 10_000;
+
+    /**
+     * How long a blob is known to be present without checking the registry again
+     */
+    static final Duration KNOWN_BLOB_TTL = Duration.ofMinutes(10);
+
     /**
      * Max concurrent downloads and upload for blobs
      */
-    private int maxConcurrentDownloads = 1;
+    private int maxConcurrentDownloads = TransferExecutors.defaultParallelism();
+
+    /**
+     * Whether blob transfers run on virtual threads
+     */
+    private boolean virtualThreads;
 
     /**
      * The executor service for parallel operations
@@ -163,6 +200,76 @@ public final class Registry extends OCI<ContainerRef> {
      */
     private ContainersPolicy containersPolicy;
 
+    /**
+     * Minimum blob size in bytes to download as parallel byte ranges (0 = disabled).
+     */
+    private long segmentedDownloadThreshold = 0L;
+
+    /**
+     * Size in bytes of each byte range of a segmented download
+     */
+    private long segmentSize = DEFAULT_SEGMENT_SIZE;
+
+    /**
+     * Directory where chunked upload sessions are persisted to resume them across restarts (null = disabled).
+     */
+    private @Nullable Path uploadSessionDirectory;
+
+    /**
+     * Registries derived from this one for another transport or mirror host, reused so that their HTTP client
+     * and its connections stay warm across calls
+     */
+    private final Map<DerivedKey, Registry> derivedRegistries = new ConcurrentHashMap<>();
+
+    /**
+     * Upload strategy learned for each registry host, shared with the derived registries
+     */
+    private Map<String, UploadStrategy> uploadStrategies = new ConcurrentHashMap<>();
+
+    /**
+     * Smallest blob size rejected in a single PUT by each registry host, shared with the derived registries
+     */
+    private Map<String, Long> rejectedUploadSizes = new ConcurrentHashMap<>();
+
+    /**
+     * Blobs pushed, mounted or seen on the registries, shared with the derived registries. Entries are keyed by the
+     * identity of the credentials, so a registry derived with other credentials checks blobs again.
+     */
+    private Cache<KnownBlob, Boolean> knownBlobs = Caffeine.newBuilder()
+            .maximumSize(MAX_KNOWN_BLOBS)
+            .expireAfterWrite(KNOWN_BLOB_TTL)
+            .build();
+
+    /**
+     * Key of a blob known to be present
+     * @param registry The API registry host
+     * @param repository The repository
+     * @param digest The digest
+     * @param identity The identity of the credentials that saw the blob
+     */
+    private record KnownBlob(String registry, String repository, String digest, String identity) {}
+
+    /**
+     * Manifests and indexes fetched by digest, shared with the derived registries. Entries are keyed by the identity
+     * of the credentials, so a registry derived with other credentials does not reuse them.
+     */
+    private ManifestCache manifestCache = new ManifestCache(null);
+
+    /**
+     * Key of a derived registry. All other settings are inherited from this registry.
+     * @param registry The registry host
+     * @param insecure Whether the transport is plaintext HTTP
+     * @param skipTlsVerify Whether TLS verification is skipped
+     * @param transportLocked Whether the transport is locked
+     * @param anonymous Whether no credentials are sent, otherwise the auth provider of this registry is used
+     */
+    private record DerivedKey(
+            @Nullable String registry,
+            boolean insecure,
+            boolean skipTlsVerify,
+            boolean transportLocked,
+            boolean anonymous) {}
+
     /**
      * Constructor
      */
@@ -228,6 +335,7 @@ public final class Registry extends OCI<ContainerRef> {
         logResponse(response);
         if (response.statusCode() == 201) {
             LOG.info("Blob mounted successfully from {}: {}", sourceRef.getFullRepository(), digest);
+            markBlobPresent(ref.withDigest(digest));
             return true;
         }
         if (response.statusCode() == 202) {
@@ -270,6 +378,10 @@ public final class Registry extends OCI<ContainerRef> {
         this.maxConcurrentDownloads = maxConcurrentDownloads;
     }
 
+    private void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
     /**
      * Allow consumer to set custom executor service for parallel operations. If not set, a default one will be created with the given parallelism
      * @param executorService The executor service
@@ -352,6 +464,48 @@ public final class Registry extends OCI<ContainerRef> {
         this.caContent = caContent;
     }
 
+    /**
+     * Set the upload strategies learned for each registry host
+     * @param uploadStrategies The upload strategies
+     */
+    private void setUploadStrategies(Map<String, UploadStrategy> uploadStrategies) {
+        this.uploadStrategies = uploadStrategies;
+    }
+
+    /**
+     * Set the smallest blob sizes rejected in a single PUT by each registry host
+     * @param rejectedUploadSizes The rejected upload sizes
+     */
+    private void setRejectedUploadSizes(Map<String, Long> rejectedUploadSizes) {
+        this.rejectedUploadSizes = rejectedUploadSizes;
+    }
+
+    /**
+     * Set the blobs known to be present on the registries
+     * @param knownBlobs The known blobs
+     */
+    private void setKnownBlobs(Cache<KnownBlob, Boolean> knownBlobs) {
+        this.knownBlobs = knownBlobs;
+    }
+
+    /**
+     * Set the cache of manifests and indexes fetched by digest
+     * @param manifestCache The manifest cache
+     */
+    private void setManifestCache(ManifestCache manifestCache) {
+        this.manifestCache = manifestCache;
+    }
+
+    /**
+     * Get the upload strategy learned for a registry host
+     * @param registry The registry host
+     * @return The upload strategy, or null if no blob was uploaded yet
+     */
+    @Nullable
+    UploadStrategy getUploadStrategy(String registry) {
+        return uploadStrategies.get(registry);
+    }
+
     /**
      * Set the meter registry for metrics
      * @param meterRegistry The meter registry
@@ -384,6 +538,15 @@ public final class Registry extends OCI<ContainerRef> {
         this.containersPolicy = containersPolicy;
     }
 
+    private void setUploadSessionDirectory(@Nullable Path uploadSessionDirectory) {
+        this.uploadSessionDirectory = uploadSessionDirectory;
+    }
+
+    private void setSegmentedDownload(long segmentedDownloadThreshold, long segmentSize) {
+        this.segmentedDownloadThreshold = segmentedDownloadThreshold;
+        this.segmentSize = segmentSize;
+    }
+
     /**
      * Build the provider
      * @return The provider
@@ -405,11 +568,9 @@ public final class Registry extends OCI<ContainerRef> {
         }
         client = clientBuilder.build();
         if (executorService == null) {
-            executorService = Executors.newFixedThreadPool(maxConcurrentDownloads, r -> {
-                Thread t = new Thread(r);
-                t.setName("layer-transfer-worker-%d".formatted(t.getId()));
-                return t;
-            });
+            executorService = virtualThreads
+                    ? TransferExecutors.virtual(maxConcurrentDownloads)
+                    : TransferExecutors.platform(maxConcurrentDownloads);
         }
         return this;
     }
@@ -445,8 +606,11 @@ public final class Registry extends OCI<ContainerRef> {
      * @return The new registry
      */
     Registry asInsecure() {
-        LOG.debug("Creating a new registry as insecure (HTTP)");
-        return new Builder().from(this).withInsecure(true).build();
+        DerivedKey key = new DerivedKey(registry, true, skipTlsVerify, transportLocked, false);
+        return derivedRegistries.computeIfAbsent(key, k -> {
+            LOG.debug("Creating a new registry as insecure (HTTP)");
+            return new Builder().from(this).withInsecure(true).build();
+        });
     }
 
     /**
@@ -454,12 +618,15 @@ public final class Registry extends OCI<ContainerRef> {
      * @return The new registry
      */
     Registry asSecure() {
-        LOG.debug("Creating a new registry as secure (HTTPS, TLS verified)");
-        return new Builder()
-                .from(this)
-                .withInsecure(false)
-                .withSkipTlsVerify(false)
-                .build();
+        DerivedKey key = new DerivedKey(registry, false, false, transportLocked, false);
+        return derivedRegistries.computeIfAbsent(key, k -> {
+            LOG.debug("Creating a new registry as secure (HTTPS, TLS verified)");
+            return new Builder()
+                    .from(this)
+                    .withInsecure(false)
+                    .withSkipTlsVerify(false)
+                    .build();
+        });
     }
 
     /**
@@ -498,14 +665,21 @@ public final class Registry extends OCI<ContainerRef> {
             mirrorAuthProvider = new NoAuthProvider();
         }
 
-        return new Builder()
+        AuthProvider derivedAuthProvider = mirrorAuthProvider;
+        DerivedKey key = new DerivedKey(
+                mirrorHost.toLowerCase(Locale.ROOT),
+                insecureMirror,
+                insecureMirror && skipTlsVerify,
+                true,
+                derivedAuthProvider != authProvider);
+        return derivedRegistries.computeIfAbsent(key, k -> new Builder()
                 .from(this)
                 .withRegistry(mirrorHost)
                 .withInsecure(insecureMirror)
                 .withSkipTlsVerify(insecureMirror && skipTlsVerify)
                 .withTransportLocked(true)
-                .withAuthProvider(mirrorAuthProvider)
-                .build();
+                .withAuthProvider(derivedAuthProvider)
+                .build());
     }
 
     /**
@@ -695,6 +869,10 @@ public final class Registry extends OCI<ContainerRef> {
         HttpClient.ResponseWrapper<String> response = client.delete(uri, Map.of(), Scopes.of(ref), authProvider);
         logResponse(response);
         handleError(response);
+        ManifestCache.Key key = manifestKey(ref);
+        if (key != null) {
+            manifestCache.invalidate(key);
+        }
     }
 
     @Override
@@ -791,6 +969,7 @@ public final class Registry extends OCI<ContainerRef> {
         }
         URI uri = URI.create("%s://%s".formatted(getScheme(), ref.getBlobsPath(this)));
         HttpClient.ResponseWrapper<String> response = client.delete(uri, Map.of(), Scopes.of(ref), authProvider);
+        forgetBlob(ref);
         logResponse(response);
         handleError(response);
     }
@@ -829,7 +1008,7 @@ public final class Registry extends OCI<ContainerRef> {
         CompletableFuture.allOf(layers.stream()
                         .filter(layer -> layer.getAnnotations().containsKey(Const.ANNOTATION_TITLE))
                         .map(layer -> CompletableFuture.runAsync(
-                                () -> pullLayer(ref, layer, path, options.isOverwrite()), getExecutorService()))
+                                () -> pullLayer(ref, layer, path, options), getExecutorService()))
                         .toArray(CompletableFuture[]::new))
                 .join();
     }
@@ -876,47 +1055,123 @@ public final class Registry extends OCI<ContainerRef> {
     }
 
     @Override
-    protected Layer doPushBlob(ContainerRef ref, Path blob, PushOptions options) {
+    protected Layer doPushBlob(ContainerRef ref, Path blob, String digest, boolean missing, PushOptions options) {
         if (options.isChunked()) {
-            return pushBlobChunked(ref, blob, options.chunkSize());
+            return pushBlobChunked(ref, blob, digest, options.chunkSize(), missing);
         }
-        return super.doPushBlob(ref, blob, options);
+        return pushBlob(ref, blob, digest, Map.of(), missing);
+    }
+
+    /**
+     * Stream the archive of a directory straight to the registry with the chunked upload protocol when chunked
+     * push is requested, the digests being computed while the archive is uploaded. Otherwise, the archive is
+     * packed in a temporary file first.
+     */
+    @Override
+    protected PushedArchive pushArchive(
+            ContainerRef containerRef, LocalPath directory, boolean withDigest, PushOptions options) {
+        // The digest is only known once the archive is fully written
+        if (!options.isChunked() || withDigest) {
+            return super.pushArchive(containerRef, directory, withDigest, options);
+        }
+        ContainerRef ref = containerRef.forRegistry(this).checkBlocked(this);
+        if (ref.isInsecure(this) && !this.isInsecure()) {
+            return copyForNewTransport(ref.getRegistry(), true).pushArchive(ref, directory, withDigest, options);
+        }
+        if (!ref.isInsecure(this) && this.isInsecure()) {
+            return copyForNewTransport(ref.getRegistry(), false).pushArchive(ref, directory, withDigest, options);
+        }
+        ChunkedUploadStream upload = new ChunkedUploadStream(ref, initiateChunkedUpload(ref), options.chunkSize());
+        ArchiveUtils.ArchiveDigests digests;
+        try {
+            digests = ArchiveUtils.tarcompress(
+                    directory, directory.getMediaType(), ref.getAlgorithm(), options.compression(), upload);
+            upload.finish();
+        } catch (RuntimeException e) {
+            // Never commit the remainder of a failed archive
+            cancelUpload(ref, upload.location);
+            throw e;
+        }
+        finalizeChunkedUpload(ref, upload.location, digests.digest());
+        return new PushedArchive(Layer.fromDigest(digests.digest(), digests.size()), digests.contentDigest());
     }
 
     @Override
     public Layer pushBlob(ContainerRef containerRef, Path blob, Map<String, String> annotations) {
-        String digest = containerRef.getAlgorithm().digest(blob);
+        return pushBlob(containerRef, blob, containerRef.getAlgorithm().cachedDigest(blob), annotations, false);
+    }
+
+    /**
+     * Push a blob from a file whose digest is already known
+     * @param containerRef The container ref
+     * @param blob The blob
+     * @param digest The digest of the blob
+     * @param annotations The annotations
+     * @param missing Whether the blob is known to be missing, so its existence is not checked again
+     * @return The layer
+     */
+    private Layer pushBlob(
+            ContainerRef containerRef, Path blob, String digest, Map<String, String> annotations, boolean missing) {
         LOG.debug("Digest: {}", digest);
         ContainerRef ref = containerRef.forRegistry(this).checkBlocked(this);
         if (ref.isInsecure(this) && !this.isInsecure()) {
-            return copyForNewTransport(ref.getRegistry(), true).pushBlob(ref, blob, annotations);
+            return copyForNewTransport(ref.getRegistry(), true).pushBlob(ref, blob, digest, annotations, missing);
         }
         if (!ref.isInsecure(this) && this.isInsecure()) {
-            return copyForNewTransport(ref.getRegistry(), false).pushBlob(ref, blob, annotations);
+            return copyForNewTransport(ref.getRegistry(), false).pushBlob(ref, blob, digest, annotations, missing);
         }
         // This might not works with registries performing HEAD request
-        if (hasBlob(ref.withDigest(digest))) {
+        if (!missing && hasBlob(ref.withDigest(digest))) {
             LOG.info("Blob already exists: {}", digest);
-            return Layer.fromFile(blob, ref.getAlgorithm()).withAnnotations(annotations);
+            return Layer.fromFile(blob, digest).withAnnotations(annotations);
+        }
+        String registryHost = ref.getApiRegistry(this);
+        UploadStrategy strategy = uploadStrategies.get(registryHost);
+        if (strategy == UploadStrategy.CHUNKED) {
+            Long rejectedSize = rejectedUploadSizes.get(registryHost);
+            if (rejectedSize == null || blobSize(blob) >= rejectedSize) {
+                recordBytesSaved(registryHost, strategy, blob);
+                return pushBlobChunked(ref, blob, digest, PushOptions.DEFAULT_CHUNK_SIZE, true)
+                        .withAnnotations(annotations);
+            }
+            // Smaller blobs than the one rejected still fit in a single PUT
+            strategy = UploadStrategy.POST_PUT;
+        }
+        HttpClient.ResponseWrapper<String> response;
+        if (strategy == UploadStrategy.POST_PUT) {
+            // The registry ignores the content of a monolithic POST, only open the upload session
+            recordBytesSaved(registryHost, strategy, blob);
+            response = client.post(
+                    URI.create("%s://%s".formatted(getScheme(), ref.getBlobsUploadPath(this))),
+                    new byte[0],
+                    Map.of(Const.CONTENT_TYPE_HEADER, Const.APPLICATION_OCTET_STREAM_HEADER_VALUE),
+                    Scopes.of(ref),
+                    authProvider);
+        } else {
+            URI uri = URI.create(
+                    "%s://%s".formatted(getScheme(), ref.withDigest(digest).getBlobsUploadDigestPath(this)));
+            response = client.upload(
+                    "POST",
+                    uri,
+                    Map.of(Const.CONTENT_TYPE_HEADER, Const.APPLICATION_OCTET_STREAM_HEADER_VALUE),
+                    blob,
+                    Scopes.of(ref),
+                    authProvider);
         }
-        URI uri = URI.create(
-                "%s://%s".formatted(getScheme(), ref.withDigest(digest).getBlobsUploadDigestPath(this)));
-        HttpClient.ResponseWrapper<String> response = client.upload(
-                "POST",
-                uri,
-                Map.of(Const.CONTENT_TYPE_HEADER, Const.APPLICATION_OCTET_STREAM_HEADER_VALUE),
-                blob,
-                Scopes.of(ref),
-                authProvider);
         logResponse(response);
 
         // Accepted single POST push
         if (response.statusCode() == 201) {
-            return Layer.fromFile(blob, ref.getAlgorithm()).withAnnotations(annotations);
+            uploadStrategies.put(registryHost, UploadStrategy.MONOLITHIC_POST);
+            markBlobPresent(ref.withDigest(digest));
+            return Layer.fromFile(blob, digest).withAnnotations(annotations);
         }
 
         // We need to push via PUT
         if (response.statusCode() == 202) {
+            uploadStrategies.compute(
+                    registryHost,
+                    (host, learned) -> learned == UploadStrategy.CHUNKED ? learned : UploadStrategy.POST_PUT);
             String location = response.headers().get(Const.LOCATION_HEADER.toLowerCase());
             // Ensure location is absolute URI
             if (!location.startsWith("http") && !location.startsWith("https")) {
@@ -934,6 +1189,15 @@ public final class Registry extends OCI<ContainerRef> {
                     blob,
                     Scopes.of(ref),
                     authProvider);
+            // Single request too large for the registry or a proxy in front of it
+            if (response.statusCode() == 413) {
+                LOG.info("Registry {} rejected a single PUT of {}, using chunked uploads", registryHost, digest);
+                cancelUpload(ref, location);
+                rejectedUploadSizes.merge(registryHost, blobSize(blob), Math::min);
+                uploadStrategies.put(registryHost, UploadStrategy.CHUNKED);
+                return pushBlobChunked(ref, blob, digest, PushOptions.DEFAULT_CHUNK_SIZE, true)
+                        .withAnnotations(annotations);
+            }
             if (response.statusCode() == 201) {
                 LOG.debug("Successful push: {}", response.response());
             } else {
@@ -942,23 +1206,78 @@ public final class Registry extends OCI<ContainerRef> {
         }
 
         handleError(response);
-        return Layer.fromFile(blob, containerRef.getAlgorithm()).withAnnotations(annotations);
+        markBlobPresent(ref.withDigest(digest));
+        return Layer.fromFile(blob, digest).withAnnotations(annotations);
+    }
+
+    /**
+     * Record the bytes of a blob not sent in a request ignored by the registry thanks to the learned upload strategy
+     * @param registryHost The registry host
+     * @param strategy The upload strategy
+     * @param blob The blob
+     */
+    private void recordBytesSaved(String registryHost, UploadStrategy strategy, Path blob) {
+        (meterRegistry != null ? meterRegistry : Metrics.globalRegistry)
+                .counter(
+                        Const.METRIC_UPLOAD_BYTES_SAVED,
+                        "registry",
+                        registryHost,
+                        "strategy",
+                        strategy.name().toLowerCase(Locale.ROOT))
+                .increment(blobSize(blob));
+    }
+
+    /**
+     * Get the size of a blob
+     * @param blob The blob
+     * @return The size in bytes
+     */
+    private static long blobSize(Path blob) {
+        try {
+            return Files.size(blob);
+        } catch (IOException e) {
+            throw new OrasException("Failed to read blob size: %s".formatted(blob), e);
+        }
     }
 
     @Override
     public Layer pushBlob(ContainerRef ref, long size, Supplier<InputStream> stream, Map<String, String> annotations) {
+        return pushBlob(ref, size, stream, annotations, false);
+    }
+
+    @Override
+    protected Layer pushMissingBlob(
+            ContainerRef ref, long size, Supplier<InputStream> stream, Map<String, String> annotations) {
+        return pushBlob(ref, size, stream, annotations, true);
+    }
+
+    /**
+     * Push a blob stream
+     * @param ref The container ref with the digest of the blob
+     * @param size The size of the blob
+     * @param stream The supplier of the blob stream
+     * @param annotations The annotations
+     * @param missing Whether the blob is known to be missing, so its existence is not checked again
+     * @return The layer
+     */
+    private Layer pushBlob(
+            ContainerRef ref,
+            long size,
+            Supplier<InputStream> stream,
+            Map<String, String> annotations,
+            boolean missing) {
         String digest = ref.getDigest();
         if (digest == null) {
             throw new OrasException("Digest is required to push blob with stream");
         }
         ContainerRef containerRef = ref.forRegistry(this).checkBlocked(this);
         if (containerRef.isInsecure(this) && !this.isInsecure()) {
-            return copyForNewTransport(ref.getRegistry(), true).pushBlob(ref, size, stream, annotations);
+            return copyForNewTransport(ref.getRegistry(), true).pushBlob(ref, size, stream, annotations, missing);
         }
         if (!containerRef.isInsecure(this) && this.isInsecure()) {
-            return copyForNewTransport(ref.getRegistry(), false).pushBlob(ref, size, stream, annotations);
+            return copyForNewTransport(ref.getRegistry(), false).pushBlob(ref, size, stream, annotations, missing);
         }
-        if (hasBlob(containerRef)) {
+        if (!missing && hasBlob(containerRef)) {
             LOG.info("Blob already exists: {}", digest);
             return Layer.fromDigest(digest, size).withAnnotations(annotations);
         }
@@ -997,9 +1316,62 @@ public final class Registry extends OCI<ContainerRef> {
             throw new OrasException("Failed to push layer: %s".formatted(response.response()));
         }
         handleError(response);
+        markBlobPresent(containerRef);
         return Layer.fromDigest(digest, size).withAnnotations(annotations);
     }
 
+    /**
+     * Push a blob stream without spooling it to disk. A stream fitting in a single chunk is pushed in one request,
+     * larger streams are sent with the chunked upload protocol while being hashed, the digest being supplied
+     * when the upload is finalized. The total size does not need to be known.
+     * @param containerRef The container ref, with an optional digest to verify the content against
+     * @param input The input stream
+     * @return The layer
+     */
+    @Override
+    public Layer pushBlob(ContainerRef containerRef, InputStream input) {
+        ContainerRef ref = containerRef.forRegistry(this).checkBlocked(this);
+        if (ref.isInsecure(this) && !this.isInsecure()) {
+            return copyForNewTransport(ref.getRegistry(), true).pushBlob(ref, input);
+        }
+        if (!ref.isInsecure(this) && this.isInsecure()) {
+            return copyForNewTransport(ref.getRegistry(), false).pushBlob(ref, input);
+        }
+        long chunkSize = PushOptions.DEFAULT_CHUNK_SIZE;
+        String pinned = ref.getDigest();
+        try {
+            byte[] first = input.readNBytes((int) chunkSize);
+            if (first.length < chunkSize) {
+                // Verify the pinned digest before anything is sent
+                String digest = ref.getAlgorithm().digest(first);
+                if (pinned != null && !pinned.equals(digest)) {
+                    throw new OrasException("Digest mismatch: %s != %s".formatted(pinned, digest));
+                }
+                pushBlob(ref, first);
+                return Layer.fromDigest(digest, first.length).withMediaType(Const.DEFAULT_BLOB_MEDIA_TYPE);
+            }
+            MessageDigest messageDigest = MessageDigest.getInstance(ref.getAlgorithm().getAlgorithmName());
+            messageDigest.update(first);
+            InputStream stream = new SequenceInputStream(
+                    new ByteArrayInputStream(first), new DigestInputStream(input, messageDigest));
+            String location = initiateChunkedUpload(ref);
+            CountingChunkListener listener = new CountingChunkListener();
+            location = uploadChunks(ref, ChunkSource.of(stream, chunkSize), 0, -1, chunkSize, location, listener);
+            String digest = "%s:%s"
+                    .formatted(ref.getAlgorithm().getPrefix(), HexFormat.of().formatHex(messageDigest.digest()));
+            if (pinned != null && !pinned.equals(digest)) {
+                cancelUpload(ref, location);
+                throw new OrasException("Digest mismatch: %s != %s".formatted(pinned, digest));
+            }
+            finalizeChunkedUpload(ref, location, digest);
+            return Layer.fromDigest(digest, listener.size).withMediaType(Const.DEFAULT_BLOB_MEDIA_TYPE);
+        } catch (IOException e) {
+            throw new OrasException("Failed to push blob", e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new OrasException("Unsupported digest algorithm: %s".formatted(ref.getAlgorithm()), e);
+        }
+    }
+
     @Override
     public Layer pushBlob(ContainerRef containerRef, byte[] data) {
         String digest = containerRef.getAlgorithm().digest(data);
@@ -1029,6 +1401,7 @@ public final class Registry extends OCI<ContainerRef> {
 
         // Accepted single POST push
         if (response.statusCode() == 201) {
+            markBlobPresent(ref.withDigest(digest));
             return Layer.fromData(ref, data);
         }
 
@@ -1058,6 +1431,7 @@ public final class Registry extends OCI<ContainerRef> {
         }
 
         handleError(response);
+        markBlobPresent(ref.withDigest(digest));
         return Layer.fromData(ref, data);
     }
 
@@ -1074,27 +1448,68 @@ public final class Registry extends OCI<ContainerRef> {
         if (chunkSize <= 0) {
             throw new OrasException("chunkSize must be greater than 0");
         }
-        String digest = containerRef.getAlgorithm().digest(blob);
+        return pushBlobChunked(containerRef, blob, containerRef.getAlgorithm().cachedDigest(blob), chunkSize, false);
+    }
+
+    /**
+     * Push a blob from a file whose digest is already known using chunked upload
+     * @param containerRef The container ref
+     * @param blob The blob
+     * @param digest The digest of the blob
+     * @param chunkSize Maximum number of bytes per chunk
+     * @param missing Whether the blob is known to be missing, so its existence is not checked again
+     * @return The layer
+     */
+    private Layer pushBlobChunked(
+            ContainerRef containerRef, Path blob, String digest, long chunkSize, boolean missing) {
         ContainerRef ref = containerRef.forRegistry(this).checkBlocked(this);
         if (ref.isInsecure(this) && !this.isInsecure()) {
-            return copyForNewTransport(ref.getRegistry(), true).pushBlobChunked(ref, blob, chunkSize);
+            return copyForNewTransport(ref.getRegistry(), true).pushBlobChunked(ref, blob, digest, chunkSize, missing);
         }
         if (!ref.isInsecure(this) && this.isInsecure()) {
-            return copyForNewTransport(ref.getRegistry(), false).pushBlobChunked(ref, blob, chunkSize);
+            return copyForNewTransport(ref.getRegistry(), false).pushBlobChunked(ref, blob, digest, chunkSize, missing);
         }
-        if (hasBlob(ref.withDigest(digest))) {
+        if (!missing && hasBlob(ref.withDigest(digest))) {
             LOG.info("Blob already exists: {}", digest);
-            return Layer.fromFile(blob, ref.getAlgorithm());
-        }
-        String location = initiateChunkedUpload(ref);
-        try (InputStream is = Files.newInputStream(blob)) {
-            long totalSize = Files.size(blob);
-            location = uploadChunks(ref, is, totalSize, chunkSize, location);
+            return Layer.fromFile(blob, digest);
+        }
+        UploadSessionStore store =
+                uploadSessionDirectory != null ? new UploadSessionStore(uploadSessionDirectory) : null;
+        String sessionKey = "%s/%s@%s".formatted(ref.getApiRegistry(this), ref.getFullRepository(this), digest);
+        try (FileChannel channel = FileChannel.open(blob, StandardOpenOption.READ);
+                ChunkSource source = ChunkSource.of(channel, getExecutorService())) {
+            long totalSize = channel.size();
+            String location = null;
+            long offset = 0;
+            // Resume a persisted session if the registry still knows it
+            UploadSessionStore.Session session = store != null ? store.load(sessionKey) : null;
+            if (session != null) {
+                UploadStatus status = queryUploadStatus(ref, session.location());
+                if (status != null && status.offset() <= totalSize) {
+                    LOG.info("Resuming chunked upload of {} at offset {}", digest, status.offset());
+                    location = status.location();
+                    offset = status.offset();
+                } else {
+                    store.delete(sessionKey);
+                }
+            }
+            if (location == null) {
+                location = initiateChunkedUpload(ref);
+            }
+            UploadSessionStore finalStore = store;
+            ChunkListener listener = finalStore == null
+                    ? ChunkListener.NONE
+                    : (loc, committed) -> finalStore.save(sessionKey, new UploadSessionStore.Session(loc, committed));
+            listener.onChunk(location, offset);
+            location = uploadChunks(ref, source, offset, totalSize, chunkSize, location, listener);
+            finalizeChunkedUpload(ref, location, digest);
+            if (store != null) {
+                store.delete(sessionKey);
+            }
         } catch (IOException e) {
             throw new OrasException("Failed to read blob for chunked upload: %s".formatted(blob), e);
         }
-        finalizeChunkedUpload(ref, location, digest);
-        return Layer.fromFile(blob, ref.getAlgorithm());
+        return Layer.fromFile(blob, digest);
     }
 
     /**
@@ -1127,7 +1542,8 @@ public final class Registry extends OCI<ContainerRef> {
             return Layer.fromDigest(digest, totalSize);
         }
         String location = initiateChunkedUpload(ref);
-        location = uploadChunks(ref, stream, totalSize, chunkSize, location);
+        location = uploadChunks(
+                ref, ChunkSource.of(stream, chunkSize), 0, totalSize, chunkSize, location, ChunkListener.NONE);
         finalizeChunkedUpload(ref, location, digest);
         return Layer.fromDigest(digest, totalSize);
     }
@@ -1153,56 +1569,253 @@ public final class Registry extends OCI<ContainerRef> {
         return location;
     }
 
-    private String uploadChunks(ContainerRef ref, InputStream stream, long totalSize, long chunkSize, String location) {
-        long offset = 0;
-        byte[] buffer = new byte[(int) Math.min(chunkSize, Integer.MAX_VALUE)];
+    /**
+     * Callback invoked once a chunk is acknowledged by the registry
+     */
+    @FunctionalInterface
+    private interface ChunkListener {
+
+        /**
+         * No-op listener
+         */
+        ChunkListener NONE = (location, offset) -> {};
+
+        /**
+         * Called with the current session location and the next offset to upload
+         * @param location The session location
+         * @param offset The committed offset
+         */
+        void onChunk(String location, long offset);
+    }
+
+    /**
+     * Listener keeping track of the number of bytes uploaded
+     */
+    private static final class CountingChunkListener implements ChunkListener {
+
+        private long size;
+
+        @Override
+        public void onChunk(String location, long offset) {
+            this.size = offset;
+        }
+    }
+
+    /**
+     * Output stream uploading a blob as chunks of a fixed size while it is written. The last chunk is only
+     * uploaded by {@link #finish()}, closing the stream does not upload anything so that a failed write never
+     * commits a partial chunk.
+     */
+    private final class ChunkedUploadStream extends OutputStream {
+
+        private final ContainerRef ref;
+        private final ByteBuffer buffer;
+        private String location;
+        private long offset;
+        private boolean finished;
+
+        private ChunkedUploadStream(ContainerRef ref, String location, long chunkSize) {
+            this.ref = ref;
+            this.location = location;
+            this.buffer = ByteBuffer.allocate((int) Math.min(chunkSize, Integer.MAX_VALUE - 8));
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (!buffer.hasRemaining()) {
+                flushChunk();
+            }
+            buffer.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (!buffer.hasRemaining()) {
+                    flushChunk();
+                }
+                int length = Math.min(len, buffer.remaining());
+                buffer.put(b, off, length);
+                off += length;
+                len -= length;
+            }
+        }
+
+        /**
+         * Upload the last chunk once the blob is completely written
+         */
+        private void finish() {
+            if (!finished) {
+                finished = true;
+                flushChunk();
+            }
+        }
+
+        private void flushChunk() {
+            buffer.flip();
+            if (buffer.hasRemaining()) {
+                int length = buffer.remaining();
+                location = uploadChunk(ref, buffer, offset, location);
+                LOG.debug("Uploaded chunk {}-{} ({} bytes)", offset, offset + length - 1, length);
+                offset += length;
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Status of an upload session
+     * @param location The session location, possibly updated by the registry
+     * @param offset The next offset to upload (end of the committed range + 1)
+     */
+    private record UploadStatus(String location, long offset) {}
+
+    /**
+     * Upload the source as chunks starting at the given offset. Chunks are sent straight from the buffers of the
+     * source, without copy.
+     */
+    private String uploadChunks(
+            ContainerRef ref,
+            ChunkSource source,
+            long offset,
+            long totalSize,
+            long chunkSize,
+            String location,
+            ChunkListener listener) {
         try {
-            while (offset < totalSize) {
-                long remaining = totalSize - offset;
-                int toRead = (int) Math.min(chunkSize, remaining);
-                int read = stream.readNBytes(buffer, 0, toRead);
+            // A negative total size means the source is read until exhausted
+            while (totalSize < 0 || offset < totalSize) {
+                long remaining = totalSize < 0 ? chunkSize : totalSize - offset;
+                int toRead = (int) Math.min(Math.min(chunkSize, remaining), Integer.MAX_VALUE);
+                ByteBuffer chunk = source.next(offset, toRead);
+                int read = chunk.remaining();
                 if (read == 0) {
                     break;
                 }
-                long rangeEnd = offset + read - 1;
-                String contentRange = "%d-%d".formatted(offset, rangeEnd);
-                final byte[] chunk = java.util.Arrays.copyOf(buffer, read);
-                URI patchUri = URI.create(location);
+                location = uploadChunk(ref, chunk, offset, location);
+                offset += read;
+                listener.onChunk(location, offset);
+                LOG.debug("Uploaded chunk {}-{} ({} bytes)", offset - read, offset - 1, read);
+            }
+        } catch (IOException e) {
+            throw new OrasException("Failed during chunked blob upload", e);
+        }
+        return location;
+    }
+
+    /**
+     * Upload a single chunk at the given offset. When the PATCH fails, the upload session status is queried to learn
+     * the committed range and only the missing part of the chunk is sent again.
+     * @param ref The container ref
+     * @param chunk The chunk
+     * @param offset The offset of the chunk in the blob
+     * @param location The session location
+     * @return The session location after the chunk is acknowledged
+     */
+    private String uploadChunk(ContainerRef ref, ByteBuffer chunk, long offset, String location) {
+        int read = chunk.remaining();
+        int sent = 0;
+        int attempts = 0;
+        while (sent < read) {
+            long rangeStart = offset + sent;
+            long rangeEnd = offset + read - 1;
+            String contentRange = "%d-%d".formatted(rangeStart, rangeEnd);
+            ByteBuffer body = chunk.duplicate().position(chunk.position() + sent);
+            OrasException failure;
+            try {
                 HttpClient.ResponseWrapper<String> patchResponse = client.patch(
-                        patchUri,
-                        read,
+                        URI.create(location),
+                        body,
                         Map.of(
                                 Const.CONTENT_TYPE_HEADER,
                                 Const.APPLICATION_OCTET_STREAM_HEADER_VALUE,
                                 Const.CONTENT_RANGE_HEADER,
                                 contentRange),
-                        () -> new java.io.ByteArrayInputStream(chunk),
                         Scopes.of(ref),
                         authProvider);
                 logResponse(patchResponse);
-                if (patchResponse.statusCode() != 202) {
-                    throw new OrasException("Chunked upload PATCH failed for range %s: status %d"
-                            .formatted(contentRange, patchResponse.statusCode()));
-                }
-                // The registry MAY return a new location after each PATCH
-                String newLocation = patchResponse.headers().get(Const.LOCATION_HEADER.toLowerCase());
-                if (newLocation != null && !newLocation.isBlank()) {
-                    if (!newLocation.startsWith("http://") && !newLocation.startsWith("https://")) {
-                        newLocation = "%s://%s/%s"
-                                .formatted(getScheme(), ref.getApiRegistry(this), newLocation.replaceFirst("^/", ""));
-                    }
-                    location = newLocation;
-                    LOG.debug("Chunked upload location updated: {}", location);
+                if (patchResponse.statusCode() == 202) {
+                    // The registry MAY return a new location after each PATCH
+                    location = resolveUploadLocation(ref, patchResponse.headers(), location);
+                    sent = read;
+                    break;
                 }
-                offset += read;
-                LOG.debug("Uploaded chunk {}-{} ({} bytes)", offset - read, rangeEnd, read);
+                failure = new OrasException("Chunked upload PATCH failed for range %s: status %d"
+                        .formatted(contentRange, patchResponse.statusCode()));
+            } catch (OrasException e) {
+                failure = e;
             }
-        } catch (IOException e) {
-            throw new OrasException("Failed during chunked blob upload", e);
+            // Learn what the registry committed and continue from there
+            UploadStatus status = ++attempts < maxRetries ? queryUploadStatus(ref, location) : null;
+            if (status == null) {
+                throw failure;
+            }
+            if (status.offset() < offset || status.offset() > offset + read) {
+                throw new OrasException("Cannot resume chunked upload at offset %d outside of chunk %d-%d"
+                        .formatted(status.offset(), offset, offset + read - 1));
+            }
+            LOG.info("Resuming chunked upload at offset {} after: {}", status.offset(), failure.getMessage());
+            location = status.location();
+            sent = (int) (status.offset() - offset);
         }
         return location;
     }
 
+    /**
+     * Query the status of an upload session
+     * @param ref The container ref
+     * @param location The session location
+     * @return The status or null if the session is unknown or the status cannot be determined
+     */
+    private @Nullable UploadStatus queryUploadStatus(ContainerRef ref, String location) {
+        HttpClient.ResponseWrapper<String> response;
+        try {
+            response = client.get(URI.create(location), Map.of(), Scopes.of(ref), authProvider);
+        } catch (OrasException e) {
+            LOG.debug("Failed to query upload status: {}", e.getMessage());
+            return null;
+        }
+        logResponse(response);
+        if (response.statusCode() != 204) {
+            LOG.debug("Upload status not available: status {}", response.statusCode());
+            return null;
+        }
+        long offset = 0;
+        String range = response.headers().get(Const.RANGE_HEADER.toLowerCase());
+        if (range != null && !range.isBlank()) {
+            try {
+                // Committed range is inclusive, e.g. 0-1023
+                offset = Long.parseLong(range.substring(range.indexOf('-') + 1).trim()) + 1;
+            } catch (NumberFormatException e) {
+                LOG.debug("Invalid upload status range: {}", range);
+                return null;
+            }
+        }
+        return new UploadStatus(resolveUploadLocation(ref, response.headers(), location), offset);
+    }
+
+    /**
+     * Resolve the upload location from response headers, keeping the current one when absent
+     * @param ref The container ref
+     * @param headers The response headers
+     * @param current The current location
+     * @return The absolute location
+     */
+    private String resolveUploadLocation(ContainerRef ref, Map<String, String> headers, String current) {
+        String newLocation = headers.get(Const.LOCATION_HEADER.toLowerCase());
+        if (newLocation == null || newLocation.isBlank()) {
+            return current;
+        }
+        if (!newLocation.startsWith("http://") && !newLocation.startsWith("https://")) {
+            newLocation = "%s://%s/%s"
+                    .formatted(getScheme(), ref.getApiRegistry(this), newLocation.replaceFirst("^/", ""));
+        }
+        if (!newLocation.equals(current)) {
+            LOG.debug("Chunked upload location updated: {}", newLocation);
+        }
+        return newLocation;
+    }
+
     private void finalizeChunkedUpload(ContainerRef ref, String location, String digest) {
         URI putUri = createLocationWithDigest(location, digest);
         HttpClient.ResponseWrapper<String> putResponse = client.put(
@@ -1217,6 +1830,26 @@ public final class Registry extends OCI<ContainerRef> {
                     "Failed to finalize chunked blob upload: status %d".formatted(putResponse.statusCode()));
         }
         LOG.debug("Chunked upload finalized successfully for digest: {}", digest);
+        markBlobPresent(ref.withDigest(digest));
+    }
+
+    /**
+     * Cancel an upload session that will not be finalized, so the registry can release it. Failures are only logged
+     * since the registry eventually expires abandoned sessions.
+     * @param ref The container ref
+     * @param location The session location
+     */
+    private void cancelUpload(ContainerRef ref, String location) {
+        try {
+            HttpClient.ResponseWrapper<String> response =
+                    client.delete(URI.create(location), Map.of(), Scopes.of(ref), authProvider);
+            logResponse(response);
+            if (response.statusCode() >= 400) {
+                LOG.debug("Failed to cancel upload session: status {}", response.statusCode());
+            }
+        } catch (OrasException e) {
+            LOG.debug("Failed to cancel upload session: {}", e.getMessage());
+        }
     }
 
     /**
@@ -1224,11 +1857,49 @@ public final class Registry extends OCI<ContainerRef> {
      * @param containerRef The container
      * @return True if the blob exists
      */
-    private boolean hasBlob(ContainerRef containerRef) {
+    @Override
+    protected boolean hasBlob(ContainerRef containerRef) {
+        KnownBlob key = knownBlob(containerRef);
+        if (key != null && knownBlobs.getIfPresent(key) != null) {
+            LOG.debug("Blob known to be present: {}", key.digest());
+            return true;
+        }
         HttpClient.ResponseWrapper<String> response = headBlob(containerRef);
         return response.statusCode() == 200;
     }
 
+    /**
+     * Remember that a blob is present on the registry
+     * @param containerRef The container ref with the digest of the blob
+     */
+    private void markBlobPresent(ContainerRef containerRef) {
+        KnownBlob key = knownBlob(containerRef);
+        if (key != null) {
+            knownBlobs.put(key, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Forget that a blob is present on the registry
+     * @param containerRef The container ref with the digest of the blob
+     */
+    private void forgetBlob(ContainerRef containerRef) {
+        KnownBlob key = knownBlob(containerRef);
+        if (key != null) {
+            knownBlobs.invalidate(key);
+        }
+    }
+
+    private @Nullable KnownBlob knownBlob(ContainerRef containerRef) {
+        String digest = containerRef.getDigest();
+        if (digest == null) {
+            return null;
+        }
+        ContainerRef ref = containerRef.forRegistry(this);
+        return new KnownBlob(
+                ref.getApiRegistry(this), ref.getFullRepository(this), digest, authProvider.getIdentity(ref));
+    }
+
     private HttpClient.ResponseWrapper<String> headBlob(ContainerRef containerRef) {
         ContainerRef ref = containerRef.forRegistry(this).checkBlocked(this);
         if (ref.isInsecure(this) && !this.isInsecure()) {
@@ -1244,6 +1915,9 @@ public final class Registry extends OCI<ContainerRef> {
                 Scopes.of(containerRef),
                 authProvider);
         logResponse(response);
+        if (response.statusCode() == 200) {
+            markBlobPresent(ref);
+        }
         return response;
     }
 
@@ -1274,25 +1948,205 @@ public final class Registry extends OCI<ContainerRef> {
     }
 
     private void fetchBlobDirect(ContainerRef containerRef, Path path) {
+        fetchBlobDirect(containerRef, path, null);
+    }
+
+    private void fetchBlobDirect(ContainerRef containerRef, Path path, @Nullable Long knownSize) {
         ContainerRef ref = containerRef.forRegistry(this).checkBlocked(this);
         if (ref.isInsecure(this) && !this.isInsecure()) {
-            asInsecure().fetchBlobDirect(containerRef, path);
+            asInsecure().fetchBlobDirect(containerRef, path, knownSize);
             return;
         }
         if (!ref.isInsecure(this) && this.isInsecure()) {
-            asSecure().fetchBlobDirect(containerRef, path);
+            asSecure().fetchBlobDirect(containerRef, path, knownSize);
             return;
         }
+        if (segmentedDownloadThreshold > 0 && ref.getDigest() != null) {
+            long size = knownSize != null ? knownSize : blobSize(ref);
+            if (size >= segmentedDownloadThreshold && size > segmentSize) {
+                fetchBlobSegmented(ref, path, size);
+                return;
+            }
+        }
+        URI uri = URI.create("%s://%s".formatted(getScheme(), ref.getBlobsPath(this)));
+        // Hash while writing to a temporary file and only replace the target once the digests match.
+        // Retries after a network failure resume the partial file.
+        DigestingBodyHandler handler = new DigestingBodyHandler(path, ref.getDigest());
+        HttpClient.ResponseWrapper<DigestingBodyHandler.@Nullable Result> response;
+        try {
+            response = client.download(
+                    uri,
+                    Map.of(Const.ACCEPT_HEADER, Const.APPLICATION_OCTET_STREAM_HEADER_VALUE),
+                    handler,
+                    Scopes.of(ref),
+                    authProvider);
+        } catch (RuntimeException e) {
+            handler.discard();
+            throw e;
+        }
+        logResponse(response);
+        DigestingBodyHandler.Result result = response.response();
+        if (result == null) {
+            handler.discard();
+            handleError(response);
+            throw new OrasException("Unexpected status %d when fetching blob".formatted(response.statusCode()));
+        }
+        result.verify(expectedBlobDigests(ref, response.headers()));
+        result.commit(path);
+        markBlobPresent(ref);
+    }
+
+    /**
+     * Get the size of a blob from a HEAD request
+     * @param ref The container ref
+     * @return The size or -1 if unknown
+     */
+    private long blobSize(ContainerRef ref) {
+        HttpClient.ResponseWrapper<String> response = headBlob(ref);
+        String length = response.headers().get(Const.CONTENT_LENGTH_HEADER.toLowerCase());
+        if (response.statusCode() != 200 || length == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(length);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Download a blob as parallel byte ranges written at their offset in a preallocated temporary file.
+     * The calling thread fetches the first range to detect registries ignoring the {@code Range} header, then
+     * takes part in fetching the remaining ranges together with at most {@code parallelism - 1} helper tasks on the
+     * registry executor. The caller may itself run on that executor, so once it runs out of ranges it cancels the
+     * helpers that never started and only waits for the ones already fetching a range.
+     * @param ref The container ref with digest
+     * @param path The target path
+     * @param size The size of the blob
+     */
+    private void fetchBlobSegmented(ContainerRef ref, Path path, long size) {
         URI uri = URI.create("%s://%s".formatted(getScheme(), ref.getBlobsPath(this)));
-        HttpClient.ResponseWrapper<Path> response = client.download(
+        int segments = (int) ((size + segmentSize - 1) / segmentSize);
+        LOG.debug("Downloading blob {} of {} bytes in {} segments", ref.getDigest(), size, segments);
+        Path temp = DigestingBodyHandler.createTempFile(path);
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            // Preallocate so ranges can be written in any order
+            try (RandomAccessFile file = new RandomAccessFile(temp.toFile(), "rw")) {
+                file.setLength(size);
+            }
+            HttpClient.ResponseWrapper<Long> first = fetchSegment(ref, uri, channel, 0, size);
+            Map<String, String> headers = first.headers();
+            if (first.statusCode() == 200) {
+                LOG.debug("Registry ignored range request, blob downloaded in a single stream");
+                if (first.response() != size) {
+                    throw new OrasException(
+                            "Unexpected blob size %d, expected %d".formatted(first.response(), size));
+                }
+            } else {
+                AtomicInteger next = new AtomicInteger(1);
+                AtomicReference<@Nullable RuntimeException> failure = new AtomicReference<>();
+                Runnable worker = () -> {
+                    int index;
+                    while (failure.get() == null && (index = next.getAndIncrement()) < segments) {
+                        try {
+                            HttpClient.ResponseWrapper<Long> response =
+                                    fetchSegment(ref, uri, channel, index * segmentSize, size);
+                            if (response.statusCode() != 206) {
+                                throw new OrasException("Unexpected status %d for blob range"
+                                        .formatted(response.statusCode()));
+                            }
+                        } catch (RuntimeException e) {
+                            failure.compareAndSet(null, e);
+                        }
+                    }
+                };
+                int helpers = Math.min(maxConcurrentDownloads, segments - 1) - 1;
+                List<AtomicBoolean> claims = new ArrayList<>(helpers);
+                List<CompletableFuture<Void>> tasks = new ArrayList<>(helpers);
+                for (int i = 0; i < helpers; i++) {
+                    AtomicBoolean claim = new AtomicBoolean();
+                    claims.add(claim);
+                    tasks.add(CompletableFuture.runAsync(
+                            () -> {
+                                if (claim.compareAndSet(false, true)) {
+                                    worker.run();
+                                }
+                            },
+                            getExecutorService()));
+                }
+                worker.run();
+                for (int i = 0; i < helpers; i++) {
+                    if (claims.get(i).compareAndSet(false, true)) {
+                        // Never started, possibly queued behind the caller itself
+                        tasks.get(i).cancel(false);
+                    } else {
+                        tasks.get(i).join();
+                    }
+                }
+                RuntimeException e = failure.get();
+                if (e != null) {
+                    throw e;
+                }
+            }
+            channel.force(false);
+            // Hash once per expected algorithm now that every range is on disk
+            Map<String, String> digests = new HashMap<>();
+            List<String> expected = expectedBlobDigests(ref, headers);
+            for (String digest : expected) {
+                SupportedAlgorithm algorithm = SupportedAlgorithm.fromDigest(digest);
+                digests.computeIfAbsent(algorithm.getPrefix(), p -> algorithm.digest(temp));
+            }
+            DigestingBodyHandler.Result result = new DigestingBodyHandler.Result(temp, size, digests);
+            result.verify(expected);
+            result.commit(path);
+        } catch (IOException | RuntimeException e) {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ex) {
+                LOG.warn("Failed to delete temporary file {}: {}", temp, ex.getMessage());
+            }
+            if (e instanceof OrasException oe) {
+                throw oe;
+            }
+            throw new OrasException("Failed to download blob to %s".formatted(path), e);
+        }
+    }
+
+    /**
+     * Fetch a single byte range of a blob into the shared channel
+     * @param ref The container ref
+     * @param uri The blob URI
+     * @param channel The shared file channel
+     * @param offset The range offset
+     * @param size The size of the blob
+     * @return The response with the number of bytes written
+     */
+    private HttpClient.ResponseWrapper<Long> fetchSegment(
+            ContainerRef ref, URI uri, FileChannel channel, long offset, long size) {
+        long end = Math.min(offset + segmentSize, size) - 1;
+        HttpClient.ResponseWrapper<Long> response = client.download(
                 uri,
-                Map.of(Const.ACCEPT_HEADER, Const.APPLICATION_OCTET_STREAM_HEADER_VALUE),
-                path,
+                Map.of(
+                        Const.ACCEPT_HEADER,
+                        Const.APPLICATION_OCTET_STREAM_HEADER_VALUE,
+                        Const.RANGE_HEADER,
+                        "bytes=%d-%d".formatted(offset, end)),
+                new RangeBodyHandler(channel, offset),
                 Scopes.of(ref),
                 authProvider);
         logResponse(response);
         handleError(response);
-        verifyBlobDigest(ref, path, response.headers());
+        if (response.statusCode() == 206) {
+            String contentRange = response.headers().get(Const.CONTENT_RANGE_HEADER.toLowerCase());
+            if (contentRange != null && !contentRange.startsWith("bytes %d-".formatted(offset))) {
+                throw new OrasException("Unexpected content range '%s' for offset %d".formatted(contentRange, offset));
+            }
+            if (response.response() != end - offset + 1) {
+                throw new OrasException("Incomplete blob range %d-%d: received %d bytes"
+                        .formatted(offset, end, response.response()));
+            }
+        }
+        return response;
     }
 
     @Override
@@ -1316,6 +2170,7 @@ public final class Registry extends OCI<ContainerRef> {
                 authProvider);
         logResponse(response);
         handleError(response);
+        markBlobPresent(ref);
         // Verify the content digest incrementally
         List<String> expected = expectedBlobDigests(ref, response.headers());
         if (expected.isEmpty()) {
@@ -1353,6 +2208,13 @@ public final class Registry extends OCI<ContainerRef> {
 
     @Override
     public Manifest getManifest(ContainerRef containerRef) {
+        ManifestCache.Key key = manifestKey(containerRef);
+        ManifestCache.Entry cached = key != null ? manifestCache.get(key) : null;
+        if (cached != null && cached.parsed() instanceof Manifest manifest) {
+            LOG.debug("Manifest {} found in cache", key.digest());
+            verifyContainersPolicy(containerRef, key.digest());
+            return manifest;
+        }
         Descriptor descriptor = getDescriptor(containerRef);
         String contentType = descriptor.getMediaType();
         if (!isManifestMediaType(contentType)) {
@@ -1380,11 +2242,19 @@ public final class Registry extends OCI<ContainerRef> {
 
         verifyContainersPolicy(containerRef, digest);
 
+        cacheParsed(containerRef.withDigest(digest), manifest);
         return manifest;
     }
 
     @Override
     public Index getIndex(ContainerRef containerRef) {
+        ManifestCache.Key key = manifestKey(containerRef);
+        ManifestCache.Entry cached = key != null ? manifestCache.get(key) : null;
+        if (cached != null && cached.parsed() instanceof Index index) {
+            LOG.debug("Index {} found in cache", key.digest());
+            verifyContainersPolicy(containerRef, key.digest());
+            return index;
+        }
         Descriptor descriptor = getDescriptor(containerRef);
         String contentType = descriptor.getMediaType();
         if (!isIndexMediaType(contentType)) {
@@ -1403,26 +2273,88 @@ public final class Registry extends OCI<ContainerRef> {
         }
         ManifestDescriptor manifestDescriptor = ManifestDescriptor.of(descriptor, digest);
         verifyContainersPolicy(containerRef, digest);
-        return Index.fromJson(json).withDescriptor(manifestDescriptor);
+        Index index = Index.fromJson(json).withDescriptor(manifestDescriptor);
+        cacheParsed(containerRef.withDigest(digest), index);
+        return index;
     }
 
     @Override
     public Descriptor getDescriptor(ContainerRef containerRef) {
+        // Content pinned by digest never changes, it is only fetched once
+        ManifestCache.Key key = manifestKey(containerRef);
+        ManifestCache.Entry cached = key != null ? manifestCache.get(key) : null;
+        if (cached != null) {
+            LOG.debug("Descriptor {} found in cache", key.digest());
+            return Descriptor.of(key.digest(), cached.size(), cached.mediaType()).withJson(cached.json());
+        }
         HttpClient.ResponseWrapper<String> response = getManifestResponse(containerRef);
         logResponse(response);
         handleError(response);
         String json = response.response();
+        byte[] content = json.getBytes(StandardCharsets.UTF_8);
         // When the reference is pinned to a digest, verify the returned manifest/index bytes against it
-        verifyPinnedDigest(containerRef, json.getBytes(StandardCharsets.UTF_8));
+        verifyPinnedDigest(containerRef, content);
         String size = response.headers().get(Const.CONTENT_LENGTH_HEADER.toLowerCase());
         String contentType = response.headers().get(Const.CONTENT_TYPE_HEADER.toLowerCase());
-        return Descriptor.of(
-                        validateDockerContentDigest(response),
-                        Long.parseLong(size == null ? String.valueOf(json.length()) : size),
-                        contentType)
+        String digest = validateDockerContentDigest(response);
+        cacheContent(containerRef, digest, contentType, content, json);
+        return Descriptor.of(digest, Long.parseLong(size == null ? String.valueOf(json.length()) : size), contentType)
                 .withJson(json);
     }
 
+    /**
+     * Cache manifest or index content once verified against its digest. Content fetched by tag is only cached
+     * when it matches the digest announced by the registry.
+     * @param containerRef The reference the content was requested for
+     * @param headerDigest The digest announced by the registry or null
+     * @param contentType The media type or null
+     * @param content The bytes returned by the registry
+     * @param json The content
+     */
+    private void cacheContent(
+            ContainerRef containerRef,
+            @Nullable String headerDigest,
+            @Nullable String contentType,
+            byte[] content,
+            String json) {
+        if (contentType == null) {
+            return;
+        }
+        ManifestCache.Key key = manifestKey(containerRef);
+        if (key == null && headerDigest != null) {
+            // The Docker-Content-Digest header was validated, its algorithm is supported
+            if (!headerDigest.equals(SupportedAlgorithm.fromDigest(headerDigest).digest(content))) {
+                return;
+            }
+            key = manifestKey(containerRef.withDigest(headerDigest));
+        }
+        if (key != null) {
+            manifestCache.put(key, contentType, json);
+        }
+    }
+
+    /**
+     * Attach a parsed manifest or index to its cached content
+     * @param containerRef The reference with the digest of the content
+     * @param parsed The manifest or index
+     */
+    private void cacheParsed(ContainerRef containerRef, Descriptor parsed) {
+        ManifestCache.Key key = manifestKey(containerRef);
+        if (key != null) {
+            manifestCache.put(key, parsed);
+        }
+    }
+
+    private ManifestCache.@Nullable Key manifestKey(ContainerRef containerRef) {
+        String digest = containerRef.getDigest();
+        if (digest == null || !SupportedAlgorithm.isSupported(digest)) {
+            return null;
+        }
+        ContainerRef ref = containerRef.forRegistry(this);
+        return new ManifestCache.Key(
+                ref.getApiRegistry(this), ref.getFullRepository(this), digest, authProvider.getIdentity(ref));
+    }
+
     @Override
     public Descriptor probeDescriptor(ContainerRef ref) {
         ResolvedRegistry resolvedRegistry = getResolvedHeaders(ref);
@@ -1579,25 +2511,6 @@ public final class Registry extends OCI<ContainerRef> {
         ensureDigest(digest, SupportedAlgorithm.fromDigest(digest).digest(content));
     }
 
-    /**
-     * Verify a downloaded blob against every digest that applies (pinned or from header)
-     * @param ref The reference the blob was requested for
-     * @param content The path the registry response was written to
-     * @param headers The response headers
-     */
-    private void verifyBlobDigest(ContainerRef ref, Path content, Map<String, String> headers) {
-        String pinned = ref.getDigest();
-        String verified = null;
-        if (pinned != null && SupportedAlgorithm.isSupported(pinned)) {
-            ensureDigest(pinned, SupportedAlgorithm.fromDigest(pinned).digest(content));
-            verified = pinned;
-        }
-        String header = headers.get(Const.DOCKER_CONTENT_DIGEST_HEADER.toLowerCase());
-        if (header != null && !header.equals(verified)) {
-            ensureDigest(header, SupportedAlgorithm.fromDigest(header).digest(content));
-        }
-    }
-
     private @Nullable String validateDockerContentDigest(HttpClient.ResponseWrapper<?> response) {
         return validateDockerContentDigest(response.headers());
     }
@@ -1717,44 +2630,35 @@ public final class Registry extends OCI<ContainerRef> {
         return getResolvedHeaders(containerRef).headers().get(Const.CONTENT_TYPE_HEADER.toLowerCase());
     }
 
-    private void pullLayer(ContainerRef ref, Layer layer, Path path, boolean overwrite) {
+    private void pullLayer(ContainerRef ref, Layer layer, Path path, PullOptions options) {
         Objects.requireNonNull(layer.getDigest());
-        try (InputStream is = fetchBlob(ref.withDigest(layer.getDigest()))) {
-            // Unpack or just copy blob
-            if (Boolean.parseBoolean(layer.getAnnotations().getOrDefault(Const.ANNOTATION_ORAS_UNPACK, "false"))) {
-                LOG.debug("Extracting blob to: {}", path);
-
-                // Uncompress the tar.gz archive and verify digest if present
-                LocalPath tempArchive = ArchiveUtils.uncompress(is, layer.getMediaType());
-                String expectedDigest = layer.getAnnotations().get(Const.ANNOTATION_ORAS_CONTENT_DIGEST);
-                if (expectedDigest != null) {
-                    LOG.trace("Expected digest: {}", expectedDigest);
-                    String actualDigest = ref.getAlgorithm().digest(tempArchive.getPath());
-                    LOG.trace("Actual digest: {}", actualDigest);
-                    if (!expectedDigest.equals(actualDigest)) {
-                        throw new OrasException(
-                                "Digest mismatch: expected %s but got %s".formatted(expectedDigest, actualDigest));
-                    }
-                }
-
-                // Extract the tar
-                ArchiveUtils.untar(Files.newInputStream(tempArchive.getPath()), path);
-
-            } else {
-                Path targetPath = path.resolve(layer.getAnnotations().get(Const.ANNOTATION_TITLE))
-                        .normalize();
-                if (!targetPath.startsWith(path.normalize())) {
-                    throw new OrasException(
-                            "Refusing to pull layer: path is not withing folder in title annotation '%s'"
-                                    .formatted(layer.getAnnotations().get(Const.ANNOTATION_TITLE)));
-                }
-                if (Files.exists(targetPath) && !overwrite) {
-                    LOG.info("File already exists: {}", targetPath);
-                    return;
-                }
-                LOG.debug("Copying blob to: {}", targetPath);
-                Files.copy(is, targetPath, StandardCopyOption.REPLACE_EXISTING);
+        ContainerRef layerRef = ref.withDigest(layer.getDigest());
+        // Unpack or just copy blob
+        if (!Boolean.parseBoolean(layer.getAnnotations().getOrDefault(Const.ANNOTATION_ORAS_UNPACK, "false"))) {
+            Path targetPath = path.resolve(layer.getAnnotations().get(Const.ANNOTATION_TITLE))
+                    .normalize();
+            if (!targetPath.startsWith(path.normalize())) {
+                throw new OrasException("Refusing to pull layer: path is not withing folder in title annotation '%s'"
+                        .formatted(layer.getAnnotations().get(Const.ANNOTATION_TITLE)));
             }
+            if (Files.exists(targetPath) && !options.isOverwrite()) {
+                LOG.info("File already exists: {}", targetPath);
+                return;
+            }
+            LOG.debug("Copying blob to: {}", targetPath);
+            withMirrorFallback(layerRef, (reg, r) -> {
+                reg.fetchBlobDirect(r, targetPath, layer.getSize());
+                return null;
+            });
+            return;
+        }
+        try (InputStream is = fetchBlob(layerRef)) {
+            LOG.debug("Extracting blob to: {}", path);
+
+            // Uncompress, verify the content digest if present and extract in a single pass
+            String expectedDigest = layer.getAnnotations().get(Const.ANNOTATION_ORAS_CONTENT_DIGEST);
+            ArchiveUtils.uncompressuntar(
+                    is, path, layer.getMediaType(), expectedDigest, options.extractionThreads());
         } catch (IOException e) {
             throw new OrasException("Failed to pull artifact", e);
         }
@@ -1898,12 +2802,19 @@ public final class Registry extends OCI<ContainerRef> {
             this.registry.setTransportLocked(registry.transportLocked);
             this.registry.setExecutorService(registry.executorService);
             this.registry.setParallelism(registry.maxConcurrentDownloads);
+            this.registry.setVirtualThreads(registry.virtualThreads);
             this.registry.setMaxRetries(registry.maxRetries);
             this.registry.setRetryDelayMs(registry.retryDelayMs);
             this.registry.setMaxRetryDelayMs(registry.maxRetryDelayMs);
             this.registry.setTagListMaxPages(registry.tagListMaxPages);
             this.registry.setReferrerListMaxPages(registry.referrerListMaxPages);
             this.registry.setContainersPolicy(registry.containersPolicy);
+            this.registry.setSegmentedDownload(registry.segmentedDownloadThreshold, registry.segmentSize);
+            this.registry.setUploadSessionDirectory(registry.uploadSessionDirectory);
+            this.registry.setUploadStrategies(registry.uploadStrategies);
+            this.registry.setRejectedUploadSizes(registry.rejectedUploadSizes);
+            this.registry.setKnownBlobs(registry.knownBlobs);
+            this.registry.setManifestCache(registry.manifestCache);
             if (registry.meterRegistry != null) {
                 this.registry.setMeterRegistry(registry.meterRegistry);
             }
@@ -2002,15 +2913,31 @@ public final class Registry extends OCI<ContainerRef> {
         }
 
         /**
-         * Set the maximum number of concurrent downloads when pulling an artifact with multiple layers. Default is 4.
+         * Set the maximum number of concurrent blob uploads and downloads. Defaults to the number of available
+         * processors, at least 4.
          * @param parallelism The maximum number of parallel uploads/download
          * @return The builder
          */
         public Builder withParallelism(int parallelism) {
+            if (parallelism < 1) {
+                throw new IllegalArgumentException("Parallelism must be > 0");
+            }
             registry.setParallelism(parallelism);
             return this;
         }
 
+        /**
+         * Run blob uploads and downloads on a virtual thread per task instead of a fixed pool of platform threads.
+         * The number of transfers running at once is still bounded by the parallelism. Requires JDK 21 or later,
+         * a fixed pool of platform threads is used otherwise. Ignored when an executor service is set.
+         * @param virtualThreads True to use virtual threads
+         * @return The builder
+         */
+        public Builder withVirtualThreads(boolean virtualThreads) {
+            registry.setVirtualThreads(virtualThreads);
+            return this;
+        }
+
         /**
          * Set the executor service to use for parallel uploads/downloads. By default it uses a parallelism level given by withParallelism() and a fixed thread pool.
          * Only uses for layers upload/download, not for manifest or index upload/download.
@@ -2160,6 +3087,47 @@ public final class Registry extends OCI<ContainerRef> {
             return this;
         }
 
+        /**
+         * Download blobs of at least the given size to a path as parallel HTTP byte ranges. Up to the configured
+         * parallelism ranges are fetched concurrently into a preallocated file whose digest is verified once complete.
+         * Registries ignoring the {@code Range} header transparently fall back to a single stream.
+         * @param threshold Minimum blob size in bytes (0 disables segmented downloads)
+         * @param segmentSize Size in bytes of each range (must be &gt; 0)
+         * @return The builder
+         */
+        public Builder withSegmentedDownload(long threshold, long segmentSize) {
+            if (threshold < 0) {
+                throw new IllegalArgumentException("Segmented download threshold must be >= 0");
+            }
+            if (segmentSize <= 0) {
+                throw new IllegalArgumentException("Segment size must be > 0");
+            }
+            registry.setSegmentedDownload(threshold, segmentSize);
+            return this;
+        }
+
+        /**
+         * Persist chunked upload sessions of files in the given directory. A push interrupted by a restart then
+         * resumes from the offset committed by the registry instead of uploading the whole blob again.
+         * @param directory The directory holding the sessions
+         * @return The builder
+         */
+        public Builder withUploadSessionDirectory(Path directory) {
+            registry.setUploadSessionDirectory(directory);
+            return this;
+        }
+
+        /**
+         * Persist manifests and indexes fetched by digest in the given directory, in addition to the in-memory
+         * cache. Their content is verified against the digest again when read back.
+         * @param directory The directory holding the manifests
+         * @return The builder
+         */
+        public Builder withManifestCacheDirectory(Path directory) {
+            registry.setManifestCache(new ManifestCache(directory));
+            return this;
+        }
+
         /**
          * Return a new builder
          * @return The builder
@@ -0,0 +1,187 @@
+/*-
+ * =LICENSE=
+ * ORAS Java SDK
+ * ===
+ * Copyright (C) 2024 - 2026 ORAS
+ * ===
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =LICENSEEND=
+ */
+package land.oras;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executors running blob transfers. Transfers are blocking I/O calls, so the default parallelism is derived from
+ * the number of processors but never lower than {@link #MIN_PARALLELISM}. On JDK 21 and later, transfers can run
+ * on a virtual thread per task, detected reflectively since the library targets Java 17. Virtual threads are not
+ * pooled, so their concurrency is bounded by a limiter instead of the number of threads.
+ */
+@NullMarked
+final class TransferExecutors {
+
+    /**
+     * Logger
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(TransferExecutors.class);
+
+    /**
+     * Lowest default parallelism, transfers mostly wait on the network
+     */
+    static final int MIN_PARALLELISM = 4;
+
+    /**
+     * Prefix of transfer thread names
+     */
+    private static final String THREAD_NAME_PREFIX = "layer-transfer-worker-";
+
+    /**
+     * Hidden constructor
+     */
+    private TransferExecutors() {}
+
+    /**
+     * Get the default parallelism of blob transfers
+     * @return The number of processors, at least {@link #MIN_PARALLELISM}
+     */
+    static int defaultParallelism() {
+        return Math.max(MIN_PARALLELISM, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Whether the running JDK supports virtual threads
+     * @return True if virtual threads are supported
+     */
+    static boolean isVirtualThreadsSupported() {
+        return virtualThreadFactory() != null;
+    }
+
+    /**
+     * Create an executor with a fixed pool of platform threads
+     * @param parallelism The number of threads
+     * @return The executor
+     */
+    static ExecutorService platform(int parallelism) {
+        return Executors.newFixedThreadPool(parallelism, r -> {
+            Thread t = new Thread(r);
+            t.setName(THREAD_NAME_PREFIX + t.getId());
+            return t;
+        });
+    }
+
+    /**
+     * Create an executor starting a virtual thread per task, running at most the given number of tasks at once.
+     * Falls back to a fixed pool of platform threads when virtual threads are not supported.
+     * @param parallelism The maximum number of tasks running at once
+     * @return The executor
+     */
+    static ExecutorService virtual(int parallelism) {
+        ThreadFactory factory = virtualThreadFactory();
+        if (factory == null) {
+            LOG.warn("Virtual threads require JDK 21 or later, using {} platform threads", parallelism);
+            return platform(parallelism);
+        }
+        try {
+            Method method = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return new BoundedExecutorService((ExecutorService) method.invoke(null, factory), parallelism);
+        } catch (ReflectiveOperationException e) {
+            LOG.warn("Failed to create virtual thread executor, using {} platform threads", parallelism, e);
+            return platform(parallelism);
+        }
+    }
+
+    /**
+     * Build a factory of named virtual threads
+     * @return The factory or null if virtual threads are not supported
+     */
+    private static @Nullable ThreadFactory virtualThreadFactory() {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass
+                    .getMethod("name", String.class, long.class)
+                    .invoke(builder, THREAD_NAME_PREFIX, 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * Executor service limiting the number of tasks running at once on a delegate that does not bound its threads.
+     * Tasks wait for a permit on their own thread, which is cheap for virtual threads.
+     */
+    static final class BoundedExecutorService extends AbstractExecutorService {
+
+        private final ExecutorService delegate;
+        private final Semaphore permits;
+
+        /**
+         * Constructor
+         * @param delegate The delegate
+         * @param maxConcurrency The maximum number of tasks running at once
+         */
+        BoundedExecutorService(ExecutorService delegate, int maxConcurrency) {
+            this.delegate = delegate;
+            this.permits = new Semaphore(maxConcurrency);
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            delegate.execute(() -> {
+                permits.acquireUninterruptibly();
+                try {
+                    command.run();
+                } finally {
+                    permits.release();
+                }
+            });
+        }
+
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+    }
+}
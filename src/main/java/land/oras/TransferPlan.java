@@ -0,0 +1,181 @@
+/*-
+ * =LICENSE=
+ * ORAS Java SDK
+ * ===
+ * Copyright (C) 2024 - 2026 ORAS
+ * ===
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =LICENSEEND=
+ */
+
+package land.oras;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+import land.oras.exception.OrasException;
+import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.NullMarked;
+
+/**
+ * Plan of a blob transfer to a target, computed before any blob is transferred. The existence of every blob is
+ * checked concurrently on the target, so that only the missing blobs are transferred, largest first. The plan can
+ * also be computed alone to report what a transfer would do.
+ */
+@NullMarked
+public final class TransferPlan {
+
+    /**
+     * The blobs missing on the target, largest first
+     */
+    private final List<Descriptor> missing;
+
+    /**
+     * The blobs already present on the target
+     */
+    private final List<Descriptor> present;
+
+    /**
+     * The digests of the missing blobs
+     */
+    private final Set<String> missingDigests;
+
+    /**
+     * Create a plan
+     * @param missing The blobs missing on the target
+     * @param present The blobs already present on the target
+     */
+    TransferPlan(List<Descriptor> missing, List<Descriptor> present) {
+        this.missing = missing.stream()
+                .sorted(Comparator.comparingLong(TransferPlan::size).reversed())
+                .toList();
+        this.present = List.copyOf(present);
+        this.missingDigests = missing.stream().map(Descriptor::getDigest).collect(Collectors.toSet());
+    }
+
+    /**
+     * Plan the transfer of blobs to a target. Blobs are deduplicated by digest.
+     * @param target The target
+     * @param targetRef The target ref
+     * @param blobs The blobs, with digest and size
+     * @param <T> The type of ref
+     * @return The plan
+     */
+    static <T extends Ref<@NonNull T>> TransferPlan of(
+            OCI<T> target, T targetRef, Collection<? extends Descriptor> blobs) {
+        Map<String, Descriptor> unique = new LinkedHashMap<>();
+        for (Descriptor blob : blobs) {
+            unique.putIfAbsent(Objects.requireNonNull(blob.getDigest(), "Blob digest is required"), blob);
+        }
+        // Submit every check before joining so they run concurrently
+        List<Descriptor> candidates = List.copyOf(unique.values());
+        List<CompletableFuture<Boolean>> checks = candidates.stream()
+                .map(blob -> CompletableFuture.supplyAsync(
+                        () -> target.hasBlob(targetRef.withDigest(blob.getDigest())), target.getExecutorService()))
+                .toList();
+        List<Descriptor> missing = new ArrayList<>();
+        List<Descriptor> present = new ArrayList<>();
+        try {
+            for (int i = 0; i < candidates.size(); i++) {
+                (checks.get(i).join() ? present : missing).add(candidates.get(i));
+            }
+        } catch (CompletionException e) {
+            throw new OrasException("Failed to check existing blobs", e.getCause());
+        }
+        return new TransferPlan(missing, present);
+    }
+
+    /**
+     * Get the blobs to transfer, largest first
+     * @return The blobs missing on the target
+     */
+    public List<Descriptor> getMissing() {
+        return missing;
+    }
+
+    /**
+     * Get the blobs already present on the target
+     * @return The blobs present on the target
+     */
+    public List<Descriptor> getPresent() {
+        return present;
+    }
+
+    /**
+     * Get the number of blobs to transfer
+     * @return The number of missing blobs
+     */
+    public int getMissingCount() {
+        return missing.size();
+    }
+
+    /**
+     * Get the number of bytes to transfer
+     * @return The size of the missing blobs
+     */
+    public long getMissingBytes() {
+        return missing.stream().mapToLong(TransferPlan::size).sum();
+    }
+
+    /**
+     * Get the number of blobs already present
+     * @return The number of present blobs
+     */
+    public int getPresentCount() {
+        return present.size();
+    }
+
+    /**
+     * Get the number of bytes already present
+     * @return The size of the present blobs
+     */
+    public long getPresentBytes() {
+        return present.stream().mapToLong(TransferPlan::size).sum();
+    }
+
+    /**
+     * Whether the target already has every blob
+     * @return True if nothing needs to be transferred
+     */
+    public boolean isComplete() {
+        return missing.isEmpty();
+    }
+
+    /**
+     * Return if the plan contains a blob to transfer
+     * @param digest The digest
+     * @return True if the blob is missing on the target
+     */
+    public boolean isMissing(String digest) {
+        return missingDigests.contains(digest);
+    }
+
+    @Override
+    public String toString() {
+        return "TransferPlan{missing=%d (%d bytes), present=%d (%d bytes)}"
+                .formatted(getMissingCount(), getMissingBytes(), getPresentCount(), getPresentBytes());
+    }
+
+    private static long size(Descriptor blob) {
+        Long size = blob.getSize();
+        return size != null ? size : 0;
+    }
+}
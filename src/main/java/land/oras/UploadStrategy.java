@@ -0,0 +1,48 @@
+/*-
+ * =LICENSE=
+ * ORAS Java SDK
+ * ===
+ * Copyright (C) 2024 - 2026 ORAS
+ * ===
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =LICENSEEND=
+ */
+
+package land.oras;
+
+import org.jspecify.annotations.NullMarked;
+
+/**
+ * Protocol honoured by a registry to upload a blob. Registries are free to ignore the content of a monolithic POST
+ * and answer with an upload session instead, or to reject large single requests, so the protocol is learned from
+ * the first upload and reused for the next ones.
+ */
+@NullMarked
+enum UploadStrategy {
+
+    /**
+     * Single POST with the content, answered with 201
+     */
+    MONOLITHIC_POST,
+
+    /**
+     * Empty POST opening an upload session, then a single PUT with the content
+     */
+    POST_PUT,
+
+    /**
+     * Empty POST opening an upload session, then PATCH requests of bounded size and a closing PUT. Blobs smaller
+     * than the one rejected in a single PUT keep using {@link #POST_PUT}.
+     */
+    CHUNKED
+}
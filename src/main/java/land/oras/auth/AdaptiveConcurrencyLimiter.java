@@ -0,0 +1,250 @@
+/*-
+ * =LICENSE=
+ * ORAS Java SDK
+ * ===
+ * Copyright (C) 2024 - 2026 ORAS
+ * ===
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =LICENSEEND=
+ */
+
+package land.oras.auth;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import land.oras.utils.Const;
+import org.jspecify.annotations.NullMarked;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Adaptive limit of in-flight requests to a single registry host, using additive increase and multiplicative
+ * decrease. The window grows by one per full window of successes while it is well used, and shrinks when the
+ * registry answers 429 or 503, when a request fails with an I/O error, or when latency rises well above the
+ * observed baseline.
+ * At most one decrease is applied per round trip, so a burst of throttled responses only halves the limit once.
+ */
+@NullMarked
+final class AdaptiveConcurrencyLimiter {
+
+    /**
+     * Logger
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(AdaptiveConcurrencyLimiter.class);
+
+    /**
+     * Initial number of in-flight requests per host
+     */
+    static final int INITIAL_LIMIT = 20;
+
+    /**
+     * Lowest limit
+     */
+    static final int MIN_LIMIT = 1;
+
+    /**
+     * Highest limit
+     */
+    static final int MAX_LIMIT = 200;
+
+    /**
+     * Decrease ratio when the registry is overloaded or a request fails
+     */
+    static final double BACKOFF_RATIO = 0.5;
+
+    /**
+     * Decrease ratio when latency rises above the baseline
+     */
+    static final double LATENCY_BACKOFF_RATIO = 0.9;
+
+    /**
+     * Latency above this multiple of the baseline is considered as queuing on the registry
+     */
+    static final double LATENCY_TOLERANCE = 2.0;
+
+    /**
+     * Latency increase below this amount is never considered as queuing
+     */
+    static final long MIN_LATENCY_INCREASE_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    /**
+     * Limiters by host and port
+     */
+    private static final Map<String, AdaptiveConcurrencyLimiter> LIMITERS = new ConcurrentHashMap<>();
+
+    private final String host;
+
+    /**
+     * Meter registries on which the limit gauge is registered, weakly held so that discarded registries are released
+     */
+    private final Set<MeterRegistry> meterRegistries =
+            Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private double limit;
+    private int inFlight;
+    private long baselineNanos = Long.MAX_VALUE;
+    private long lastDecreaseNanos = Long.MIN_VALUE;
+
+    /**
+     * Create a new limiter
+     * @param host The host and port
+     * @param initialLimit The initial limit
+     */
+    AdaptiveConcurrencyLimiter(String host, int initialLimit) {
+        this.host = host;
+        this.limit = Math.max(MIN_LIMIT, Math.min(MAX_LIMIT, initialLimit));
+    }
+
+    /**
+     * Get the limiter shared by all clients for a host. The limit gauge is registered once on each distinct meter
+     * registry of these clients.
+     * @param host The host and port
+     * @param meterRegistry The meter registry of the limit gauge
+     * @return The limiter
+     */
+    static AdaptiveConcurrencyLimiter forHost(String host, MeterRegistry meterRegistry) {
+        AdaptiveConcurrencyLimiter limiter =
+                LIMITERS.computeIfAbsent(host, key -> new AdaptiveConcurrencyLimiter(key, INITIAL_LIMIT));
+        if (limiter.meterRegistries.add(meterRegistry)) {
+            Gauge.builder(Const.METRIC_HTTP_CONCURRENCY_LIMIT, limiter, AdaptiveConcurrencyLimiter::getLimit)
+                    .tag("host", host)
+                    .register(meterRegistry);
+        }
+        return limiter;
+    }
+
+    /**
+     * Wait until a request can be sent
+     * @throws InterruptedException If interrupted while waiting
+     */
+    void acquire() throws InterruptedException {
+        lock.lock();
+        try {
+            while (inFlight >= (int) limit) {
+                available.await();
+            }
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Release a request acquired with {@link #acquire()}
+     */
+    void release() {
+        lock.lock();
+        try {
+            inFlight--;
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Record a response
+     * @param startNanos The time the request was sent
+     * @param statusCode The status code
+     * @param latencyNanos The latency of the request
+     * @param latencySensitive Whether the latency reflects the registry load rather than the transferred size
+     */
+    void onResponse(long startNanos, int statusCode, long latencyNanos, boolean latencySensitive) {
+        lock.lock();
+        try {
+            if (statusCode == 429 || statusCode == 503) {
+                decrease(startNanos, BACKOFF_RATIO);
+                return;
+            }
+            if (latencySensitive) {
+                long baseline = baselineNanos;
+                if (baseline == Long.MAX_VALUE) {
+                    baselineNanos = latencyNanos;
+                } else {
+                    // Track the lowest latency, slowly drifting up so that a single fast response does not stick
+                    baselineNanos = Math.min(latencyNanos, baseline + baseline / 64);
+                    if (latencyNanos > baseline * LATENCY_TOLERANCE
+                            && latencyNanos - baseline > MIN_LATENCY_INCREASE_NANOS) {
+                        decrease(startNanos, LATENCY_BACKOFF_RATIO);
+                        return;
+                    }
+                }
+            }
+            // Only grow when the window is used, otherwise the limit would grow without bound while idle
+            if (inFlight * 2 >= limit) {
+                limit = Math.min(MAX_LIMIT, limit + 1 / limit);
+                available.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Record a request that failed without response
+     * @param startNanos The time the request was sent
+     */
+    void onFailure(long startNanos) {
+        lock.lock();
+        try {
+            decrease(startNanos, BACKOFF_RATIO);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the current limit
+     * @return The limit
+     */
+    int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of in-flight requests
+     * @return The number of in-flight requests
+     */
+    int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void decrease(long startNanos, double ratio) {
+        // Requests sent before the last decrease were already accounted for
+        if (lastDecreaseNanos != Long.MIN_VALUE && startNanos - lastDecreaseNanos < 0) {
+            return;
+        }
+        limit = Math.max(MIN_LIMIT, limit * ratio);
+        lastDecreaseNanos = System.nanoTime();
+        LOG.debug("Decreased concurrency limit of {} to {}", host, (int) limit);
+    }
+}
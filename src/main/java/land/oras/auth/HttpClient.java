@@ -20,17 +20,23 @@
 
 package land.oras.auth;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Metrics;
 import io.micrometer.core.instrument.Timer;
 import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.*;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -46,6 +52,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.Flow;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 import java.util.regex.Matcher;
@@ -61,6 +68,7 @@ import land.oras.OrasModel;
 import land.oras.exception.OrasException;
 import land.oras.utils.Const;
 import land.oras.utils.JsonUtils;
+import land.oras.utils.SupportedAlgorithm;
 import land.oras.utils.Versions;
 import org.jspecify.annotations.NullMarked;
 import org.jspecify.annotations.Nullable;
@@ -84,15 +92,57 @@ public final class HttpClient {
     private static final Pattern WWW_AUTH_VALUE_PATTERN =
             Pattern.compile("Bearer realm=\"([^\"]+)\",service=\"([^\"]+)\",scope=\"([^\"]+)\"(,error=\"([^\"]+)\")?");
 
+    /**
+     * Most JDK HTTP clients pooled at once
+     */
+    static final int MAX_TRANSPORTS = 16;
+
+    /**
+     * Time after which a JDK HTTP client that sent no request is released
+     */
+    private static final Duration TRANSPORT_IDLE_TIMEOUT = Duration.ofMinutes(10);
+
+    /**
+     * JDK HTTP clients shared by every client with the same transport configuration, so that pooled connections
+     * and TLS sessions are reused across registries. Idle and least recently used clients are evicted and shut down,
+     * so a rotated CA or a new configuration does not keep the previous selector thread and connections alive.
+     */
+    private static final Cache<TransportKey, java.net.http.HttpClient> TRANSPORTS = Caffeine.newBuilder()
+            .maximumSize(MAX_TRANSPORTS)
+            .expireAfterAccess(TRANSPORT_IDLE_TIMEOUT)
+            .removalListener((TransportKey key, java.net.http.@Nullable HttpClient transport, RemovalCause cause) -> {
+                if (key != null && transport != null) {
+                    shutdown(key, transport);
+                }
+            })
+            .build();
+
+    /**
+     * Largest body size for which the latency is used to detect an overloaded registry
+     */
+    private static final long LATENCY_SENSITIVE_SIZE = 1024 * 1024;
+
+    /**
+     * Smallest body size for which a token is secured before sending the request
+     */
+    private static final long PRE_AUTHENTICATION_SIZE = 1024 * 1024;
+
     /**
      * The HTTP client builder
      */
     private final java.net.http.HttpClient.Builder builder;
 
     /**
-     * The HTTP client
+     * The configuration of the pooled JDK HTTP client
      */
-    private java.net.http.HttpClient client;
+    private TransportKey transportKey;
+
+    /**
+     * Scopes, by registry and identity, for which a probe of this client was not answered with a bearer challenge.
+     * Large bodies for these scopes are sent without probing again, until a request is challenged.
+     */
+    private final Cache<Scopes, Boolean> unchallengedScopes =
+            Caffeine.newBuilder().maximumSize(TokenCache.MAX_CACHE_SIZE).build();
 
     /**
      * Skip TLS verification
@@ -253,7 +303,8 @@ public final class HttpClient {
     }
 
     /**
-     * Create a new HTTP client
+     * Create a new HTTP client. The underlying JDK client is taken from a process-wide pool keyed by the timeout
+     * and TLS configuration, CA certificates being only parsed when no client exists yet for them.
      * @return The client
      */
     public HttpClient build() {
@@ -266,18 +317,89 @@ public final class HttpClient {
                     "Cannot combine skipTlsVerify with a CA file or CA content. Use either withSkipTlsVerify() or withCaFile()/withCaContent(), not both");
         }
 
-        if (skipTlsVerify) {
-            configureInsecureTls();
-        } else if (caFilePath != null) {
-            configureTlsFromFile(caFilePath);
-        } else if (caContent != null) {
-            configureTlsFromContent(caContent);
+        this.transportKey = transportKey();
+        getTransport();
+        Gauge.builder(Const.METRIC_HTTP_TRANSPORTS, TRANSPORTS, Cache::estimatedSize)
+                .description("Number of pooled HTTP transports")
+                .register(meterRegistry);
+        return this;
+    }
+
+    /**
+     * Get the JDK HTTP client used by this client, created again if it was evicted from the pool
+     * @return The JDK HTTP client
+     */
+    java.net.http.HttpClient getTransport() {
+        return TRANSPORTS.get(transportKey, key -> {
+            LOG.debug("Creating HTTP transport for {}", key);
+            if (skipTlsVerify) {
+                configureInsecureTls();
+            } else if (caFilePath != null) {
+                configureTlsFromFile(caFilePath);
+            } else if (caContent != null) {
+                configureTlsFromContent(caContent);
+            }
+            return this.builder.build();
+        });
+    }
+
+    /**
+     * Get the number of pooled JDK HTTP clients
+     * @return The number of pooled clients
+     */
+    static long getTransportPoolSize() {
+        TRANSPORTS.cleanUp();
+        return TRANSPORTS.estimatedSize();
+    }
+
+    /**
+     * Shut down a JDK HTTP client evicted from the pool. Exchanges in flight still complete. The shutdown method
+     * only exists from JDK 21, older JDKs stop the client once it is no longer referenced.
+     * @param key The configuration of the client
+     * @param transport The client
+     */
+    private static void shutdown(TransportKey key, java.net.http.HttpClient transport) {
+        LOG.debug("Releasing HTTP transport for {}", key);
+        try {
+            java.net.http.HttpClient.class.getMethod("shutdown").invoke(transport);
+        } catch (ReflectiveOperationException e) {
+            LOG.trace("Cannot shut down HTTP transport for {}: {}", key, e.getMessage());
         }
+    }
 
-        this.client = this.builder.build();
-        return this;
+    private TransportKey transportKey() {
+        String caFile = null;
+        long caFileModified = -1;
+        if (caFilePath != null) {
+            Path absolute = caFilePath.toAbsolutePath().normalize();
+            caFile = absolute.toString();
+            try {
+                caFileModified = Files.getLastModifiedTime(absolute).toMillis();
+            } catch (IOException e) {
+                LOG.trace("Cannot read modification time of CA file {}", absolute);
+            }
+        }
+        String caContentDigest = caContent != null
+                ? SupportedAlgorithm.SHA256.digest(caContent.getBytes(StandardCharsets.UTF_8))
+                : null;
+        return new TransportKey(timeout, skipTlsVerify, caFile, caFileModified, caContentDigest);
     }
 
+    /**
+     * Configuration of a pooled transport
+     * @param timeout The connect timeout in seconds
+     * @param skipTlsVerify Whether TLS verification is skipped
+     * @param caFile The absolute path of the CA file or null
+     * @param caFileModified The modification time of the CA file, so an updated bundle gets a new transport
+     * @param caContentDigest The digest of the CA content or null
+     */
+    private record TransportKey(
+            int timeout,
+            boolean skipTlsVerify,
+            @Nullable String caFile,
+            long caFileModified,
+            @Nullable String caContentDigest) {}
+
     /**
      * Perform a GET request
      * @param uri The URI
@@ -343,6 +465,36 @@ public final class HttpClient {
                 true);
     }
 
+    /**
+     * Download using a custom body handler, for example to process the content while it is written
+     * @param uri The URI
+     * @param headers The headers
+     * @param handler The body handler
+     * @param scopes The scopes
+     * @param authProvider The authentication provider
+     * @param <T> The response type
+     * @return The response
+     */
+    public <T> ResponseWrapper<T> download(
+            URI uri,
+            Map<String, String> headers,
+            HttpResponse.BodyHandler<T> handler,
+            Scopes scopes,
+            AuthProvider authProvider) {
+        return executeRequest(
+                "GET",
+                uri,
+                true,
+                headers,
+                new byte[0],
+                handler,
+                HttpRequest.BodyPublishers.noBody(),
+                scopes,
+                authProvider,
+                true,
+                true);
+    }
+
     /**
      * Download to to input stream
      * @param uri The URI
@@ -421,7 +573,7 @@ public final class HttpClient {
                 headers,
                 new byte[0],
                 HttpResponse.BodyHandlers.ofString(),
-                HttpRequest.BodyPublishers.fromPublisher(HttpRequest.BodyPublishers.ofInputStream(stream), size),
+                new StreamedBodyPublisher(stream, size),
                 scopes,
                 authProvider,
                 true,
@@ -526,6 +678,32 @@ public final class HttpClient {
                 true);
     }
 
+    /**
+     * Upload a chunk of data from a buffer using PATCH. The buffer content is sent as is, without copy,
+     * and must not be modified until the request completes.
+     * @param uri The URI
+     * @param body The chunk, from its position to its limit
+     * @param headers The headers (should include Content-Range)
+     * @param scopes The scopes
+     * @param authProvider The authentication provider
+     * @return The response
+     */
+    public ResponseWrapper<String> patch(
+            URI uri, ByteBuffer body, Map<String, String> headers, Scopes scopes, AuthProvider authProvider) {
+        return executeRequest(
+                "PATCH",
+                uri,
+                true,
+                headers,
+                new byte[0],
+                HttpResponse.BodyHandlers.ofString(),
+                HttpRequest.BodyPublishers.fromPublisher(new ByteBufferPublisher(body), body.remaining()),
+                scopes,
+                authProvider,
+                true,
+                true);
+    }
+
     /**
      * Upload a chunk of data from an input stream using PATCH.
      * @param uri The URI
@@ -550,7 +728,7 @@ public final class HttpClient {
                 headers,
                 new byte[0],
                 HttpResponse.BodyHandlers.ofString(),
-                HttpRequest.BodyPublishers.fromPublisher(HttpRequest.BodyPublishers.ofInputStream(stream), chunkSize),
+                new StreamedBodyPublisher(stream, chunkSize),
                 scopes,
                 authProvider,
                 true,
@@ -592,6 +770,19 @@ public final class HttpClient {
      */
     public <T> TokenResponse refreshToken(
             HttpClient.ResponseWrapper<T> response, Scopes scopes, AuthProvider authProvider) {
+        return refreshToken(response, scopes, authProvider, false);
+    }
+
+    /**
+     * Refresh the token
+     * @param response The response with the WWW-Authenticate challenge
+     * @param scopes The scopes
+     * @param authProvider The authentication provider
+     * @param requestScopes Whether to request the given scopes along with the scope of the challenge
+     * @return The token response
+     */
+    private <T> TokenResponse refreshToken(
+            HttpClient.ResponseWrapper<T> response, Scopes scopes, AuthProvider authProvider, boolean requestScopes) {
 
         String wwwAuthHeader = response.headers().getOrDefault(Const.WWW_AUTHENTICATE_HEADER.toLowerCase(), "");
         LOG.debug("WWW-Authenticate header: {}", wwwAuthHeader);
@@ -618,7 +809,9 @@ public final class HttpClient {
 
         LOG.debug("WWW-Authenticate header: realm={}, service={}, scope={}, error={}", realm, service, scope, error);
 
-        String query = "scope=%s&service=%s".formatted(scope, URLEncoder.encode(service, StandardCharsets.UTF_8));
+        String requestedScope = requestScopes ? String.join("&scope=", newScopes.getScopes()) : scope;
+        String query =
+                "scope=%s&service=%s".formatted(requestedScope, URLEncoder.encode(service, StandardCharsets.UTF_8));
 
         URI uri = URI.create(realm + "?" + query);
 
@@ -737,6 +930,16 @@ public final class HttpClient {
                     LOG.trace("Found token in cache for scopes: {}", newScopes.withService(cachedToken.service()));
                 }
 
+                // Secure a token before sending a large body, so that a challenge never sends it twice
+                if (cachedToken == null
+                        && includeAuthHeader
+                        && allowCachedToken
+                        && !authProvider.getAuthScheme().equals(AuthScheme.BEARER)
+                        && isPreAuthenticationRequired(bodyPublisher)
+                        && unchallengedScopes.getIfPresent(newScopes) == null) {
+                    cachedToken = preAuthenticate(uri, newScopes, authProvider);
+                }
+
                 // Add authentication header if any (from provider or cached token)
                 var authHeader = authProvider.getAuthHeader(containerRef);
                 if (cachedToken == null
@@ -748,6 +951,9 @@ public final class HttpClient {
                     builder = builder.header(Const.AUTHORIZATION_HEADER, "Bearer " + cachedToken.getEffectiveToken());
                 }
                 headers.forEach(builder::header);
+                if (handler instanceof ResumableBodyHandler<T> resumable) {
+                    resumable.resumeHeaders().forEach(builder::setHeader);
+                }
 
                 // Add user agent
                 builder = builder.header(Const.USER_AGENT_HEADER, Versions.USER_AGENT_VALUE);
@@ -795,6 +1001,10 @@ public final class HttpClient {
                     continue;
                 }
 
+                // Probe again before the next large body once the registry starts challenging these scopes
+                if (response.statusCode() == 401 || response.statusCode() == 403) {
+                    unchallengedScopes.invalidate(newScopes);
+                }
                 return redoRequest(uri, response, builder, body, handler, newScopes, authProvider);
 
             } catch (InterruptedException e) {
@@ -859,9 +1069,34 @@ public final class HttpClient {
 
     private <T> HttpResponse<T> executeAndRecordRequest(HttpRequest request, HttpResponse.BodyHandler<T> handler)
             throws Exception {
+        String host = request.uri().getHost() + ":" + getPort(request.uri());
+        AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.forHost(host, meterRegistry);
+        // Streamed bodies may be read from another request to the same host, so they must not wait on a permit
+        boolean limited = request.bodyPublisher()
+                .map(publisher -> !(publisher instanceof StreamedBodyPublisher))
+                .orElse(true);
+        if (limited) {
+            try {
+                limiter.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new OrasException("Interrupted while waiting for a concurrency permit", e);
+            }
+        }
         long start = System.nanoTime();
-        HttpResponse<T> response = client.send(request, handler);
+        HttpResponse<T> response;
+        try {
+            response = getTransport().send(request, handler);
+        } catch (IOException e) {
+            limiter.onFailure(start);
+            throw e;
+        } finally {
+            if (limited) {
+                limiter.release();
+            }
+        }
         long duration = System.nanoTime() - start;
+        limiter.onResponse(start, response.statusCode(), duration, isLatencySensitive(request, response));
         Timer.builder(Const.METRIC_HTTP_REQUESTS)
                 .tag("method", request.method())
                 .tag("host", request.uri().getHost())
@@ -874,6 +1109,68 @@ public final class HttpClient {
         return response;
     }
 
+    /**
+     * Whether a request body is large enough to authenticate before sending it
+     * @param bodyPublisher The body publisher
+     * @return True if the body is larger than {@link #PRE_AUTHENTICATION_SIZE} or of unknown length
+     */
+    private static boolean isPreAuthenticationRequired(HttpRequest.BodyPublisher bodyPublisher) {
+        long size = bodyPublisher.contentLength();
+        return size < 0 || size > PRE_AUTHENTICATION_SIZE;
+    }
+
+    /**
+     * Probe the URI with a HEAD request, which has no side effect on the registry, and request a token for the given
+     * scopes if the registry answers with a bearer challenge. Scopes without challenge are not probed again.
+     * @param uri The URI of the request to authenticate
+     * @param scopes The scopes required by the request
+     * @param authProvider The authentication provider
+     * @return The token, or null if the registry did not ask for one
+     */
+    private @Nullable TokenResponse preAuthenticate(URI uri, Scopes scopes, AuthProvider authProvider)
+            throws Exception {
+        HttpRequest.Builder builder = HttpRequest.newBuilder()
+                .uri(uri)
+                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                .header(Const.USER_AGENT_HEADER, Versions.USER_AGENT_VALUE);
+        var authHeader = authProvider.getAuthHeader(scopes.getContainerRef());
+        if (authHeader != null && !authProvider.getAuthScheme().equals(AuthScheme.NONE)) {
+            builder = builder.header(Const.AUTHORIZATION_HEADER, authHeader);
+        }
+        HttpResponse<String> response = executeAndRecordRequest(builder.build(), HttpResponse.BodyHandlers.ofString());
+        String challenge =
+                response.headers().firstValue(Const.WWW_AUTHENTICATE_HEADER).orElse("");
+        if ((response.statusCode() != 401 && response.statusCode() != 403)
+                || !WWW_AUTH_VALUE_PATTERN.matcher(challenge).matches()) {
+            LOG.debug("No bearer challenge to pre-authenticate {}", uri);
+            unchallengedScopes.put(scopes, Boolean.TRUE);
+            return null;
+        }
+        LOG.debug("Pre-authenticating {} for scopes {}", uri, scopes.getScopes());
+        TokenResponse token =
+                refreshToken(toResponseWrapper(response, scopes.getService()), scopes, authProvider, true);
+        // Also cache for the scopes of the request, so that the next large body does not need a probe
+        TokenCache.put(scopes, token);
+        return token;
+    }
+
+    /**
+     * Whether the latency of an exchange reflects the load of the registry rather than the size of the transfer
+     * @param request The request
+     * @param response The response
+     * @return True if both the request and the response bodies are small
+     */
+    private static <T> boolean isLatencySensitive(HttpRequest request, HttpResponse<T> response) {
+        long requestSize = request.bodyPublisher()
+                .map(HttpRequest.BodyPublisher::contentLength)
+                .orElse(0L);
+        long responseSize =
+                response.headers().firstValueAsLong(Const.CONTENT_LENGTH_HEADER).orElse(0L);
+        return requestSize >= 0
+                && requestSize <= LATENCY_SENSITIVE_SIZE
+                && responseSize <= LATENCY_SENSITIVE_SIZE;
+    }
+
     private <T> String getLocationHeader(HttpResponse<T> response) {
         return response.headers()
                 .firstValue("Location")
@@ -991,6 +1288,115 @@ public final class HttpClient {
     public record ResponseWrapper<T>(
             T response, int statusCode, Map<String, String> headers, @Nullable String service) {}
 
+    /**
+     * A body handler able to resume a partially received body. Before each attempt, including retries after a
+     * network failure, its headers (typically {@code Range}) are added to the request.
+     * @param <T> The response type
+     */
+    public interface ResumableBodyHandler<T> extends HttpResponse.BodyHandler<T> {
+
+        /**
+         * Headers to send on the next attempt
+         * @return The headers, empty to request the full body
+         */
+        Map<String, String> resumeHeaders();
+    }
+
+    /**
+     * Body publisher reading a stream supplied when the request is sent. Requests with such a body do not wait
+     * on a concurrency permit, since the stream may be filled by another request to the same host.
+     */
+    private static final class StreamedBodyPublisher implements HttpRequest.BodyPublisher {
+
+        private final HttpRequest.BodyPublisher delegate;
+
+        private StreamedBodyPublisher(Supplier<InputStream> stream, long size) {
+            this.delegate =
+                    HttpRequest.BodyPublishers.fromPublisher(HttpRequest.BodyPublishers.ofInputStream(stream), size);
+        }
+
+        @Override
+        public long contentLength() {
+            return delegate.contentLength();
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            delegate.subscribe(subscriber);
+        }
+    }
+
+    /**
+     * Publisher emitting read-only slices of a buffer. Each subscription (one per attempt) starts over from
+     * the initial position of the buffer.
+     */
+    private static final class ByteBufferPublisher implements Flow.Publisher<ByteBuffer> {
+
+        /**
+         * Size of each emitted slice
+         */
+        private static final int SLICE_SIZE = 64 * 1024;
+
+        private final ByteBuffer buffer;
+
+        private ByteBufferPublisher(ByteBuffer buffer) {
+            this.buffer = buffer.asReadOnlyBuffer();
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            ByteBuffer remaining = buffer.duplicate();
+            subscriber.onSubscribe(new Flow.Subscription() {
+                private long demand;
+                private boolean emitting;
+                private boolean done;
+
+                @Override
+                public void request(long n) {
+                    synchronized (this) {
+                        if (done) {
+                            return;
+                        }
+                        if (n <= 0) {
+                            done = true;
+                            subscriber.onError(new IllegalArgumentException("non-positive request: " + n));
+                            return;
+                        }
+                        demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                        // Guard against reentrant calls from onNext
+                        if (emitting) {
+                            return;
+                        }
+                        emitting = true;
+                    }
+                    while (true) {
+                        ByteBuffer slice;
+                        synchronized (this) {
+                            if (done || demand == 0 || !remaining.hasRemaining()) {
+                                emitting = false;
+                                if (!done && !remaining.hasRemaining()) {
+                                    done = true;
+                                    subscriber.onComplete();
+                                }
+                                return;
+                            }
+                            int length = Math.min(SLICE_SIZE, remaining.remaining());
+                            slice = remaining.slice().limit(length);
+                            remaining.position(remaining.position() + length);
+                            demand--;
+                        }
+                        subscriber.onNext(slice);
+                    }
+                }
+
+                @Override
+                public synchronized void cancel() {
+                    done = true;
+                }
+            });
+        }
+    }
+
     /**
      * Insecure trust manager when skipping TLS verification
      */
@@ -20,22 +20,52 @@
 
 package land.oras.utils;
 
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdOutputStream;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 import java.nio.file.attribute.PosixFilePermission;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Deque;
 import java.util.EnumSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
 import land.oras.LocalPath;
 import land.oras.exception.OrasException;
 import org.apache.commons.compress.archivers.ArchiveEntry;
@@ -43,14 +73,21 @@ import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
 import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
 import org.apache.commons.compress.archivers.zip.AsiExtraField;
+import org.apache.commons.compress.archivers.zip.ScatterZipOutputStream;
+import org.apache.commons.compress.archivers.zip.StreamCompressor;
+import org.apache.commons.compress.archivers.zip.UnrecognizedExtraField;
+import org.apache.commons.compress.archivers.zip.X5455_ExtendedTimestamp;
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntryRequest;
 import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
 import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
 import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
 import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
 import org.apache.commons.compress.compressors.zstandard.ZstdCompressorInputStream;
-import org.apache.commons.compress.compressors.zstandard.ZstdCompressorOutputStream;
+import org.apache.commons.compress.parallel.ScatterGatherBackingStore;
 import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -65,11 +102,64 @@ public final class ArchiveUtils {
      */
     private static final Logger LOG = LoggerFactory.getLogger(ArchiveUtils.class);
 
+    /**
+     * Window log used for zstd long distance matching (128 MiB), the largest window decoders accept by default
+     */
+    private static final int ZSTD_LONG_WINDOW_LOG = 27;
+
+    /**
+     * Largest tar entry buffered in memory to be written by a writer thread
+     */
+    private static final int MAX_BUFFERED_ENTRY_SIZE = 1024 * 1024;
+
+    /**
+     * Earliest date and time representable as a DOS time
+     */
+    private static final LocalDateTime MIN_DOS_TIME = LocalDateTime.of(1980, 1, 1, 0, 0);
+
     /**
      * Hidden constructor
      */
     private ArchiveUtils() {}
 
+    /**
+     * Set the reproducible time on a zip entry. The DOS time of a zip entry is a local time, so it gets the UTC
+     * date and time of the reproducible time whatever the default time zone, and the instant itself is kept in
+     * the extended timestamp.
+     * @param entry The entry
+     * @param time The reproducible time
+     */
+    private static void applyReproducibleTime(ZipArchiveEntry entry, Instant time) {
+        LocalDateTime utc = LocalDateTime.ofInstant(time, ZoneOffset.UTC);
+        // Earlier times are not representable, keep the DOS time within range so no other time field is added
+        if (utc.isBefore(MIN_DOS_TIME)) {
+            utc = MIN_DOS_TIME;
+        }
+        entry.setTime(utc.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        if (time.getEpochSecond() >= Integer.MIN_VALUE && time.getEpochSecond() <= Integer.MAX_VALUE) {
+            X5455_ExtendedTimestamp timestamp = new X5455_ExtendedTimestamp();
+            timestamp.setModifyJavaTime(Date.from(time));
+            // Added as raw data, a parsed extended timestamp would replace the DOS time by its local time
+            UnrecognizedExtraField field = new UnrecognizedExtraField();
+            field.setHeaderId(X5455_ExtendedTimestamp.HEADER_ID);
+            field.setLocalFileDataData(timestamp.getLocalFileDataData());
+            field.setCentralDirectoryData(timestamp.getCentralDirectoryData());
+            entry.addExtraField(field);
+        }
+    }
+
+    /**
+     * Walk a directory to archive it, in name order when archives are written reproducibly
+     * @param dir The directory
+     * @param reproducible Whether the archive is written reproducibly
+     * @return The paths
+     * @throws IOException If the directory cannot be walked
+     */
+    private static Stream<Path> walkArchive(Path dir, boolean reproducible) throws IOException {
+        Stream<Path> paths = Files.walk(dir);
+        return reproducible ? paths.sorted(Comparator.comparing(Path::toString)) : paths;
+    }
+
     /**
      * Create a temporary archive when uploading directory layers
      * @return The path to the archive
@@ -112,58 +202,193 @@ public final class ArchiveUtils {
      * @return The local path to the zip file
      */
     public static LocalPath zip(LocalPath sourceDir) {
+        return zip(sourceDir, CompressionOptions.defaults());
+    }
+
+    /**
+     * Zip a local source dire and return a temporary zip file as a local path.
+     * Entries are deflated straight into the archive, or concurrently into scatter streams written in walk order
+     * when the options have more than one thread.
+     * @param sourceDir The source directory
+     * @param options The compression options
+     * @return The local path to the zip file
+     */
+    public static LocalPath zip(LocalPath sourceDir, CompressionOptions options) {
         Path zipFile = createTempZip();
-        boolean isAbsolute = sourceDir.getPath().isAbsolute();
+        int threads = options.threads();
+        ExecutorService executor = threads > 1
+                ? Executors.newFixedThreadPool(threads, r -> {
+                    Thread t = new Thread(r);
+                    t.setName("zip-worker-%d".formatted(t.getId()));
+                    t.setDaemon(true);
+                    return t;
+                })
+                : null;
+        Deque<Future<ScatterZipOutputStream>> pending = new ArrayDeque<>();
         try (OutputStream fos = Files.newOutputStream(zipFile);
                 BufferedOutputStream bos = new BufferedOutputStream(fos);
-                ZipArchiveOutputStream zaos = new ZipArchiveOutputStream(bos)) {
-            try (Stream<Path> paths = Files.walk(sourceDir.getPath())) {
-                paths.forEach(path -> {
-                    LOG.trace("Visiting path: {}", path);
-                    try {
-                        Path baseName = isAbsolute ? sourceDir.getPath().getFileName() : sourceDir.getPath();
-                        Path relativePath = baseName.resolve(sourceDir.getPath().relativize(path));
-                        if (relativePath.toString().isEmpty()) {
-                            LOG.trace("Skipping root directory: {}", path);
-                            return;
-                        }
-                        String entryName = relativePath.toString();
-                        if (Files.isSymbolicLink(path)) {
-                            LOG.trace("Adding symlink entry to zip: {}", entryName);
-                            Path linkTarget = Files.readSymbolicLink(path);
-                            ZipArchiveEntry entry = new ZipArchiveEntry(entryName);
-                            AsiExtraField asiField = new AsiExtraField();
-                            asiField.setLinkedFile(linkTarget.toString());
-                            // 0120000 = S_IFLNK (symlink file type), 0755 = permissions
-                            asiField.setMode(0120755);
-                            entry.addExtraField(asiField);
-                            entry.setSize(0);
-                            zaos.putArchiveEntry(entry);
-                        } else if (Files.isDirectory(path)) {
-                            LOG.trace("Adding directory entry to zip: {}", entryName + "/");
-                            ZipArchiveEntry entry = new ZipArchiveEntry(entryName + "/");
-                            zaos.putArchiveEntry(entry);
-                        } else {
-                            LOG.trace("Adding file entry to zip: {}", entryName);
-                            ZipArchiveEntry entry = new ZipArchiveEntry(entryName);
-                            entry.setSize(Files.size(path));
-                            zaos.putArchiveEntry(entry);
-                            try (InputStream fis = Files.newInputStream(path)) {
-                                fis.transferTo(zaos);
-                            }
-                        }
-                        zaos.closeArchiveEntry();
-                    } catch (IOException e) {
-                        throw new OrasException("Failed to create zip file", e);
-                    }
-                });
+                ZipArchiveOutputStream zaos = new ZipArchiveOutputStream(bos);
+                Stream<Path> paths = walkArchive(sourceDir.getPath(), options.isReproducible())) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                LOG.trace("Visiting path: {}", path);
+                Path relativePath = entryPrefix(sourceDir.getPath()).resolve(sourceDir.getPath().relativize(path));
+                if (relativePath.toString().isEmpty()) {
+                    LOG.trace("Skipping root directory: {}", path);
+                    continue;
+                }
+                String entryName = relativePath.toString();
+                ZipArchiveEntry entry;
+                long size = 0;
+                if (Files.isSymbolicLink(path)) {
+                    LOG.trace("Adding symlink entry to zip: {}", entryName);
+                    Path linkTarget = Files.readSymbolicLink(path);
+                    entry = new ZipArchiveEntry(entryName);
+                    AsiExtraField asiField = new AsiExtraField();
+                    asiField.setLinkedFile(linkTarget.toString());
+                    // 0120000 = S_IFLNK (symlink file type), 0755 = permissions
+                    asiField.setMode(0120755);
+                    entry.addExtraField(asiField);
+                    entry.setSize(0);
+                } else if (Files.isDirectory(path)) {
+                    LOG.trace("Adding directory entry to zip: {}", entryName + "/");
+                    entry = new ZipArchiveEntry(entryName + "/");
+                } else {
+                    LOG.trace("Adding file entry to zip: {}", entryName);
+                    entry = new ZipArchiveEntry(entryName);
+                    size = Files.size(path);
+                    entry.setSize(size);
+                }
+                entry.setMethod(ZipEntry.DEFLATED);
+                if (options.isReproducible()) {
+                    applyReproducibleTime(entry, options.reproducibleTime());
+                }
+                boolean regularFile = !Files.isSymbolicLink(path) && !Files.isDirectory(path);
+                if (executor == null) {
+                    putZipEntry(path, entry, regularFile, zaos);
+                    continue;
+                }
+                long entrySize = size;
+                pending.add(executor.submit(() -> deflateZipEntry(path, entry, regularFile, entrySize)));
+                // Bound the number of deflated entries waiting to be written
+                if (pending.size() >= threads * 4) {
+                    writeZipEntry(pending.poll().get(), zaos);
+                }
+            }
+            while (!pending.isEmpty()) {
+                writeZipEntry(pending.poll().get(), zaos);
+            }
+        } catch (ExecutionException e) {
+            throw new OrasException("Failed to create zip file", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OrasException("Interrupted while creating zip file", e);
+        } catch (Exception e) {
+            if (e instanceof OrasException orasException) {
+                throw orasException;
             }
-        } catch (IOException e) {
             throw new OrasException("Failed to create zip file", e);
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+                discardZipEntries(pending);
+            }
         }
         return LocalPath.of(zipFile, Const.ZIP_MEDIA_TYPE);
     }
 
+    /**
+     * Deflate a zip entry on the calling thread straight into the archive
+     * @param path The path of the entry
+     * @param entry The entry
+     * @param regularFile Whether the entry has content to read from the path
+     * @param zaos The archive
+     * @throws IOException If the entry cannot be written
+     */
+    private static void putZipEntry(Path path, ZipArchiveEntry entry, boolean regularFile, ZipArchiveOutputStream zaos)
+            throws IOException {
+        zaos.putArchiveEntry(entry);
+        if (regularFile) {
+            try (InputStream fis = Files.newInputStream(path)) {
+                fis.transferTo(zaos);
+            }
+        }
+        zaos.closeArchiveEntry();
+    }
+
+    /**
+     * Deflate a zip entry into its own scatter stream, in memory for small entries or in a temporary file
+     * @param path The path of the entry
+     * @param entry The entry
+     * @param regularFile Whether the entry has content to read from the path
+     * @param size The size of the content
+     * @return The scatter stream holding the deflated entry
+     * @throws IOException If the entry cannot be deflated
+     */
+    private static ScatterZipOutputStream deflateZipEntry(
+            Path path, ZipArchiveEntry entry, boolean regularFile, long size) throws IOException {
+        ScatterZipOutputStream scatter;
+        if (size > MAX_BUFFERED_ENTRY_SIZE) {
+            scatter = ScatterZipOutputStream.pathBased(Files.createTempFile("oras", ".scatter"));
+        } else {
+            ScatterGatherBackingStore store = new MemoryBackingStore();
+            scatter = new ScatterZipOutputStream(store, StreamCompressor.create(Deflater.DEFAULT_COMPRESSION, store));
+        }
+        try {
+            scatter.addArchiveEntry(ZipArchiveEntryRequest.createZipArchiveEntryRequest(entry, () -> {
+                try {
+                    return regularFile ? Files.newInputStream(path) : InputStream.nullInputStream();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+            return scatter;
+        } catch (IOException | RuntimeException e) {
+            scatter.close();
+            throw e;
+        }
+    }
+
+    private static void writeZipEntry(ScatterZipOutputStream scatter, ZipArchiveOutputStream zaos)
+            throws IOException {
+        try (scatter) {
+            scatter.writeTo(zaos);
+        }
+    }
+
+    private static void discardZipEntries(Deque<Future<ScatterZipOutputStream>> pending) {
+        for (Future<ScatterZipOutputStream> future : pending) {
+            try {
+                future.get().close();
+            } catch (Exception e) {
+                LOG.debug("Failed to discard zip entry", e);
+            }
+        }
+    }
+
+    /**
+     * In memory backing store of a deflated zip entry
+     */
+    private static final class MemoryBackingStore implements ScatterGatherBackingStore {
+
+        private final ByteArrayOutputStream data = new ByteArrayOutputStream();
+
+        @Override
+        public InputStream getInputStream() {
+            return new ByteArrayInputStream(data.toByteArray());
+        }
+
+        @Override
+        public void writeOut(byte[] b, int off, int len) {
+            data.write(b, off, len);
+        }
+
+        @Override
+        public void closeForWriting() {}
+
+        @Override
+        public void close() {}
+    }
+
     /**
      * Create a tar file from a directory, prefixing every entry with the source directory's own name.
      * <p>Equivalent to calling {@link #tar(LocalPath, boolean) tar(sourceDir, true)}.</p>
@@ -187,23 +412,62 @@ public final class ArchiveUtils {
      * @return The local path to the temporary tar file
      */
     public static LocalPath tar(LocalPath sourceDir, boolean includeDirectoryName) {
+        return tar(sourceDir, includeDirectoryName, CompressionOptions.defaults());
+    }
+
+    /**
+     * Create a tar file from a directory, written reproducibly when the options ask for it
+     * @param sourceDir The source directory
+     * @param includeDirectoryName {@code true} to prefix entries with the directory name,
+     *                             {@code false} for root-relative entry names
+     * @param options The compression options
+     * @return The local path to the temporary tar file
+     */
+    public static LocalPath tar(LocalPath sourceDir, boolean includeDirectoryName, CompressionOptions options) {
         Path tarFile = createTempTar();
-        boolean isAbsolute = sourceDir.getPath().isAbsolute();
         try (OutputStream fos = Files.newOutputStream(tarFile);
 
                 // Output stream chain
-                BufferedOutputStream bos = new BufferedOutputStream(fos);
-                TarArchiveOutputStream taos = new TarArchiveOutputStream(bos)) {
+                BufferedOutputStream bos = new BufferedOutputStream(fos)) {
+            writeTar(sourceDir, includeDirectoryName, options, bos);
+        } catch (IOException e) {
+            throw new OrasException("Failed to create tar.gz file", e);
+        }
+        return LocalPath.of(tarFile, Const.DEFAULT_BLOB_MEDIA_TYPE);
+    }
+
+    /**
+     * Get the prefix naming the entries of an archive of a directory: the directory name for an absolute path,
+     * the path as given for a relative one
+     * @param sourceDir The source directory
+     * @return The prefix of the entries
+     */
+    static Path entryPrefix(Path sourceDir) {
+        return sourceDir.isAbsolute() ? sourceDir.getFileName() : sourceDir;
+    }
+
+    /**
+     * Write a directory as a tar stream. The output stream is closed once the archive is complete.
+     * @param sourceDir The source directory
+     * @param includeDirectoryName {@code true} to prefix entries with the directory name
+     * @param options The compression options
+     * @param out The output stream
+     * @throws IOException If the archive cannot be written
+     */
+    private static void writeTar(
+            LocalPath sourceDir, boolean includeDirectoryName, CompressionOptions options, OutputStream out)
+            throws IOException {
+        try (TarArchiveOutputStream taos = new TarArchiveOutputStream(out)) {
 
             taos.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
-            try (Stream<Path> paths = Files.walk(sourceDir.getPath())) {
+            try (Stream<Path> paths = walkArchive(sourceDir.getPath(), options.isReproducible())) {
                 paths.forEach(path -> {
                     LOG.trace("Visiting path: {}", path);
                     try {
                         Path relativePath;
                         if (includeDirectoryName) {
-                            Path baseName = isAbsolute ? sourceDir.getPath().getFileName() : sourceDir.getPath();
-                            relativePath = baseName.resolve(sourceDir.getPath().relativize(path));
+                            relativePath =
+                                    entryPrefix(sourceDir.getPath()).resolve(sourceDir.getPath().relativize(path));
                         } else {
                             relativePath = sourceDir.getPath().relativize(path);
                         }
@@ -230,7 +494,13 @@ public final class ArchiveUtils {
 
                         // Get posix permissions
                         int mode;
-                        if (OsUtils.isPosixFileSystemSupported()) {
+                        if (options.isReproducible()) {
+                            mode = reproducibleMode(path);
+                            entry.setLastModifiedTime(FileTime.from(options.reproducibleTime()));
+                            entry.setLastAccessTime(null);
+                            entry.setStatusChangeTime(null);
+                            entry.setCreationTime(null);
+                        } else if (OsUtils.isPosixFileSystemSupported()) {
                             Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(path);
                             mode = permissionsToMode(permissions);
                             LOG.trace("Permissions: {}", permissions);
@@ -257,13 +527,8 @@ public final class ArchiveUtils {
                         throw new OrasException("Failed to create tar.gz file", e);
                     }
                 });
-            } catch (IOException e) {
-                throw new OrasException("Failed to create tar.gz file", e);
             }
-        } catch (IOException e) {
-            throw new OrasException("Failed to create tar.gz file", e);
         }
-        return LocalPath.of(tarFile, Const.DEFAULT_BLOB_MEDIA_TYPE);
     }
 
     /**
@@ -276,6 +541,128 @@ public final class ArchiveUtils {
         return compress(tar(sourceDir), mediaType);
     }
 
+    /**
+     * Create a tar compressed file from a directory in a single pass. The tar stream is compressed and both the
+     * uncompressed and compressed bytes are hashed while being written, without any intermediate tar file.
+     * @param sourceDir The source directory
+     * @param mediaType The media type, must be a tar based media type
+     * @param algorithm The digest algorithm
+     * @return The archive and its digests
+     */
+    public static PackedArchive tarcompress(LocalPath sourceDir, String mediaType, SupportedAlgorithm algorithm) {
+        return tarcompress(sourceDir, mediaType, algorithm, CompressionOptions.defaults());
+    }
+
+    /**
+     * Create a tar compressed file from a directory in a single pass with the given compression options
+     * @param sourceDir The source directory
+     * @param mediaType The media type, must be a tar based media type
+     * @param algorithm The digest algorithm
+     * @param options The compression options
+     * @return The archive and its digests
+     */
+    public static PackedArchive tarcompress(
+            LocalPath sourceDir, String mediaType, SupportedAlgorithm algorithm, CompressionOptions options) {
+        Path archive = createTempTar();
+        try (OutputStream fos = Files.newOutputStream(archive)) {
+            ArchiveDigests digests = tarcompress(sourceDir, mediaType, algorithm, options, fos);
+            return new PackedArchive(LocalPath.of(archive, mediaType), digests);
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(archive);
+            if (e instanceof OrasException orasException) {
+                throw orasException;
+            }
+            throw new OrasException("Failed to create tar compressed file", e);
+        }
+    }
+
+    /**
+     * Write a directory as a tar compressed stream in a single pass, hashing the uncompressed tar and the
+     * compressed bytes on the way. The output stream is not closed.
+     * @param sourceDir The source directory
+     * @param mediaType The media type, must be a tar based media type
+     * @param algorithm The digest algorithm
+     * @param options The compression options
+     * @param out The output stream receiving the compressed archive
+     * @return The digests of the archive
+     */
+    public static ArchiveDigests tarcompress(
+            LocalPath sourceDir,
+            String mediaType,
+            SupportedAlgorithm algorithm,
+            CompressionOptions options,
+            OutputStream out) {
+        SupportedCompression compression = SupportedCompression.fromMediaType(mediaType);
+        if (!compression.isAutoUnpack()) {
+            throw new OrasException("Media type %s is not a tar archive".formatted(mediaType));
+        }
+        MessageDigest archiveDigest = DigestUtils.newMessageDigest(algorithm.getAlgorithmName());
+        MessageDigest contentDigest = DigestUtils.newMessageDigest(algorithm.getAlgorithmName());
+        CountingOutputStream counting = new CountingOutputStream(out);
+        try (BufferedOutputStream bos = new BufferedOutputStream(
+                compression.compress(new DigestOutputStream(counting, archiveDigest), options))) {
+            writeTar(sourceDir, true, options, new DigestOutputStream(bos, contentDigest));
+        } catch (IOException e) {
+            throw new OrasException("Failed to create tar compressed stream", e);
+        }
+        return new ArchiveDigests(
+                DigestUtils.format(algorithm.getPrefix(), archiveDigest),
+                DigestUtils.format(algorithm.getPrefix(), contentDigest),
+                counting.count);
+    }
+
+    /**
+     * Digests of an archive written in a single pass
+     * @param digest The digest of the compressed archive
+     * @param contentDigest The digest of the uncompressed tar content
+     * @param size The size of the compressed archive
+     */
+    public record ArchiveDigests(String digest, String contentDigest, long size) {}
+
+    /**
+     * A compressed archive written to a temporary file
+     * @param path The archive
+     * @param digests The digests of the archive
+     */
+    public record PackedArchive(LocalPath path, ArchiveDigests digests) {}
+
+    /**
+     * Output stream counting written bytes and leaving the underlying stream open on close
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        private CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.flush();
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            LOG.debug("Failed to delete temporary file {}", path, e);
+        }
+    }
+
     /**
      * Ensure that the entry is safe to extract
      * @param entry The tar entry
@@ -330,11 +717,117 @@ public final class ArchiveUtils {
      * @param mediaType The media type of the compressed file
      */
     public static void uncompressuntar(Path path, Path target, String mediaType) {
+        try (InputStream is = Files.newInputStream(path)) {
+            uncompressuntar(is, target, mediaType, null);
+        } catch (IOException e) {
+            throw new OrasException("Failed to extract tar.gz file", e);
+        }
+    }
+
+    /**
+     * Uncompress and extract a tar based stream in a single pass, without any intermediate tar file.
+     * The content is extracted into a staging directory inside the target and only moved into the target once
+     * the given stream has been read to its end, so that a stream verifying the blob digest at end of stream
+     * fails before anything lands in the target. When an expected digest is given, the uncompressed tar is
+     * hashed while being extracted and the staged content is moved only if the digest matches as well.
+     * @param is The compressed stream
+     * @param target The target directory
+     * @param mediaType The media type of the stream, must be a tar based media type
+     * @param expectedDigest The expected digest of the uncompressed tar or null to extract without verification
+     */
+    public static void uncompressuntar(InputStream is, Path target, String mediaType, @Nullable String expectedDigest) {
+        uncompressuntar(is, target, mediaType, expectedDigest, 1);
+    }
+
+    /**
+     * Uncompress and extract a tar based stream in a single pass with several writer threads, see
+     * {@link #uncompressuntar(InputStream, Path, String, String)}. Archives with many small files are bound by
+     * per file latency and benefit from several writers.
+     * @param is The compressed stream
+     * @param target The target directory
+     * @param mediaType The media type of the stream, must be a tar based media type
+     * @param expectedDigest The expected digest of the uncompressed tar or null to extract without verification
+     * @param threads The number of writer threads, 1 to write on the calling thread
+     */
+    public static void uncompressuntar(
+            InputStream is, Path target, String mediaType, @Nullable String expectedDigest, int threads) {
+        SupportedCompression compression = SupportedCompression.fromMediaType(mediaType);
+        if (!compression.isAutoUnpack()) {
+            throw new OrasException("Media type %s is not a tar archive".formatted(mediaType));
+        }
+        SupportedAlgorithm algorithm = expectedDigest != null ? SupportedAlgorithm.fromDigest(expectedDigest) : null;
+        MessageDigest messageDigest =
+                algorithm != null ? DigestUtils.newMessageDigest(algorithm.getAlgorithmName()) : null;
+        Path staging = null;
         try {
-            LocalPath tar = uncompress(Files.newInputStream(path), mediaType);
-            untar(tar.getPath(), target);
+            Files.createDirectories(target);
+            staging = Files.createTempDirectory(target, ".oras-staging-");
+            InputStream uncompressed = compression.uncompressStream(is);
+            try (BufferedInputStream bis = new BufferedInputStream(
+                            messageDigest != null ? new DigestInputStream(uncompressed, messageDigest) : uncompressed);
+                    TarArchiveInputStream tais = new TarArchiveInputStream(bis)) {
+                extractTar(tais, staging, threads);
+                // Hash the end of archive records and padding as well
+                bis.transferTo(OutputStream.nullOutputStream());
+                // Read the compressed stream to its end, verifying streams check the blob digest there
+                is.transferTo(OutputStream.nullOutputStream());
+            }
+            if (expectedDigest != null && algorithm != null && messageDigest != null) {
+                String actualDigest = DigestUtils.format(algorithm.getPrefix(), messageDigest);
+                LOG.trace("Expected digest: {}, actual digest: {}", expectedDigest, actualDigest);
+                if (!expectedDigest.equals(actualDigest)) {
+                    throw new OrasException(
+                            "Digest mismatch: expected %s but got %s".formatted(expectedDigest, actualDigest));
+                }
+            }
+            promote(staging, target);
         } catch (IOException e) {
             throw new OrasException("Failed to extract tar.gz file", e);
+        } finally {
+            if (staging != null) {
+                deleteRecursively(staging);
+            }
+        }
+    }
+
+    /**
+     * Move the content of a staging directory into the target directory, replacing existing files
+     * @param staging The staging directory
+     * @param target The target directory
+     * @throws IOException If the content cannot be moved
+     */
+    private static void promote(Path staging, Path target) throws IOException {
+        Files.walkFileTree(staging, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (!dir.equals(staging)) {
+                    Path destination = target.resolve(staging.relativize(dir));
+                    // Never write through an existing symlink
+                    if (!Files.isDirectory(destination, LinkOption.NOFOLLOW_LINKS)) {
+                        Files.deleteIfExists(destination);
+                        Files.createDirectory(destination);
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.move(file, target.resolve(staging.relativize(file)), StandardCopyOption.REPLACE_EXISTING);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Delete a directory and its content, logging failures
+     * @param dir The directory
+     */
+    private static void deleteRecursively(Path dir) {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(ArchiveUtils::deleteQuietly);
+        } catch (IOException e) {
+            LOG.debug("Failed to delete directory {}", dir, e);
         }
     }
 
@@ -367,13 +860,74 @@ public final class ArchiveUtils {
      * @param target The target directory
      */
     public static void unzip(Path path, Path target) {
-        try {
-            unzip(Files.newInputStream(path), target);
+        unzip(path, target, 1);
+    }
+
+    /**
+     * Extract a zip file to a target directory. Entries are read with random access and written by a pool of
+     * writer threads, directories are created first and symlinks last.
+     * @param path The zip file
+     * @param target The target directory
+     * @param threads The number of writer threads, 1 to write on the calling thread
+     */
+    public static void unzip(Path path, Path target, int threads) {
+        try (ZipFile zipFile = ZipFile.builder().setPath(path).get()) {
+            List<ZipArchiveEntry> entries = Collections.list(zipFile.getEntriesInPhysicalOrder());
+            List<ZipArchiveEntry> symlinks = new ArrayList<>();
+            for (ZipArchiveEntry entry : entries) {
+                ensureSafeEntry(entry, target);
+                Path outputPath = target.resolve(entry.getName()).normalize();
+                if (entry.isDirectory()) {
+                    LOG.debug("Extracting directory: {}", entry.getName());
+                    Files.createDirectories(outputPath);
+                } else {
+                    Files.createDirectories(outputPath.getParent());
+                    if (isZipSymlink(entry)) {
+                        symlinks.add(entry);
+                    }
+                }
+            }
+            try (ParallelExtractor extractor = new ParallelExtractor(threads)) {
+                for (ZipArchiveEntry entry : entries) {
+                    if (entry.isDirectory() || isZipSymlink(entry)) {
+                        continue;
+                    }
+                    LOG.debug("Extracting file: {}", entry.getName());
+                    Path outputPath = target.resolve(entry.getName()).normalize();
+                    extractor.submit(outputPath, () -> {
+                        try (InputStream is = zipFile.getInputStream(entry);
+                                OutputStream out = Files.newOutputStream(
+                                        outputPath,
+                                        StandardOpenOption.CREATE,
+                                        StandardOpenOption.TRUNCATE_EXISTING,
+                                        StandardOpenOption.WRITE,
+                                        LinkOption.NOFOLLOW_LINKS)) {
+                            is.transferTo(out);
+                        }
+                    });
+                }
+            }
+            for (ZipArchiveEntry entry : symlinks) {
+                LOG.debug("Extracting symlink: {}", entry.getName());
+                Path outputPath = target.resolve(entry.getName()).normalize();
+                AsiExtraField asiField = (AsiExtraField) entry.getExtraField(new AsiExtraField().getHeaderId());
+                String linkStr = asiField != null && asiField.isLink()
+                        ? asiField.getLinkedFile()
+                        : zipFile.getUnixSymlink(entry);
+                Path linkPath = Paths.get(linkStr);
+                ensureSafeSymlinkTarget(outputPath, linkPath, target);
+                createSymbolicLink(outputPath, linkPath);
+            }
         } catch (IOException e) {
             throw new OrasException("Failed to extract zip file", e);
         }
     }
 
+    private static boolean isZipSymlink(ZipArchiveEntry entry) {
+        AsiExtraField asiField = (AsiExtraField) entry.getExtraField(new AsiExtraField().getHeaderId());
+        return entry.isUnixSymlink() || (asiField != null && asiField.isLink());
+    }
+
     /**
      * Unzip a file to a temporary directory and return the local path to the temporary directory
      * @param fis The zip file input stream
@@ -448,57 +1002,102 @@ public final class ArchiveUtils {
      * @param target The target directory
      */
     public static void untar(InputStream fis, Path target) {
+        untar(fis, target, 1);
+    }
+
+    /**
+     * Extract a tar file to a target directory. The archive is read sequentially while small files are written by
+     * a pool of writer threads.
+     * @param fis The archive stream
+     * @param target The target directory
+     * @param threads The number of writer threads, 1 to write on the calling thread
+     */
+    public static void untar(InputStream fis, Path target, int threads) {
 
         // Open the tar.gz file for reading
         try {
             try (BufferedInputStream bis = new BufferedInputStream(fis);
                     TarArchiveInputStream tais = new TarArchiveInputStream(bis)) {
+                extractTar(tais, target, threads);
+            }
+        } catch (IOException e) {
+            throw new OrasException("Failed to extract tar.gz file", e);
+        }
+    }
 
-                TarArchiveEntry entry;
-                // Iterate through tar entries
-                while ((entry = tais.getNextEntry()) != null) {
+    /**
+     * Extract the entries of a tar stream to a target directory
+     * @param tais The tar stream
+     * @param target The target directory
+     * @throws IOException If an entry cannot be extracted
+     */
+    private static void extractTar(TarArchiveInputStream tais, Path target, int threads) throws IOException {
+        try (ParallelExtractor extractor = new ParallelExtractor(threads)) {
+            TarArchiveEntry entry;
+            // Iterate through tar entries, the archive is read sequentially
+            while ((entry = tais.getNextEntry()) != null) {
 
-                    // Check if the entry is outside the target directory
-                    ensureSafeEntry(entry, target);
+                // Check if the entry is outside the target directory
+                ensureSafeEntry(entry, target);
 
-                    // Prevent path traversal attacks
-                    Path outputPath = target.resolve(entry.getName()).normalize();
+                // Prevent path traversal attacks
+                Path outputPath = target.resolve(entry.getName()).normalize();
 
-                    LOG.trace("Extracting entry: {}", entry.getName());
+                LOG.trace("Extracting entry: {}", entry.getName());
 
-                    if (entry.isDirectory()) {
-                        LOG.debug("Extracting directory: {}", entry.getName());
-                        Files.createDirectories(outputPath);
-                    } else {
-                        LOG.trace("Creating directories for file: {}", outputPath.getParent());
-                        Files.createDirectories(outputPath.getParent());
+                if (entry.isDirectory()) {
+                    LOG.debug("Extracting directory: {}", entry.getName());
+                    Files.createDirectories(outputPath);
+                } else {
+                    LOG.trace("Creating directories for file: {}", outputPath.getParent());
+                    Files.createDirectories(outputPath.getParent());
 
-                        // Restore file permissions (optional, based on your need)
-                        if (entry.isSymbolicLink()) {
-                            Path linkPath = Paths.get(entry.getLinkName());
-                            ensureSafeSymlinkTarget(outputPath, linkPath, target);
-                            createSymbolicLink(outputPath, linkPath);
-                        } else {
-                            try (OutputStream out = Files.newOutputStream(
-                                    outputPath,
-                                    StandardOpenOption.CREATE,
-                                    StandardOpenOption.TRUNCATE_EXISTING,
-                                    StandardOpenOption.WRITE,
-                                    LinkOption.NOFOLLOW_LINKS)) {
-                                tais.transferTo(out);
-                            }
-                            if (OsUtils.isPosixFileSystemSupported()) {
-                                Files.setPosixFilePermissions(outputPath, convertToPosixPermissions(entry.getMode()));
-                            }
-                        }
+                    // Restore file permissions (optional, based on your need)
+                    if (entry.isSymbolicLink()) {
+                        // Symlinks change the tree, apply them once previous files are written
+                        extractor.barrier();
+                        Path linkPath = Paths.get(entry.getLinkName());
+                        ensureSafeSymlinkTarget(outputPath, linkPath, target);
+                        createSymbolicLink(outputPath, linkPath);
+                    } else if (threads > 1 && entry.getSize() <= MAX_BUFFERED_ENTRY_SIZE) {
+                        // Small files are buffered and written by the pool
+                        byte[] content = tais.readNBytes((int) entry.getSize());
+                        int mode = entry.getMode();
+                        extractor.submit(outputPath, () -> writeFile(outputPath, content, mode));
+                    } else {
+                        int mode = entry.getMode();
+                        extractor.run(outputPath, () -> writeFile(outputPath, tais, mode));
                     }
                 }
             }
-        } catch (IOException e) {
-            throw new OrasException("Failed to extract tar.gz file", e);
         }
     }
 
+    /**
+     * Write an extracted file and restore its permissions
+     * @param outputPath The file
+     * @param content The content
+     * @param mode The mode of the entry
+     * @throws IOException If the file cannot be written
+     */
+    private static void writeFile(Path outputPath, InputStream content, int mode) throws IOException {
+        try (OutputStream out = Files.newOutputStream(
+                outputPath,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE,
+                LinkOption.NOFOLLOW_LINKS)) {
+            content.transferTo(out);
+        }
+        if (OsUtils.isPosixFileSystemSupported()) {
+            Files.setPosixFilePermissions(outputPath, convertToPosixPermissions(mode));
+        }
+    }
+
+    private static void writeFile(Path outputPath, byte[] content, int mode) throws IOException {
+        writeFile(outputPath, new ByteArrayInputStream(content), mode);
+    }
+
     /**
      * Compress a tar file to a tar.gz or tar.zstd file depending on the requested media type
      * @param path The tar file
@@ -506,7 +1105,18 @@ public final class ArchiveUtils {
      * @return The path to the tar.gz file or the tar.zstd file
      */
     public static LocalPath compress(LocalPath path, String mediaType) {
-        return SupportedCompression.fromMediaType(mediaType).compress(path);
+        return compress(path, mediaType, CompressionOptions.defaults());
+    }
+
+    /**
+     * Compress a tar file to a tar.gz or tar.zstd file depending on the requested media type
+     * @param path The tar file
+     * @param mediaType The target media type
+     * @param options The compression options
+     * @return The path to the tar.gz file or the tar.zstd file
+     */
+    public static LocalPath compress(LocalPath path, String mediaType, CompressionOptions options) {
+        return SupportedCompression.fromMediaType(mediaType).compress(path, options);
     }
 
     /**
@@ -519,30 +1129,30 @@ public final class ArchiveUtils {
         return SupportedCompression.fromMediaType(mediaType).uncompress(is);
     }
 
-    static LocalPath compressZstd(LocalPath tarFile) {
+    static LocalPath compressZstd(LocalPath tarFile, CompressionOptions options) {
         LOG.trace("Compressing tar file to zstd archive");
-        Path tarGzFile = Paths.get(tarFile + ".gz");
+        Path tarZstdFile = Paths.get(tarFile + "." + SupportedCompression.ZSTD.getFileExtension());
         try (InputStream fis = Files.newInputStream(tarFile.getPath());
                 BufferedInputStream bis = new BufferedInputStream(fis);
-                OutputStream fos = Files.newOutputStream(tarGzFile);
+                OutputStream fos = Files.newOutputStream(tarZstdFile);
                 BufferedOutputStream bos = new BufferedOutputStream(fos);
-                ZstdCompressorOutputStream zstdos = new ZstdCompressorOutputStream(bos)) {
+                OutputStream zstdos = zstdOutputStream(bos, options)) {
 
             bis.transferTo(zstdos);
         } catch (IOException e) {
             throw new OrasException("Failed to compress tar file to zstd archive", e);
         }
-        return LocalPath.of(tarGzFile, Const.BLOB_DIR_ZSTD_MEDIA_TYPE);
+        return LocalPath.of(tarZstdFile, Const.BLOB_DIR_ZSTD_MEDIA_TYPE);
     }
 
-    static LocalPath compressGzip(LocalPath tarFile) {
+    static LocalPath compressGzip(LocalPath tarFile, CompressionOptions options) {
         LOG.trace("Compressing tar file to gz archive");
         Path tarGzFile = Paths.get(tarFile.toString() + ".gz");
         try (InputStream fis = Files.newInputStream(tarFile.getPath());
                 BufferedInputStream bis = new BufferedInputStream(fis);
                 OutputStream fos = Files.newOutputStream(tarGzFile);
                 BufferedOutputStream bos = new BufferedOutputStream(fos);
-                GzipCompressorOutputStream gzos = new GzipCompressorOutputStream(bos)) {
+                OutputStream gzos = gzipOutputStream(bos, options)) {
 
             bis.transferTo(gzos);
         } catch (IOException e) {
@@ -551,11 +1161,65 @@ public final class ArchiveUtils {
         return LocalPath.of(tarGzFile, Const.DEFAULT_BLOB_DIR_MEDIA_TYPE);
     }
 
+    static OutputStream gzipOutputStream(OutputStream out, CompressionOptions options) {
+        int threads = options.threads();
+        if (threads > 1) {
+            LOG.trace("Compressing to gz with {} threads", threads);
+            return new ParallelGzipOutputStream(out, threads);
+        }
+        try {
+            return new GzipCompressorOutputStream(out);
+        } catch (IOException e) {
+            throw new OrasException("Failed to create gz stream", e);
+        }
+    }
+
+    static OutputStream zstdOutputStream(OutputStream out, CompressionOptions options) {
+        Integer level = options.level();
+        try {
+            ZstdOutputStream zstdos =
+                    new ZstdOutputStream(out, level != null ? level : Zstd.defaultCompressionLevel());
+            // Native multi-threaded compression, 0 workers compresses on the calling thread
+            if (options.threads() > 1) {
+                zstdos.setWorkers(options.threads());
+            }
+            if (options.isLongDistanceMatching()) {
+                zstdos.setLong(ZSTD_LONG_WINDOW_LOG);
+            }
+            LOG.trace(
+                    "Compressing to zstd with level {}, {} threads, long distance matching {}",
+                    level,
+                    options.threads(),
+                    options.isLongDistanceMatching());
+            return zstdos;
+        } catch (IOException e) {
+            throw new OrasException("Failed to create zstd stream", e);
+        }
+    }
+
+    static InputStream gzipInputStream(InputStream in) {
+        try {
+            // Parallel compression writes concatenated members
+            return new GzipCompressorInputStream(in, true);
+        } catch (IOException e) {
+            throw new OrasException("Failed to read gz stream", e);
+        }
+    }
+
+    static InputStream zstdInputStream(InputStream in) {
+        try {
+            return new ZstdCompressorInputStream(in);
+        } catch (IOException e) {
+            throw new OrasException("Failed to read zstd stream", e);
+        }
+    }
+
     static LocalPath uncompressGzip(InputStream inputStream) {
         LOG.trace("Uncompressing tar.gz file");
         Path tarFile = createTempTar();
         try (BufferedInputStream bis = new BufferedInputStream(inputStream);
-                GzipCompressorInputStream gzis = new GzipCompressorInputStream(bis);
+                // Parallel compression writes concatenated members
+                GzipCompressorInputStream gzis = new GzipCompressorInputStream(bis, true);
                 OutputStream fos = Files.newOutputStream(tarFile);
                 BufferedOutputStream bos = new BufferedOutputStream(fos)) {
 
@@ -618,6 +1282,22 @@ public final class ArchiveUtils {
         return mode;
     }
 
+    /**
+     * Get the normalised mode of a path in reproducible archives
+     * @param path The path
+     * @return The mode
+     * @throws IOException If the permissions cannot be read
+     */
+    private static int reproducibleMode(Path path) throws IOException {
+        if (Files.isSymbolicLink(path)) {
+            return 0777;
+        }
+        boolean executable = OsUtils.isPosixFileSystemSupported()
+                ? Files.getPosixFilePermissions(path).contains(PosixFilePermission.OWNER_EXECUTE)
+                : Files.isExecutable(path);
+        return Files.isDirectory(path) || executable ? 0755 : 0644;
+    }
+
     /**
      * Convert the tar entry mode to PosixFilePermissions
      * @param mode The mode
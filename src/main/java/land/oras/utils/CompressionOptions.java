@@ -0,0 +1,185 @@
+/*-
+ * =LICENSE=
+ * ORAS Java SDK
+ * ===
+ * Copyright (C) 2024 - 2026 ORAS
+ * ===
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =LICENSEEND=
+ */
+package land.oras.utils;
+
+import java.time.Instant;
+import java.util.Objects;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Options tuning how archives are compressed. Instances are immutable and passed along with each compression,
+ * see {@link land.oras.OCI.PushOptions#withCompression(CompressionOptions)}.
+ */
+@NullMarked
+public final class CompressionOptions {
+
+    /**
+     * Logger
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(CompressionOptions.class);
+
+    private static final CompressionOptions DEFAULTS =
+            new CompressionOptions(1, null, false, false, defaultReproducibleTime());
+
+    private final int threads;
+    private final @Nullable Integer level;
+    private final boolean longDistanceMatching;
+    private final boolean reproducible;
+    private final Instant reproducibleTime;
+
+    private CompressionOptions(
+            int threads,
+            @Nullable Integer level,
+            boolean longDistanceMatching,
+            boolean reproducible,
+            Instant reproducibleTime) {
+        this.threads = threads;
+        this.level = level;
+        this.longDistanceMatching = longDistanceMatching;
+        this.reproducible = reproducible;
+        this.reproducibleTime = reproducibleTime;
+    }
+
+    private static Instant defaultReproducibleTime() {
+        String sourceDateEpoch = System.getenv("SOURCE_DATE_EPOCH");
+        if (sourceDateEpoch != null) {
+            try {
+                return Instant.ofEpochSecond(Long.parseLong(sourceDateEpoch.trim()));
+            } catch (NumberFormatException e) {
+                LOG.warn("Ignoring invalid SOURCE_DATE_EPOCH: {}", sourceDateEpoch);
+            }
+        }
+        return Instant.EPOCH;
+    }
+
+    /**
+     * Default options: single thread, default level of the method, no long distance matching, archives not
+     * written reproducibly.
+     * @return The default compression options
+     */
+    public static CompressionOptions defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * Return options compressing with the given number of threads. With more than one thread,
+     * {@link SupportedCompression#GZIP} compresses independent blocks in parallel and writes them as concatenated
+     * gzip members, {@link SupportedCompression#ZSTD} uses as many native workers and {@link SupportedCompression#ZIP}
+     * deflates entries concurrently. Methods without parallel support ignore it.
+     * @param threads The number of threads, at least 1
+     * @return The new options
+     */
+    public CompressionOptions withThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Threads must be greater than 0");
+        }
+        return new CompressionOptions(threads, level, longDistanceMatching, reproducible, reproducibleTime);
+    }
+
+    /**
+     * Return options compressing with the given level for {@link SupportedCompression#ZSTD}, from negative fast
+     * levels up to 22. Other methods ignore it.
+     * @param level The compression level or null for the default level
+     * @return The new options
+     */
+    public CompressionOptions withLevel(@Nullable Integer level) {
+        return new CompressionOptions(threads, level, longDistanceMatching, reproducible, reproducibleTime);
+    }
+
+    /**
+     * Return options enabling or disabling long distance matching for {@link SupportedCompression#ZSTD}, finding
+     * matches over a 128 MiB window which helps large layers with repeated content. Other methods ignore it.
+     * @param longDistanceMatching True to enable
+     * @return The new options
+     */
+    public CompressionOptions withLongDistanceMatching(boolean longDistanceMatching) {
+        return new CompressionOptions(threads, level, longDistanceMatching, reproducible, reproducibleTime);
+    }
+
+    /**
+     * Return options writing tar and zip archives reproducibly, so that an unchanged directory produces an
+     * identical archive and digest. Entries are sorted by name, get the {@link #reproducibleTime() reproducible
+     * time} as modification time and have their mode normalised to 0755 for directories and executables, 0644 for
+     * other files and 0777 for symlinks. Compressed archives are also identical as long as the threads and level are.
+     * @param reproducible True to write archives reproducibly
+     * @return The new options
+     */
+    public CompressionOptions withReproducible(boolean reproducible) {
+        return new CompressionOptions(threads, level, longDistanceMatching, reproducible, reproducibleTime);
+    }
+
+    /**
+     * Return options setting the modification time of entries in reproducible archives. Defaults to
+     * {@code SOURCE_DATE_EPOCH} when set in the environment, otherwise to the epoch.
+     * @param reproducibleTime The modification time
+     * @return The new options
+     */
+    public CompressionOptions withReproducibleTime(Instant reproducibleTime) {
+        return new CompressionOptions(
+                threads,
+                level,
+                longDistanceMatching,
+                reproducible,
+                Objects.requireNonNull(reproducibleTime, "reproducibleTime"));
+    }
+
+    /**
+     * Get the number of threads used to compress
+     * @return The number of threads
+     */
+    public int threads() {
+        return threads;
+    }
+
+    /**
+     * Get the compression level
+     * @return The compression level or null for the default level of the method
+     */
+    public @Nullable Integer level() {
+        return level;
+    }
+
+    /**
+     * Whether long distance matching is enabled
+     * @return True if enabled
+     */
+    public boolean isLongDistanceMatching() {
+        return longDistanceMatching;
+    }
+
+    /**
+     * Whether archives are written reproducibly
+     * @return True if archives are written reproducibly
+     */
+    public boolean isReproducible() {
+        return reproducible;
+    }
+
+    /**
+     * Get the modification time of entries in reproducible archives
+     * @return The modification time
+     */
+    public Instant reproducibleTime() {
+        return reproducibleTime;
+    }
+}
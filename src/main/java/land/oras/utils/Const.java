@@ -476,6 +476,21 @@ public final class Const {
      */
     public static final String METRIC_HTTP_RETRIES = "land.oras.http.client.retries";
 
+    /**
+     * Metric name for the number of pooled HTTP transports
+     */
+    public static final String METRIC_HTTP_TRANSPORTS = "land.oras.http.client.transports";
+
+    /**
+     * Metric name for the adaptive limit of in-flight HTTP requests per host
+     */
+    public static final String METRIC_HTTP_CONCURRENCY_LIMIT = "land.oras.http.client.concurrency.limit";
+
+    /**
+     * Metric name for the bytes not sent thanks to the upload strategy learned for a registry
+     */
+    public static final String METRIC_UPLOAD_BYTES_SAVED = "land.oras.upload.bytes.saved";
+
     /**
      * Metric name for token refresh duration
      */
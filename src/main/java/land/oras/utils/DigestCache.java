@@ -0,0 +1,265 @@
+/*-
+ * =LICENSE=
+ * ORAS Java SDK
+ * ===
+ * Copyright (C) 2024 - 2026 ORAS
+ * ===
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =LICENSEEND=
+ */
+
+package land.oras.utils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Optional cache of file digests, consulted before hashing a file to push with
+ * {@link SupportedAlgorithm#cachedDigest(Path)}. Verifications always hash the content.
+ * Entries are keyed by absolute path and algorithm and only reused while the size, modification time and
+ * file key (inode when available) of the file are unchanged. An optional directory persists entries across
+ * processes, bounded to {@link #MAX_CACHE_SIZE} entries. Temporary archives created by the library are never
+ * persisted since their paths are not reused. The cache is disabled by default, see {@link #enable()} and
+ * {@link #enable(Path)}.
+ */
+@NullMarked
+public final class DigestCache {
+
+    /**
+     * Logger for this class
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(DigestCache.class);
+
+    /**
+     * Hard cache limit
+     */
+    public static final int MAX_CACHE_SIZE = 10_000;
+
+    /**
+     * The directory holding the temporary files created by the library
+     */
+    private static final Path TEMP_DIR =
+            Path.of(System.getProperty("java.io.tmpdir")).toAbsolutePath().normalize();
+
+    /**
+     * Use global registry by default
+     */
+    private static MeterRegistry meterRegistry = Metrics.globalRegistry;
+
+    /**
+     * The cache in use or null when disabled
+     */
+    private static volatile @Nullable DigestCache instance;
+
+    /**
+     * The in-memory entries
+     */
+    private final Cache<Key, Entry> cache;
+
+    /**
+     * The store persisting entries or null for in-memory only
+     */
+    private final @Nullable PropertiesStore store;
+
+    /**
+     * Cache key
+     * @param path The absolute path
+     * @param algorithm The algorithm prefix
+     */
+    record Key(String path, String algorithm) {}
+
+    /**
+     * Cached digest with the attributes of the file it was computed for
+     * @param size The size
+     * @param modified The modification time in nanoseconds
+     * @param fileKey The file key or null if not supported by the file system
+     * @param digest The digest
+     */
+    record Entry(long size, long modified, @Nullable String fileKey, String digest) {
+
+        static Entry of(BasicFileAttributes attributes, String digest) {
+            Object fileKey = attributes.fileKey();
+            return new Entry(
+                    attributes.size(),
+                    attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS),
+                    fileKey != null ? fileKey.toString() : null,
+                    digest);
+        }
+
+        boolean matches(BasicFileAttributes attributes) {
+            Entry other = of(attributes, digest);
+            return size == other.size && modified == other.modified && Objects.equals(fileKey, other.fileKey);
+        }
+    }
+
+    /**
+     * Create a cache
+     * @param directory The directory persisting entries or null for in-memory only
+     */
+    DigestCache(@Nullable Path directory) {
+        this.store = directory != null ? new PropertiesStore(directory, "", MAX_CACHE_SIZE) : null;
+        this.cache = Caffeine.newBuilder().maximumSize(MAX_CACHE_SIZE).recordStats().build();
+    }
+
+    /**
+     * Enable an in-memory digest cache
+     */
+    public static void enable() {
+        enable(null);
+    }
+
+    /**
+     * Enable a digest cache persisting entries in the given directory
+     * @param directory The directory or null for in-memory only
+     */
+    public static void enable(@Nullable Path directory) {
+        DigestCache digestCache = new DigestCache(directory);
+        CaffeineCacheMetrics.monitor(meterRegistry, digestCache.cache, "land.oras.digest.cache");
+        instance = digestCache;
+    }
+
+    /**
+     * Disable the digest cache
+     */
+    public static void disable() {
+        instance = null;
+    }
+
+    /**
+     * Set the meter registry for monitoring the cache metrics
+     * @param meterRegistry the meter registry to use for monitoring the cache metrics
+     */
+    public static void setMeterRegistry(MeterRegistry meterRegistry) {
+        DigestCache.meterRegistry = meterRegistry;
+        DigestCache digestCache = instance;
+        if (digestCache != null) {
+            CaffeineCacheMetrics.monitor(meterRegistry, digestCache.cache, "land.oras.digest.cache");
+        }
+    }
+
+    /**
+     * Get the cache in use
+     * @return The cache or null if disabled
+     */
+    static @Nullable DigestCache get() {
+        return instance;
+    }
+
+    /**
+     * Return the cached digest of a file or compute and cache it
+     * @param path The file
+     * @param algorithm The algorithm prefix
+     * @param compute Computes the digest on cache miss
+     * @return The digest
+     */
+    String digest(Path path, String algorithm, Supplier<String> compute) {
+        Path absolute = path.toAbsolutePath().normalize();
+        BasicFileAttributes before = attributes(absolute);
+        if (before == null) {
+            return compute.get();
+        }
+        Key key = new Key(absolute.toString(), algorithm);
+        Entry entry = cache.getIfPresent(key);
+        if (entry == null && store != null) {
+            entry = load(store, key);
+        }
+        if (entry != null && entry.matches(before)) {
+            LOG.trace("Digest cache hit for {}", absolute);
+            cache.put(key, entry);
+            return entry.digest();
+        }
+        String digest = compute.get();
+        // Only cache if the file did not change while hashing
+        BasicFileAttributes after = attributes(absolute);
+        Entry computed = Entry.of(before, digest);
+        if (after != null && computed.matches(after)) {
+            cache.put(key, computed);
+            if (store != null && !isTemporary(absolute)) {
+                store(store, key, computed);
+            }
+        }
+        return digest;
+    }
+
+    private static @Nullable BasicFileAttributes attributes(Path path) {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Whether a file is or is within a temporary file or directory created by the library
+     * @param path The absolute path
+     * @return True if temporary
+     */
+    static boolean isTemporary(Path path) {
+        if (!path.startsWith(TEMP_DIR) || path.equals(TEMP_DIR)) {
+            return false;
+        }
+        return TEMP_DIR.relativize(path).getName(0).toString().startsWith("oras");
+    }
+
+    private static String name(Key key) {
+        return "%s@%s".formatted(key.algorithm(), key.path());
+    }
+
+    private static @Nullable Entry load(PropertiesStore store, Key key) {
+        Properties properties = store.load(name(key));
+        if (properties == null || !key.path().equals(properties.getProperty("path"))) {
+            return null;
+        }
+        try {
+            return new Entry(
+                    Long.parseLong(properties.getProperty("size")),
+                    Long.parseLong(properties.getProperty("modified")),
+                    properties.getProperty("fileKey"),
+                    Objects.requireNonNull(properties.getProperty("digest")));
+        } catch (RuntimeException e) {
+            LOG.debug("Ignoring invalid digest cache entry for {}: {}", key.path(), e.getMessage());
+            return null;
+        }
+    }
+
+    private static void store(PropertiesStore store, Key key, Entry entry) {
+        Properties properties = new Properties();
+        properties.setProperty("path", key.path());
+        properties.setProperty("size", String.valueOf(entry.size()));
+        properties.setProperty("modified", String.valueOf(entry.modified()));
+        if (entry.fileKey() != null) {
+            properties.setProperty("fileKey", entry.fileKey());
+        }
+        properties.setProperty("digest", entry.digest());
+        try {
+            store.store(name(key), properties);
+        } catch (IOException e) {
+            LOG.warn("Failed to persist digest cache entry for {}: {}", key.path(), e.getMessage());
+        }
+    }
+}
@@ -50,7 +50,22 @@ final class DigestUtils {
     private DigestUtils() {}
 
     /**
-     * Calculate the digest of a file
+     * Calculate the digest of a file, using the {@link DigestCache} when enabled
+     * @param algorithm The algorithm
+     * @param prefix The prefix
+     * @param path The path
+     * @return The digest
+     */
+    static String cachedDigest(String algorithm, String prefix, Path path) {
+        DigestCache cache = DigestCache.get();
+        if (cache != null) {
+            return cache.digest(path, prefix, () -> digest(algorithm, prefix, path));
+        }
+        return digest(algorithm, prefix, path);
+    }
+
+    /**
+     * Calculate the digest of a file from its content
      * @param algorithm The algorithm
      * @param prefix The prefix
      * @param path The path
@@ -118,6 +133,29 @@ final class DigestUtils {
         }
     }
 
+    /**
+     * Create a message digest for the algorithm
+     * @param algorithm The algorithm
+     * @return The message digest
+     */
+    static MessageDigest newMessageDigest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (Exception e) {
+            throw new OrasException("Failed to create digest for algorithm %s".formatted(algorithm), e);
+        }
+    }
+
+    /**
+     * Complete the message digest and format it with the prefix
+     * @param prefix The prefix
+     * @param digest The message digest
+     * @return The digest
+     */
+    static String format(String prefix, MessageDigest digest) {
+        return formatHex(prefix, digest.digest());
+    }
+
     private static String formatHex(String prefix, final byte[] hashBytes) {
         String formatHex = HEX_FORMAT.formatHex(hashBytes);
         return prefix + ":" + formatHex;
@@ -0,0 +1,185 @@
+/*-
+ * =LICENSE=
+ * ORAS Java SDK
+ * ===
+ * Copyright (C) 2024 - 2026 ORAS
+ * ===
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =LICENSEEND=
+ */
+
+package land.oras.utils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.Properties;
+import land.oras.Descriptor;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache of manifests and indexes addressed by digest. Content fetched by digest can never change, so once its
+ * bytes are verified against the digest they are reused instead of being fetched and parsed again. Entries are
+ * scoped to the repository they were fetched from, since a registry only serves a digest from the repositories
+ * holding it, and to the identity of the credentials that fetched them, so that other credentials are still
+ * authorized by the registry. An optional directory persists the bytes across processes, they are verified again
+ * when loaded. The directory is bounded to {@link #MAX_CACHE_SIZE} entries, the least recently used ones are pruned.
+ */
+@NullMarked
+public final class ManifestCache {
+
+    /**
+     * Logger
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(ManifestCache.class);
+
+    /**
+     * Hard cache limit
+     */
+    public static final int MAX_CACHE_SIZE = 1_000;
+
+    private static final String MEDIA_TYPE = "mediaType";
+    private static final String JSON = "json";
+
+    /**
+     * The in-memory entries
+     */
+    private final Cache<Key, Entry> cache;
+
+    /**
+     * The store persisting entries or null for in-memory only
+     */
+    private final @Nullable PropertiesStore store;
+
+    /**
+     * Cache key
+     * @param registry The API registry host
+     * @param repository The repository
+     * @param digest The digest of the content
+     * @param identity The identity of the credentials that fetched the content
+     */
+    public record Key(String registry, String repository, String digest, String identity) {}
+
+    /**
+     * Verified content with the manifest or index parsed from it, if already parsed
+     * @param mediaType The media type
+     * @param json The content
+     * @param size The size of the content in bytes
+     * @param parsed The parsed manifest or index or null if not parsed yet
+     */
+    public record Entry(String mediaType, String json, long size, @Nullable Descriptor parsed) {}
+
+    /**
+     * Create a cache
+     * @param directory The directory persisting entries or null for in-memory only
+     */
+    public ManifestCache(@Nullable Path directory) {
+        this.store = directory != null ? new PropertiesStore(directory, "", MAX_CACHE_SIZE) : null;
+        this.cache = Caffeine.newBuilder().maximumSize(MAX_CACHE_SIZE).build();
+    }
+
+    /**
+     * Get the cached content of a digest
+     * @param key The key
+     * @return The entry or null if not cached
+     */
+    public @Nullable Entry get(Key key) {
+        Entry entry = cache.getIfPresent(key);
+        if (entry == null && store != null) {
+            entry = load(store, key);
+            if (entry != null) {
+                cache.put(key, entry);
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Cache content already verified against the digest of the key
+     * @param key The key
+     * @param mediaType The media type
+     * @param json The content
+     */
+    public void put(Key key, String mediaType, String json) {
+        Entry entry = new Entry(mediaType, json, json.getBytes(StandardCharsets.UTF_8).length, null);
+        if (cache.asMap().putIfAbsent(key, entry) == null && store != null) {
+            store(store, key, entry);
+        }
+    }
+
+    /**
+     * Attach the manifest or index parsed from the cached content of a digest. Nothing is cached if the content
+     * itself is not cached.
+     * @param key The key
+     * @param parsed The manifest or index
+     */
+    public void put(Key key, Descriptor parsed) {
+        cache.asMap()
+                .computeIfPresent(key, (k, entry) -> new Entry(entry.mediaType(), entry.json(), entry.size(), parsed));
+    }
+
+    /**
+     * Forget the content of a digest
+     * @param key The key
+     */
+    public void invalidate(Key key) {
+        cache.invalidate(key);
+        if (store != null) {
+            try {
+                store.delete(name(key));
+            } catch (IOException e) {
+                LOG.warn("Failed to delete cached manifest {}: {}", key.digest(), e.getMessage());
+            }
+        }
+    }
+
+    private static String name(Key key) {
+        return "%s/%s@%s#%s".formatted(key.registry(), key.repository(), key.digest(), key.identity());
+    }
+
+    private static @Nullable Entry load(PropertiesStore store, Key key) {
+        Properties properties = store.load(name(key));
+        if (properties == null) {
+            return null;
+        }
+        try {
+            String json = Objects.requireNonNull(properties.getProperty(JSON));
+            byte[] content = json.getBytes(StandardCharsets.UTF_8);
+            if (!key.digest().equals(SupportedAlgorithm.fromDigest(key.digest()).digest(content))) {
+                LOG.warn("Ignoring cached manifest {} not matching its digest", key.digest());
+                return null;
+            }
+            return new Entry(Objects.requireNonNull(properties.getProperty(MEDIA_TYPE)), json, content.length, null);
+        } catch (RuntimeException e) {
+            LOG.debug("Ignoring invalid cached manifest {}: {}", key.digest(), e.getMessage());
+            return null;
+        }
+    }
+
+    private static void store(PropertiesStore store, Key key, Entry entry) {
+        Properties properties = new Properties();
+        properties.setProperty(MEDIA_TYPE, entry.mediaType());
+        properties.setProperty(JSON, entry.json());
+        try {
+            store.store(name(key), properties);
+        } catch (IOException e) {
+            LOG.warn("Failed to persist cached manifest {}: {}", key.digest(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*-
+ * =LICENSE=
+ * ORAS Java SDK
+ * ===
+ * Copyright (C) 2024 - 2026 ORAS
+ * ===
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =LICENSEEND=
+ */
+
+package land.oras.utils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Write archive entries on a bounded pool of writer threads while the archive is read sequentially.
+ * Writes to the same path are applied in archive order, and {@link #barrier()} lets the caller apply entries
+ * that change the tree (like symlinks) only once all previous writes are done. With a single thread, writes
+ * run on the calling thread.
+ */
+@NullMarked
+final class ParallelExtractor implements AutoCloseable {
+
+    /**
+     * A write throwing IO exceptions
+     */
+    @FunctionalInterface
+    interface Write {
+
+        /**
+         * Perform the write
+         * @throws IOException If the write fails
+         */
+        void run() throws IOException;
+    }
+
+    private final @Nullable ExecutorService executor;
+    private final Semaphore permits;
+    private final Map<Path, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicReference<@Nullable Throwable> failure = new AtomicReference<>();
+
+    /**
+     * Create an extractor
+     * @param threads The number of writer threads
+     */
+    ParallelExtractor(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Threads must be greater than 0");
+        }
+        this.executor = threads > 1
+                ? Executors.newFixedThreadPool(threads, r -> {
+                    Thread t = new Thread(r);
+                    t.setName("archive-extract-worker-%d".formatted(t.getId()));
+                    t.setDaemon(true);
+                    return t;
+                })
+                : null;
+        // Bound the number of pending writes, and so the memory of buffered entries
+        this.permits = new Semaphore(threads * 4);
+    }
+
+    /**
+     * Submit a write to the given path
+     * @param path The path written
+     * @param write The write
+     * @throws IOException If a previous write failed or the write fails on the calling thread
+     */
+    void submit(Path path, Write write) throws IOException {
+        rethrow();
+        if (executor == null) {
+            write.run();
+            return;
+        }
+        // Keep archive order for repeated entries
+        CompletableFuture<Void> previous = inFlight.get(path);
+        if (previous != null) {
+            await(previous);
+        }
+        acquire();
+        CompletableFuture<Void> future;
+        try {
+            future = CompletableFuture.runAsync(
+                    () -> {
+                        try {
+                            write.run();
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    },
+                    executor);
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+        inFlight.put(path, future);
+        future.whenComplete((result, error) -> {
+            permits.release();
+            inFlight.remove(path, future);
+            if (error != null) {
+                failure.compareAndSet(null, error);
+            }
+        });
+    }
+
+    /**
+     * Run a write on the calling thread, once the pending writes to the same path are done
+     * @param path The path written
+     * @param write The write
+     * @throws IOException If a previous write failed or the write fails
+     */
+    void run(Path path, Write write) throws IOException {
+        rethrow();
+        CompletableFuture<Void> previous = inFlight.get(path);
+        if (previous != null) {
+            await(previous);
+        }
+        write.run();
+    }
+
+    /**
+     * Wait for all submitted writes to complete
+     * @throws IOException If a write failed
+     */
+    void barrier() throws IOException {
+        for (CompletableFuture<Void> future : inFlight.values()) {
+            await(future);
+        }
+        rethrow();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            barrier();
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    private void acquire() throws IOException {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while extracting archive", e);
+        }
+    }
+
+    private void await(CompletableFuture<Void> future) throws IOException {
+        try {
+            future.join();
+        } catch (CompletionException e) {
+            failure.compareAndSet(null, e.getCause());
+            rethrow();
+        }
+    }
+
+    private void rethrow() throws IOException {
+        Throwable error = failure.get();
+        if (error == null) {
+            return;
+        }
+        if (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        if (error instanceof UncheckedIOException unchecked) {
+            throw unchecked.getCause();
+        }
+        if (error instanceof IOException io) {
+            throw io;
+        }
+        throw new IOException("Failed to extract archive entry", error);
+    }
+}
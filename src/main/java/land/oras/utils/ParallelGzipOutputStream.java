@@ -0,0 +1,205 @@
+/*-
+ * =LICENSE=
+ * ORAS Java SDK
+ * ===
+ * Copyright (C) 2024 - 2026 ORAS
+ * ===
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =LICENSEEND=
+ */
+
+package land.oras.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import org.jspecify.annotations.NullMarked;
+
+/**
+ * Gzip output stream compressing independent blocks in parallel, in the manner of pigz.
+ * Each block is written as a complete gzip member, the output is the concatenation of the members in order
+ * which any standard gzip reader decompresses as a single stream.
+ */
+@NullMarked
+final class ParallelGzipOutputStream extends OutputStream {
+
+    /**
+     * Default size of the uncompressed blocks
+     */
+    static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+
+    /**
+     * Gzip member header: magic, deflate, no flags, no mtime, no extra flags, unknown OS
+     */
+    private static final byte[] HEADER = {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final OutputStream out;
+    private final ForkJoinPool pool;
+    private final int blockSize;
+    private final int maxPending;
+    private final Deque<ForkJoinTask<byte[]>> pending = new ArrayDeque<>();
+    private byte[] block;
+    private int length;
+    private long members;
+    private boolean closed;
+
+    /**
+     * Create a parallel gzip stream
+     * @param out The output stream receiving the gzip members
+     * @param threads The number of compression threads
+     */
+    ParallelGzipOutputStream(OutputStream out, int threads) {
+        this(out, threads, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Create a parallel gzip stream
+     * @param out The output stream receiving the gzip members
+     * @param threads The number of compression threads
+     * @param blockSize The size of the uncompressed blocks
+     */
+    ParallelGzipOutputStream(OutputStream out, int threads, int blockSize) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Threads must be greater than 0");
+        }
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Block size must be greater than 0");
+        }
+        this.out = out;
+        this.pool = new ForkJoinPool(threads);
+        this.blockSize = blockSize;
+        // Bound the memory used by blocks waiting to be written
+        this.maxPending = threads * 2;
+        this.block = new byte[blockSize];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        block[length++] = (byte) b;
+        if (length == blockSize) {
+            submit();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        while (len > 0) {
+            int n = Math.min(len, blockSize - length);
+            System.arraycopy(b, off, block, length, n);
+            length += n;
+            off += n;
+            len -= n;
+            if (length == blockSize) {
+                submit();
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            // An empty stream is still a valid gzip member
+            if (length > 0 || members == 0) {
+                submit();
+            }
+            while (!pending.isEmpty()) {
+                writeNext();
+            }
+            out.close();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void submit() throws IOException {
+        byte[] data = block;
+        int len = length;
+        pending.add(pool.submit(() -> compress(data, len)));
+        members++;
+        block = new byte[blockSize];
+        length = 0;
+        if (pending.size() >= maxPending) {
+            writeNext();
+        }
+    }
+
+    private void writeNext() throws IOException {
+        ForkJoinTask<byte[]> task = pending.poll();
+        if (task == null) {
+            return;
+        }
+        try {
+            out.write(task.join());
+        } catch (RuntimeException e) {
+            throw new IOException("Failed to compress gzip block", e);
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+    /**
+     * Compress a block as a complete gzip member
+     * @param data The data
+     * @param len The length of the data
+     * @return The gzip member
+     */
+    private static byte[] compress(byte[] data, int len) {
+        ByteArrayOutputStream member = new ByteArrayOutputStream(len / 2 + 64);
+        member.writeBytes(HEADER);
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(data, 0, len);
+            deflater.finish();
+            byte[] buffer = new byte[64 * 1024];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                member.write(buffer, 0, n);
+            }
+        } finally {
+            deflater.end();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, len);
+        writeInt(member, (int) crc.getValue());
+        writeInt(member, len);
+        return member.toByteArray();
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value);
+        out.write(value >>> 8);
+        out.write(value >>> 16);
+        out.write(value >>> 24);
+    }
+}
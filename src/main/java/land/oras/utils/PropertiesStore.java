@@ -0,0 +1,208 @@
+/*-
+ * =LICENSE=
+ * ORAS Java SDK
+ * ===
+ * Copyright (C) 2024 - 2026 ORAS
+ * ===
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =LICENSEEND=
+ */
+
+package land.oras.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Directory of small properties files, one per key, used to persist cache entries and upload sessions across
+ * processes. Files are named after the digest of their key and replaced atomically when stored. A store can be
+ * bounded, in which case the least recently used files are pruned once the number of files exceeds the bound.
+ */
+@NullMarked
+final class PropertiesStore {
+
+    /**
+     * Logger for this class
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(PropertiesStore.class);
+
+    /**
+     * The directory holding the files
+     */
+    private final Path directory;
+
+    /**
+     * The suffix of the files
+     */
+    private final String suffix;
+
+    /**
+     * The maximum number of files or 0 for unbounded
+     */
+    private final int maxEntries;
+
+    /**
+     * Number of writes since the store was created, a bounded store is pruned every tenth of its bound
+     */
+    private final AtomicInteger writes = new AtomicInteger();
+
+    /**
+     * Create an unbounded store
+     * @param directory The directory holding the files, created on first write
+     * @param suffix The suffix of the files, possibly empty
+     */
+    PropertiesStore(Path directory, String suffix) {
+        this(directory, suffix, 0);
+    }
+
+    /**
+     * Create a bounded store
+     * @param directory The directory holding the files, created on first write
+     * @param suffix The suffix of the files, possibly empty
+     * @param maxEntries The maximum number of files or 0 for unbounded
+     */
+    PropertiesStore(Path directory, String suffix, int maxEntries) {
+        if (maxEntries < 0) {
+            throw new IllegalArgumentException("maxEntries must not be negative");
+        }
+        this.directory = directory;
+        this.suffix = suffix;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Load the properties of a key
+     * @param key The key
+     * @return The properties or null if none or unreadable
+     */
+    @Nullable
+    Properties load(String key) {
+        Path file = file(key);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream is = Files.newInputStream(file)) {
+            properties.load(is);
+            if (maxEntries > 0) {
+                // Mark as recently used
+                Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            }
+            return properties;
+        } catch (IOException | IllegalArgumentException e) {
+            LOG.debug("Ignoring unreadable entry {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Store the properties of a key, replacing the previous ones atomically. The key is kept as a comment.
+     * @param key The key
+     * @param properties The properties
+     * @throws IOException If the properties cannot be written
+     */
+    void store(String key, Properties properties) throws IOException {
+        Path file = file(key);
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream os = Files.newOutputStream(temp)) {
+                properties.store(os, key);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        if (maxEntries > 0 && writes.getAndIncrement() % Math.max(1, maxEntries / 10) == 0) {
+            prune();
+        }
+    }
+
+    /**
+     * Delete the properties of a key
+     * @param key The key
+     * @throws IOException If the file cannot be deleted
+     */
+    void delete(String key) throws IOException {
+        Files.deleteIfExists(file(key));
+    }
+
+    /**
+     * Get the file holding the properties of a key
+     * @param key The key
+     * @return The file
+     */
+    Path file(String key) {
+        String name = SupportedAlgorithm.SHA256.digest(key.getBytes(StandardCharsets.UTF_8));
+        return directory.resolve(SupportedAlgorithm.getDigest(name) + suffix);
+    }
+
+    /**
+     * Delete the least recently used files exceeding the bound
+     */
+    private void prune() {
+        // Snapshot the modification times, they change as entries are used
+        List<Map.Entry<Path, FileTime>> files = new ArrayList<>();
+        try (Stream<Path> paths = Files.list(directory)) {
+            paths.filter(this::isEntry).forEach(path -> files.add(Map.entry(path, lastModified(path))));
+        } catch (IOException e) {
+            LOG.debug("Cannot list {}: {}", directory, e.getMessage());
+            return;
+        }
+        int excess = files.size() - maxEntries;
+        if (excess <= 0) {
+            return;
+        }
+        files.stream()
+                .sorted(Map.Entry.comparingByValue())
+                .limit(excess)
+                .map(Map.Entry::getKey)
+                .forEach(file -> {
+                    try {
+                        Files.deleteIfExists(file);
+                    } catch (IOException e) {
+                        LOG.debug("Cannot prune {}: {}", file, e.getMessage());
+                    }
+                });
+        LOG.debug("Pruned {} entries from {}", excess, directory);
+    }
+
+    private boolean isEntry(Path path) {
+        String name = path.getFileName().toString();
+        return name.endsWith(suffix) && !name.endsWith(".tmp") && Files.isRegularFile(path);
+    }
+
+    private static FileTime lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+}
@@ -128,7 +128,7 @@ public enum SupportedAlgorithm {
     }
 
     /**
-     * Digest a file
+     * Digest a file, always hashing its content. Use it to verify the content of a file.
      * @param file The file
      * @return The digest
      */
@@ -136,6 +136,17 @@ public enum SupportedAlgorithm {
         return DigestUtils.digest(algorithm, prefix, file);
     }
 
+    /**
+     * Digest a file to push, reusing the digest of the {@link DigestCache} when enabled and the file attributes
+     * are unchanged. A file rewritten with the same size and modification time keeps its previous digest, so
+     * never use it to verify the content of a file.
+     * @param file The file
+     * @return The digest
+     */
+    public String cachedDigest(Path file) {
+        return DigestUtils.cachedDigest(algorithm, prefix, file);
+    }
+
     /**
      * Digest an input stream
      * @param inputStream The input stream
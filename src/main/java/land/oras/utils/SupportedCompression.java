@@ -21,9 +21,11 @@
 package land.oras.utils;
 
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.util.function.BiFunction;
 import java.util.function.Function;
 import land.oras.LocalPath;
 import land.oras.exception.OrasException;
@@ -40,31 +42,59 @@ public enum SupportedCompression {
     /**
      * No compression
      */
-    NO_COMPRESSION(Const.DEFAULT_BLOB_MEDIA_TYPE, "tar", (localPath -> localPath), (is -> {
-        // This is just a tar we need to copy the stream to a temporary file
-        try {
-            Path temp = ArchiveUtils.createTempTar();
-            Files.copy(is, temp, StandardCopyOption.REPLACE_EXISTING);
-            return LocalPath.of(temp, Const.DEFAULT_BLOB_MEDIA_TYPE);
-        } catch (Exception e) {
-            throw new OrasException("Failed to copy stream to temporary file", e);
-        }
-    })),
+    NO_COMPRESSION(
+            Const.DEFAULT_BLOB_MEDIA_TYPE,
+            "tar",
+            ((localPath, options) -> localPath),
+            ((out, options) -> out),
+            (is -> is),
+            (is -> {
+                // This is just a tar we need to copy the stream to a temporary file
+                try {
+                    Path temp = ArchiveUtils.createTempTar();
+                    Files.copy(is, temp, StandardCopyOption.REPLACE_EXISTING);
+                    return LocalPath.of(temp, Const.DEFAULT_BLOB_MEDIA_TYPE);
+                } catch (Exception e) {
+                    throw new OrasException("Failed to copy stream to temporary file", e);
+                }
+            })),
 
     /**
      * ZIP
      */
-    ZIP(Const.ZIP_MEDIA_TYPE, "zip", ArchiveUtils::zip, ArchiveUtils::unzip),
+    ZIP(
+            Const.ZIP_MEDIA_TYPE,
+            "zip",
+            ArchiveUtils::zip,
+            ((out, options) -> {
+                throw new OrasException("Zip archives cannot be written as a compressed stream");
+            }),
+            (is -> {
+                throw new OrasException("Zip archives cannot be read as a compressed stream");
+            }),
+            ArchiveUtils::unzip),
 
     /**
      * GZIP
      */
-    GZIP(Const.DEFAULT_BLOB_DIR_MEDIA_TYPE, "gz", ArchiveUtils::compressGzip, ArchiveUtils::uncompressGzip),
+    GZIP(
+            Const.DEFAULT_BLOB_DIR_MEDIA_TYPE,
+            "gz",
+            ArchiveUtils::compressGzip,
+            ArchiveUtils::gzipOutputStream,
+            ArchiveUtils::gzipInputStream,
+            ArchiveUtils::uncompressGzip),
 
     /**
      * ZSTD
      */
-    ZSTD(Const.BLOB_DIR_ZSTD_MEDIA_TYPE, "zst", ArchiveUtils::compressZstd, ArchiveUtils::uncompressZstd);
+    ZSTD(
+            Const.BLOB_DIR_ZSTD_MEDIA_TYPE,
+            "zst",
+            ArchiveUtils::compressZstd,
+            ArchiveUtils::zstdOutputStream,
+            ArchiveUtils::zstdInputStream,
+            ArchiveUtils::uncompressZstd);
 
     /**
      * The media type
@@ -79,7 +109,17 @@ public enum SupportedCompression {
     /**
      * The compress function
      */
-    private final Function<LocalPath, LocalPath> compressFunction;
+    private final BiFunction<LocalPath, CompressionOptions, LocalPath> compressFunction;
+
+    /**
+     * The stream compress function
+     */
+    private final BiFunction<OutputStream, CompressionOptions, OutputStream> compressStreamFunction;
+
+    /**
+     * The stream uncompress function
+     */
+    private final Function<InputStream, InputStream> uncompressStreamFunction;
 
     /**
      * The uncompress function
@@ -93,11 +133,15 @@ public enum SupportedCompression {
     SupportedCompression(
             String mediaType,
             String fileExtension,
-            Function<LocalPath, LocalPath> compressFunction,
+            BiFunction<LocalPath, CompressionOptions, LocalPath> compressFunction,
+            BiFunction<OutputStream, CompressionOptions, OutputStream> compressStreamFunction,
+            Function<InputStream, InputStream> uncompressStreamFunction,
             Function<InputStream, LocalPath> uncompressFunction) {
         this.mediaType = mediaType;
         this.fileExtension = fileExtension;
         this.compressFunction = compressFunction;
+        this.compressStreamFunction = compressStreamFunction;
+        this.uncompressStreamFunction = uncompressStreamFunction;
         this.uncompressFunction = uncompressFunction;
     }
 
@@ -128,10 +172,21 @@ public enum SupportedCompression {
     /**
      * Compress
      * @param path The path
+     * @param options The compression options
      * @return The compressed path
      */
-    LocalPath compress(LocalPath path) {
-        return compressFunction.apply(path);
+    LocalPath compress(LocalPath path, CompressionOptions options) {
+        return compressFunction.apply(path, options);
+    }
+
+    /**
+     * Wrap an output stream with a compressing stream. Closing the returned stream closes the given one.
+     * @param out The output stream receiving the compressed bytes
+     * @param options The compression options
+     * @return The stream to write uncompressed bytes to
+     */
+    OutputStream compress(OutputStream out, CompressionOptions options) {
+        return compressStreamFunction.apply(out, options);
     }
 
     /**
@@ -143,6 +198,15 @@ public enum SupportedCompression {
         return uncompressFunction.apply(inputStream);
     }
 
+    /**
+     * Wrap an input stream with an uncompressing stream. Closing the returned stream closes the given one.
+     * @param inputStream The compressed stream
+     * @return The uncompressed stream
+     */
+    InputStream uncompressStream(InputStream inputStream) {
+        return uncompressStreamFunction.apply(inputStream);
+    }
+
     /**
      * Get the algorithm from a digest
      * @param mediaType The media type
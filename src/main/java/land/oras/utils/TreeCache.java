@@ -0,0 +1,325 @@
+/*-
+ * =LICENSE=
+ * ORAS Java SDK
+ * ===
+ * Copyright (C) 2024 - 2026 ORAS
+ * ===
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =LICENSEEND=
+ */
+package land.oras.utils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import land.oras.LocalPath;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Optional cache of directory archives, consulted before packing a directory layer. A directory is fingerprinted
+ * by a tree hash over one record per file (relative path, type, size, modification time, mode and link target)
+ * and the fingerprint is mapped to the digests and size of the archive previously produced for it. When the
+ * fingerprint is unchanged, the directory does not need to be archived, compressed and hashed again to know its
+ * digest. An optional directory persists entries across processes. The cache is disabled by default, see
+ * {@link #enable()} and {@link #enable(Path)}.
+ */
+@NullMarked
+public final class TreeCache {
+
+    /**
+     * Logger for this class
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(TreeCache.class);
+
+    /**
+     * Hard cache limit
+     */
+    public static final int MAX_CACHE_SIZE = 1_000;
+
+    /**
+     * Use global registry by default
+     */
+    private static MeterRegistry meterRegistry = Metrics.globalRegistry;
+
+    /**
+     * The cache in use or null when disabled
+     */
+    private static volatile @Nullable TreeCache instance;
+
+    /**
+     * The in-memory entries
+     */
+    private final Cache<Key, Entry> cache;
+
+    /**
+     * The store persisting entries or null for in-memory only
+     */
+    private final @Nullable PropertiesStore store;
+
+    /**
+     * Cache key. The entry prefix is part of the key since it names the entries of the archive: the same directory
+     * referenced by a relative or an absolute path produces different archives.
+     * @param path The absolute path of the directory
+     * @param entryPrefix The prefix of the archive entries
+     * @param mediaType The media type of the archive
+     * @param algorithm The algorithm prefix
+     */
+    record Key(String path, String entryPrefix, String mediaType, String algorithm) {}
+
+    /**
+     * Cached archive with the tree hash of the directory it was produced from
+     * @param treeHash The tree hash
+     * @param archive The archive
+     */
+    record Entry(String treeHash, Archive archive) {}
+
+    /**
+     * Fingerprint of a directory taken before packing it
+     * @param path The absolute path of the directory
+     * @param entryPrefix The prefix of the archive entries
+     * @param mediaType The media type of the archive
+     * @param algorithm The algorithm prefix
+     * @param treeHash The tree hash of the directory
+     */
+    public record Snapshot(String path, String entryPrefix, String mediaType, String algorithm, String treeHash) {
+
+        Key key() {
+            return new Key(path, entryPrefix, mediaType, algorithm);
+        }
+    }
+
+    /**
+     * An archive previously produced for a directory
+     * @param digest The digest of the compressed archive
+     * @param contentDigest The digest of the uncompressed tar content
+     * @param size The size of the compressed archive
+     */
+    public record Archive(String digest, String contentDigest, long size) {}
+
+    /**
+     * Create a cache
+     * @param directory The directory persisting entries or null for in-memory only
+     */
+    TreeCache(@Nullable Path directory) {
+        this.store = directory != null ? new PropertiesStore(directory, "") : null;
+        this.cache = Caffeine.newBuilder().maximumSize(MAX_CACHE_SIZE).recordStats().build();
+    }
+
+    /**
+     * Enable an in-memory tree cache
+     */
+    public static void enable() {
+        enable(null);
+    }
+
+    /**
+     * Enable a tree cache persisting entries in the given directory
+     * @param directory The directory or null for in-memory only
+     */
+    public static void enable(@Nullable Path directory) {
+        TreeCache treeCache = new TreeCache(directory);
+        CaffeineCacheMetrics.monitor(meterRegistry, treeCache.cache, "land.oras.tree.cache");
+        instance = treeCache;
+    }
+
+    /**
+     * Disable the tree cache
+     */
+    public static void disable() {
+        instance = null;
+    }
+
+    /**
+     * Set the meter registry for monitoring the cache metrics
+     * @param meterRegistry the meter registry to use for monitoring the cache metrics
+     */
+    public static void setMeterRegistry(MeterRegistry meterRegistry) {
+        TreeCache.meterRegistry = meterRegistry;
+        TreeCache treeCache = instance;
+        if (treeCache != null) {
+            CaffeineCacheMetrics.monitor(meterRegistry, treeCache.cache, "land.oras.tree.cache");
+        }
+    }
+
+    /**
+     * Get the cache in use
+     * @return The cache or null if disabled
+     */
+    public static @Nullable TreeCache get() {
+        return instance;
+    }
+
+    /**
+     * Fingerprint a directory before packing it
+     * @param directory The directory, with the media type of the archive
+     * @param algorithm The algorithm of the archive digest
+     * @return The snapshot or null if the directory cannot be walked
+     */
+    public @Nullable Snapshot snapshot(LocalPath directory, SupportedAlgorithm algorithm) {
+        Path absolute = directory.getPath().toAbsolutePath().normalize();
+        try {
+            return new Snapshot(
+                    absolute.toString(),
+                    ArchiveUtils.entryPrefix(directory.getPath()).toString(),
+                    directory.getMediaType(),
+                    algorithm.getPrefix(),
+                    treeHash(absolute));
+        } catch (IOException | RuntimeException e) {
+            LOG.debug("Cannot fingerprint directory {}: {}", absolute, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Return the archive previously produced for an unchanged directory
+     * @param snapshot The snapshot of the directory
+     * @return The archive or null if unknown or the directory changed since
+     */
+    public @Nullable Archive get(Snapshot snapshot) {
+        Entry entry = cache.getIfPresent(snapshot.key());
+        if (entry == null && store != null) {
+            entry = load(snapshot.key());
+        }
+        if (entry != null && entry.treeHash().equals(snapshot.treeHash())) {
+            LOG.trace("Tree cache hit for {}", snapshot.path());
+            cache.put(snapshot.key(), entry);
+            return entry.archive();
+        }
+        return null;
+    }
+
+    /**
+     * Record the archive produced for a directory. Nothing is recorded if the directory changed since the
+     * snapshot was taken, as the archive may not match any state of the directory.
+     * @param snapshot The snapshot taken before packing the directory
+     * @param archive The archive
+     */
+    public void put(Snapshot snapshot, Archive archive) {
+        String after;
+        try {
+            after = treeHash(Path.of(snapshot.path()));
+        } catch (IOException | RuntimeException e) {
+            return;
+        }
+        if (!after.equals(snapshot.treeHash())) {
+            LOG.debug("Directory {} changed while packing, not caching its archive", snapshot.path());
+            return;
+        }
+        Entry entry = new Entry(snapshot.treeHash(), archive);
+        cache.put(snapshot.key(), entry);
+        if (store != null) {
+            store(snapshot.key(), entry);
+        }
+    }
+
+    /**
+     * Compute the tree hash of a directory from one record per file, in name order
+     * @param root The directory
+     * @return The tree hash
+     * @throws IOException If the directory cannot be walked
+     */
+    static String treeHash(Path root) throws IOException {
+        MessageDigest digest = DigestUtils.newMessageDigest(SupportedAlgorithm.SHA256.getAlgorithmName());
+        List<Path> paths;
+        try (Stream<Path> walk = Files.walk(root)) {
+            paths = walk.sorted(Comparator.comparing(Path::toString)).toList();
+        }
+        for (Path path : paths) {
+            BasicFileAttributes attributes =
+                    Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            String type = attributes.isSymbolicLink() ? "l" : attributes.isDirectory() ? "d" : "f";
+            String record = "%s\0%s\0%d\0%d\0%s\0%s\n"
+                    .formatted(
+                            root.relativize(path),
+                            type,
+                            attributes.isRegularFile() ? attributes.size() : 0,
+                            attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS),
+                            mode(path, attributes),
+                            attributes.isSymbolicLink() ? Files.readSymbolicLink(path) : "");
+            digest.update(record.getBytes(StandardCharsets.UTF_8));
+        }
+        return DigestUtils.format(SupportedAlgorithm.SHA256.getPrefix(), digest);
+    }
+
+    private static String mode(Path path, BasicFileAttributes attributes) throws IOException {
+        if (attributes.isSymbolicLink()) {
+            return "";
+        }
+        if (OsUtils.isPosixFileSystemSupported()) {
+            return PosixFilePermissions.toString(Files.getPosixFilePermissions(path));
+        }
+        return Files.isExecutable(path) ? "x" : "";
+    }
+
+    private static String name(Key key) {
+        return "%s@%s@%s@%s".formatted(key.algorithm(), key.mediaType(), key.entryPrefix(), key.path());
+    }
+
+    private @Nullable Entry load(Key key) {
+        Properties properties = Objects.requireNonNull(store).load(name(key));
+        if (properties == null) {
+            return null;
+        }
+        try {
+            if (!key.path().equals(properties.getProperty("path"))
+                    || !key.entryPrefix().equals(properties.getProperty("entryPrefix"))
+                    || !key.mediaType().equals(properties.getProperty("mediaType"))) {
+                return null;
+            }
+            return new Entry(
+                    Objects.requireNonNull(properties.getProperty("treeHash")),
+                    new Archive(
+                            Objects.requireNonNull(properties.getProperty("digest")),
+                            Objects.requireNonNull(properties.getProperty("contentDigest")),
+                            Long.parseLong(properties.getProperty("size"))));
+        } catch (RuntimeException e) {
+            LOG.debug("Ignoring invalid tree cache entry for {}: {}", key.path(), e.getMessage());
+            return null;
+        }
+    }
+
+    private void store(Key key, Entry entry) {
+        Properties properties = new Properties();
+        properties.setProperty("path", key.path());
+        properties.setProperty("entryPrefix", key.entryPrefix());
+        properties.setProperty("mediaType", key.mediaType());
+        properties.setProperty("treeHash", entry.treeHash());
+        properties.setProperty("digest", entry.archive().digest());
+        properties.setProperty("contentDigest", entry.archive().contentDigest());
+        properties.setProperty("size", String.valueOf(entry.archive().size()));
+        try {
+            Objects.requireNonNull(store).store(name(key), properties);
+        } catch (IOException e) {
+            LOG.warn("Failed to persist tree cache entry for {}: {}", key.path(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*-
+ * =LICENSE=
+ * ORAS Java SDK
+ * ===
+ * Copyright (C) 2024 - 2026 ORAS
+ * ===
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =LICENSEEND=
+ */
+
+package land.oras.utils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Properties;
+import land.oras.exception.OrasException;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persist chunked upload sessions on disk so a push interrupted by a JVM restart can resume instead of
+ * starting over. One small properties file is kept per target (registry, repository and blob digest) holding
+ * the session location and the last acknowledged offset. The offset is only a hint, the registry upload status
+ * remains the source of truth when resuming.
+ */
+@NullMarked
+public final class UploadSessionStore {
+
+    /**
+     * Logger
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(UploadSessionStore.class);
+
+    private static final String LOCATION = "location";
+    private static final String OFFSET = "offset";
+
+    /**
+     * The store holding the sessions
+     */
+    private final PropertiesStore store;
+
+    /**
+     * A persisted upload session
+     * @param location The upload session location
+     * @param offset The last acknowledged offset
+     */
+    public record Session(String location, long offset) {}
+
+    /**
+     * Constructor
+     * @param directory The directory holding the sessions
+     */
+    public UploadSessionStore(Path directory) {
+        this.store = new PropertiesStore(directory, ".session");
+    }
+
+    /**
+     * Load the session of a target
+     * @param key The target key
+     * @return The session or null if none or unreadable
+     */
+    public @Nullable Session load(String key) {
+        Properties properties = store.load(key);
+        if (properties == null) {
+            return null;
+        }
+        String location = properties.getProperty(LOCATION);
+        if (location == null) {
+            return null;
+        }
+        try {
+            return new Session(location, Long.parseLong(properties.getProperty(OFFSET, "0")));
+        } catch (NumberFormatException e) {
+            LOG.warn("Ignoring unreadable upload session {}: {}", store.file(key), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Save the session of a target
+     * @param key The target key
+     * @param session The session
+     */
+    public void save(String key, Session session) {
+        Properties properties = new Properties();
+        properties.setProperty(LOCATION, session.location());
+        properties.setProperty(OFFSET, String.valueOf(session.offset()));
+        try {
+            store.store(key, properties);
+        } catch (IOException e) {
+            throw new OrasException("Failed to save upload session to %s".formatted(store.file(key)), e);
+        }
+    }
+
+    /**
+     * Delete the session of a target
+     * @param key The target key
+     */
+    public void delete(String key) {
+        try {
+            store.delete(key);
+        } catch (IOException e) {
+            LOG.warn("Failed to delete upload session for {}: {}", key, e.getMessage());
+        }
+    }
+}
@@ -22,9 +22,12 @@ package land.oras;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
+import land.oras.exception.OrasException;
+import land.oras.utils.Const;
 import land.oras.utils.SupportedAlgorithm;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
@@ -69,6 +72,27 @@ class LayerTest {
         assertEquals(2, layer.getSize());
     }
 
+    @Test
+    void shouldReadLayerFromFileWithKnownDigest() throws Exception {
+        Path file = tempDir.resolve("known.txt");
+        Files.writeString(file, "hi");
+        String digest = "sha256:8f434346648f6b96df89dda901c5176b10a6d83961dd3c1ac88b59b2dc327aa4";
+        Layer layer = Layer.fromFile(file, digest);
+        assertEquals("application/vnd.oci.image.layer.v1.tar", layer.getMediaType());
+        assertEquals(digest, layer.getDigest());
+        assertEquals(2, layer.getSize());
+        assertEquals("known.txt", layer.getAnnotations().get(Const.ANNOTATION_TITLE));
+        assertEquals(Layer.fromFile(file), layer);
+    }
+
+    @Test
+    void shouldRejectUnsupportedKnownDigest() throws Exception {
+        Path file = tempDir.resolve("unsupported.txt");
+        Files.writeString(file, "hi");
+        OrasException e = assertThrows(OrasException.class, () -> Layer.fromFile(file, "md5:1234"));
+        assertEquals("Unsupported digest: md5:1234", e.getMessage());
+    }
+
     @Test
     void shouldHaveEmptyLayer() {
         String json = emptyLayer();
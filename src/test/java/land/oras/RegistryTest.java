@@ -1701,8 +1701,9 @@ class RegistryTest {
                 SupportedAlgorithm.SHA256,
                 SupportedAlgorithm.fromDigest(annotations.get(Const.ANNOTATION_ORAS_CONTENT_DIGEST)));
 
-        // Pull
-        registry.pullArtifact(containerRef, extractDir, true);
+        // Pull with several writer threads
+        registry.pullArtifact(containerRef, extractDir, OCI.PullOptions.overwrite().withExtractionThreads(4));
+        assertThrows(IllegalArgumentException.class, () -> OCI.PullOptions.defaults().withExtractionThreads(0));
 
         // Assert extracted files
         Path extractedDir = extractDir.resolve(blobDir.getFileName());
@@ -26,7 +26,9 @@ import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -45,13 +47,19 @@ import java.net.URI;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 import land.oras.auth.AuthStore;
 import land.oras.auth.AuthStoreAuthenticationProvider;
 import land.oras.auth.BearerTokenProvider;
@@ -60,9 +68,11 @@ import land.oras.auth.NoAuthProvider;
 import land.oras.auth.Scopes;
 import land.oras.auth.UsernamePasswordProvider;
 import land.oras.exception.OrasException;
+import land.oras.utils.ArchiveUtils;
 import land.oras.utils.Const;
 import land.oras.utils.JsonUtils;
 import land.oras.utils.SupportedAlgorithm;
+import land.oras.utils.TreeCache;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.api.parallel.Execution;
@@ -1302,6 +1312,68 @@ class RegistryWireMockTest {
                 "Blob must not be written outside the output directory");
     }
 
+    @Test
+    void pullArtifactShouldNotExtractTamperedLayer(WireMockRuntimeInfo wmRuntimeInfo) throws Exception {
+        WireMock wireMock = wmRuntimeInfo.getWireMock();
+        String registryUrl = wmRuntimeInfo.getHttpBaseUrl().replace("http://", "");
+
+        // A valid archive served in place of another one, the layer has no content digest annotation
+        Path original = configDir.resolve("tampered-original");
+        Path tampered = configDir.resolve("tampered-content");
+        Files.createDirectories(original);
+        Files.createDirectories(tampered);
+        Files.writeString(original.resolve("file.txt"), "original");
+        Files.writeString(tampered.resolve("file.txt"), "tampered");
+        Path originalArchive = ArchiveUtils.tarcompress(LocalPath.of(original), Const.DEFAULT_BLOB_DIR_MEDIA_TYPE)
+                .getPath();
+        byte[] tamperedContent = Files.readAllBytes(
+                ArchiveUtils.tarcompress(LocalPath.of(tampered), Const.DEFAULT_BLOB_DIR_MEDIA_TYPE)
+                        .getPath());
+        String blobDigest = SupportedAlgorithm.SHA256.digest(originalArchive);
+
+        Layer layer = Layer.fromDigest(blobDigest, tamperedContent.length)
+                .withMediaType(Const.DEFAULT_BLOB_DIR_MEDIA_TYPE)
+                .withAnnotations(
+                        Map.of(Const.ANNOTATION_TITLE, "tampered-original", Const.ANNOTATION_ORAS_UNPACK, "true"));
+        String manifestJson = JsonUtils.toJson(Manifest.empty().withLayers(List.of(layer)));
+        String manifestDigest =
+                SupportedAlgorithm.SHA256.digest(manifestJson.getBytes(java.nio.charset.StandardCharsets.UTF_8));
+
+        wireMock.register(head(urlEqualTo("/v2/library/tampered-artifact/manifests/latest"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader(Const.CONTENT_TYPE_HEADER, Const.DEFAULT_MANIFEST_MEDIA_TYPE)
+                        .withHeader(Const.DOCKER_CONTENT_DIGEST_HEADER, manifestDigest)));
+        wireMock.register(get(urlEqualTo("/v2/library/tampered-artifact/manifests/latest"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader(Const.CONTENT_TYPE_HEADER, Const.DEFAULT_MANIFEST_MEDIA_TYPE)
+                        .withHeader(Const.DOCKER_CONTENT_DIGEST_HEADER, manifestDigest)
+                        .withBody(manifestJson)));
+        wireMock.register(get(urlEqualTo("/v2/library/tampered-artifact/blobs/%s".formatted(blobDigest)))
+                .willReturn(aResponse().withStatus(200).withBody(tamperedContent)));
+
+        Registry registry = Registry.Builder.builder()
+                .withAuthProvider(authProvider)
+                .withInsecure(true)
+                .build();
+        ContainerRef containerRef = ContainerRef.parse("%s/library/tampered-artifact:latest".formatted(registryUrl));
+        Path outputDir = configDir.resolve("tampered-output");
+        Files.createDirectories(outputDir);
+
+        Throwable cause = assertThrows(Exception.class, () -> registry.pullArtifact(containerRef, outputDir, true));
+        while (cause.getCause() != null && !(cause instanceof OrasException)) {
+            cause = cause.getCause();
+        }
+        assertInstanceOf(OrasException.class, cause);
+        assertTrue(cause.getMessage().contains("Digest mismatch"), "Unexpected: " + cause.getMessage());
+
+        // Nothing extracted into the output directory
+        try (Stream<Path> entries = Files.list(outputDir)) {
+            assertEquals(0, entries.count());
+        }
+    }
+
     @Test
     void shouldRetryOn429WithRetryAfterHeader(WireMockRuntimeInfo wmRuntimeInfo) {
         WireMock wireMock = wmRuntimeInfo.getWireMock();
@@ -1525,6 +1597,718 @@ class RegistryWireMockTest {
                 "Exception message should include the unexpected status code");
     }
 
+    @Test
+    void shouldResumeChunkedUploadFromCommittedRange(WireMockRuntimeInfo wmRuntimeInfo) {
+        WireMock wireMock = wmRuntimeInfo.getWireMock();
+        String registryUrl = wmRuntimeInfo.getHttpBaseUrl().replace("http://", "");
+        String uploadPath = "/v2/library/chunked-resume/blobs/uploads/";
+        String sessionPath = uploadPath + "session-1";
+
+        wireMock.register(WireMock.head(WireMock.urlPathMatching("/v2/library/chunked-resume/blobs/.*"))
+                .willReturn(WireMock.notFound()));
+        wireMock.register(WireMock.post(WireMock.urlPathEqualTo(uploadPath))
+                .willReturn(WireMock.aResponse().withStatus(202).withHeader(Const.LOCATION_HEADER, sessionPath)));
+        // Second chunk fails after the registry committed part of it
+        wireMock.register(WireMock.patch(WireMock.urlPathEqualTo(sessionPath))
+                .willReturn(WireMock.aResponse().withStatus(202).withHeader(Const.LOCATION_HEADER, sessionPath)));
+        wireMock.register(WireMock.patch(WireMock.urlPathEqualTo(sessionPath))
+                .withHeader(Const.CONTENT_RANGE_HEADER, WireMock.equalTo("4-7"))
+                .willReturn(WireMock.badRequest()));
+        wireMock.register(WireMock.get(WireMock.urlPathEqualTo(sessionPath))
+                .willReturn(WireMock.aResponse()
+                        .withStatus(204)
+                        .withHeader(Const.RANGE_HEADER, "0-5")
+                        .withHeader(Const.LOCATION_HEADER, sessionPath)));
+        wireMock.register(WireMock.put(WireMock.urlPathEqualTo(sessionPath)).willReturn(WireMock.created()));
+
+        Registry registry = Registry.Builder.builder()
+                .withAuthProvider(authProvider)
+                .withInsecure(true)
+                .build();
+        byte[] content = "hello world!".getBytes(StandardCharsets.UTF_8);
+        String digest = SupportedAlgorithm.SHA256.digest(content);
+        ContainerRef ref = ContainerRef.parse("%s/library/chunked-resume".formatted(registryUrl))
+                .withDigest(digest);
+
+        Layer layer = registry.pushBlobChunked(ref, new java.io.ByteArrayInputStream(content), content.length, 4L);
+
+        assertEquals(digest, layer.getDigest());
+        // Only the missing bytes of the failed chunk are sent again
+        wireMock.verifyThat(
+                1,
+                WireMock.patchRequestedFor(WireMock.urlPathEqualTo(sessionPath))
+                        .withHeader(Const.CONTENT_RANGE_HEADER, WireMock.equalTo("6-7")));
+        wireMock.verifyThat(
+                1,
+                WireMock.patchRequestedFor(WireMock.urlPathEqualTo(sessionPath))
+                        .withHeader(Const.CONTENT_RANGE_HEADER, WireMock.equalTo("8-11")));
+        wireMock.verifyThat(1, WireMock.postRequestedFor(WireMock.urlPathEqualTo(uploadPath)));
+    }
+
+    @Test
+    void shouldUploadMappedFileInChunks(WireMockRuntimeInfo wmRuntimeInfo) throws IOException {
+        WireMock wireMock = wmRuntimeInfo.getWireMock();
+        String registryUrl = wmRuntimeInfo.getHttpBaseUrl().replace("http://", "");
+        String uploadPath = "/v2/library/chunked-mapped/blobs/uploads/";
+        String sessionPath = uploadPath + "session-mapped";
+
+        wireMock.register(WireMock.head(WireMock.urlPathMatching("/v2/library/chunked-mapped/blobs/.*"))
+                .willReturn(WireMock.notFound()));
+        wireMock.register(WireMock.post(WireMock.urlPathEqualTo(uploadPath))
+                .willReturn(WireMock.aResponse().withStatus(202).withHeader(Const.LOCATION_HEADER, sessionPath)));
+        wireMock.register(WireMock.patch(WireMock.urlPathEqualTo(sessionPath))
+                .willReturn(WireMock.aResponse().withStatus(202).withHeader(Const.LOCATION_HEADER, sessionPath)));
+        wireMock.register(WireMock.put(WireMock.urlPathEqualTo(sessionPath)).willReturn(WireMock.created()));
+
+        Registry registry = Registry.Builder.builder()
+                .withAuthProvider(authProvider)
+                .withInsecure(true)
+                .build();
+        Path blob = configDir.resolve("chunked-mapped.txt");
+        Files.writeString(blob, "hello world!");
+        ContainerRef ref = ContainerRef.parse("%s/library/chunked-mapped".formatted(registryUrl));
+
+        Layer layer = registry.pushBlobChunked(ref, blob, 4L);
+
+        assertEquals(SupportedAlgorithm.SHA256.digest(blob), layer.getDigest());
+        // Each mapped region is sent once with its range, the last chunk included
+        Map<String, String> chunks = Map.of("0-3", "hell", "4-7", "o wo", "8-11", "rld!");
+        chunks.forEach((range, body) -> wireMock.verifyThat(
+                1,
+                WireMock.patchRequestedFor(WireMock.urlPathEqualTo(sessionPath))
+                        .withHeader(Const.CONTENT_RANGE_HEADER, WireMock.equalTo(range))
+                        .withRequestBody(WireMock.equalTo(body))));
+        wireMock.verifyThat(3, WireMock.patchRequestedFor(WireMock.urlPathEqualTo(sessionPath)));
+        wireMock.verifyThat(
+                1,
+                WireMock.putRequestedFor(WireMock.urlPathEqualTo(sessionPath))
+                        .withQueryParam("digest", WireMock.equalTo(layer.getDigest())));
+    }
+
+    @Test
+    void shouldResumePersistedChunkedUploadSession(WireMockRuntimeInfo wmRuntimeInfo) throws IOException {
+        WireMock wireMock = wmRuntimeInfo.getWireMock();
+        String registryUrl = wmRuntimeInfo.getHttpBaseUrl().replace("http://", "");
+        String uploadPath = "/v2/library/chunked-session/blobs/uploads/";
+        String sessionPath = uploadPath + "session-2";
+
+        wireMock.register(WireMock.head(WireMock.urlPathMatching("/v2/library/chunked-session/blobs/.*"))
+                .willReturn(WireMock.notFound()));
+        wireMock.register(WireMock.post(WireMock.urlPathEqualTo(uploadPath))
+                .willReturn(WireMock.aResponse().withStatus(202).withHeader(Const.LOCATION_HEADER, sessionPath)));
+        wireMock.register(WireMock.patch(WireMock.urlPathEqualTo(sessionPath))
+                .willReturn(WireMock.aResponse().withStatus(202)));
+        wireMock.register(WireMock.patch(WireMock.urlPathEqualTo(sessionPath))
+                .withHeader(Const.CONTENT_RANGE_HEADER, WireMock.equalTo("4-7"))
+                .willReturn(WireMock.badRequest()));
+
+        Path sessions = configDir.resolve("upload-sessions");
+        Registry registry = Registry.Builder.builder()
+                .withAuthProvider(authProvider)
+                .withInsecure(true)
+                .withUploadSessionDirectory(sessions)
+                .build();
+        Path blob = configDir.resolve("chunked-session.txt");
+        Files.writeString(blob, "hello world!");
+        ContainerRef ref = ContainerRef.parse("%s/library/chunked-session".formatted(registryUrl));
+
+        // First push fails on the second chunk and no upload status is available
+        assertThrows(OrasException.class, () -> registry.pushBlobChunked(ref, blob, 4L));
+        try (var files = Files.list(sessions)) {
+            assertEquals(1, files.count(), "Session should be persisted");
+        }
+
+        // Registry now reports the first chunk as committed
+        wireMock.register(WireMock.patch(WireMock.urlPathEqualTo(sessionPath))
+                .withHeader(Const.CONTENT_RANGE_HEADER, WireMock.equalTo("4-7"))
+                .willReturn(WireMock.aResponse().withStatus(202)));
+        wireMock.register(WireMock.get(WireMock.urlPathEqualTo(sessionPath))
+                .willReturn(WireMock.aResponse().withStatus(204).withHeader(Const.RANGE_HEADER, "0-3")));
+        wireMock.register(WireMock.put(WireMock.urlPathEqualTo(sessionPath)).willReturn(WireMock.created()));
+
+        Layer layer = registry.pushBlobChunked(ref, blob, 4L);
+
+        assertEquals(SupportedAlgorithm.SHA256.digest(blob), layer.getDigest());
+        wireMock.verifyThat(1, WireMock.postRequestedFor(WireMock.urlPathEqualTo(uploadPath)));
+        wireMock.verifyThat(
+                1,
+                WireMock.patchRequestedFor(WireMock.urlPathEqualTo(sessionPath))
+                        .withHeader(Const.CONTENT_RANGE_HEADER, WireMock.equalTo("0-3")));
+        try (var files = Files.list(sessions)) {
+            assertEquals(0, files.count(), "Session should be removed once finalized");
+        }
+    }
+
+    @Test
+    void shouldStreamBlobWithChunkedUploadWithoutKnownSize(WireMockRuntimeInfo wmRuntimeInfo) {
+        WireMock wireMock = wmRuntimeInfo.getWireMock();
+        String registryUrl = wmRuntimeInfo.getHttpBaseUrl().replace("http://", "");
+        String uploadPath = "/v2/library/stream-push/blobs/uploads/";
+        String sessionPath = uploadPath + "session-3";
+
+        wireMock.register(WireMock.post(WireMock.urlPathEqualTo(uploadPath))
+                .willReturn(WireMock.aResponse().withStatus(202).withHeader(Const.LOCATION_HEADER, sessionPath)));
+        wireMock.register(WireMock.patch(WireMock.urlPathEqualTo(sessionPath))
+                .willReturn(WireMock.aResponse().withStatus(202)));
+        wireMock.register(WireMock.put(WireMock.urlPathEqualTo(sessionPath)).willReturn(WireMock.created()));
+
+        Registry registry = Registry.Builder.builder()
+                .withAuthProvider(authProvider)
+                .withInsecure(true)
+                .build();
+        byte[] content = new byte[(int) OCI.PushOptions.DEFAULT_CHUNK_SIZE + 10];
+        new java.util.Random(42).nextBytes(content);
+        String digest = SupportedAlgorithm.SHA256.digest(content);
+        ContainerRef ref = ContainerRef.parse("%s/library/stream-push".formatted(registryUrl));
+
+        Layer layer = registry.pushBlob(ref, new java.io.ByteArrayInputStream(content));
+
+        assertEquals(digest, layer.getDigest());
+        assertEquals((long) content.length, layer.getSize());
+        wireMock.verifyThat(2, WireMock.patchRequestedFor(WireMock.urlPathEqualTo(sessionPath)));
+        wireMock.verifyThat(
+                1,
+                WireMock.putRequestedFor(WireMock.urlPathEqualTo(sessionPath))
+                        .withQueryParam("digest", WireMock.equalTo(digest)));
+    }
+
+    @Test
+    void shouldCancelStreamedUploadOnPinnedDigestMismatch(WireMockRuntimeInfo wmRuntimeInfo) {
+        WireMock wireMock = wmRuntimeInfo.getWireMock();
+        String registryUrl = wmRuntimeInfo.getHttpBaseUrl().replace("http://", "");
+        String uploadPath = "/v2/library/stream-mismatch/blobs/uploads/";
+        String sessionPath = uploadPath + "session-mismatch";
+
+        wireMock.register(WireMock.post(WireMock.urlPathEqualTo(uploadPath))
+                .willReturn(WireMock.aResponse().withStatus(202).withHeader(Const.LOCATION_HEADER, sessionPath)));
+        wireMock.register(WireMock.patch(WireMock.urlPathEqualTo(sessionPath))
+                .willReturn(WireMock.aResponse().withStatus(202)));
+        wireMock.register(WireMock.delete(WireMock.urlPathEqualTo(sessionPath)).willReturn(WireMock.noContent()));
+
+        Registry registry = Registry.Builder.builder()
+                .withAuthProvider(authProvider)
+                .withInsecure(true)
+                .build();
+        byte[] content = new byte[(int) OCI.PushOptions.DEFAULT_CHUNK_SIZE + 10];
+        ContainerRef ref = ContainerRef.parse("%s/library/stream-mismatch".formatted(registryUrl))
+                .withDigest(SupportedAlgorithm.SHA256.digest("other".getBytes(StandardCharsets.UTF_8)));
+
+        OrasException e = assertThrows(
+                OrasException.class, () -> registry.pushBlob(ref, new java.io.ByteArrayInputStream(content)));
+        assertTrue(e.getMessage().contains("Digest mismatch"), "Unexpected: " + e.getMessage());
+
+        // The session is released instead of finalized
+        wireMock.verifyThat(1, WireMock.deleteRequestedFor(WireMock.urlPathEqualTo(sessionPath)));
+        wireMock.verifyThat(0, WireMock.putRequestedFor(WireMock.urlPathEqualTo(sessionPath)));
+    }
+
+    @Test
+    void shouldRejectSmallStreamOnPinnedDigestMismatch(WireMockRuntimeInfo wmRuntimeInfo) {
+        WireMock wireMock = wmRuntimeInfo.getWireMock();
+        String registryUrl = wmRuntimeInfo.getHttpBaseUrl().replace("http://", "");
+
+        Registry registry = Registry.Builder.builder()
+                .withAuthProvider(authProvider)
+                .withInsecure(true)
+                .build();
+        byte[] content = "small".getBytes(StandardCharsets.UTF_8);
+        ContainerRef ref = ContainerRef.parse("%s/library/stream-small-mismatch".formatted(registryUrl))
+                .withDigest(SupportedAlgorithm.SHA256.digest("other".getBytes(StandardCharsets.UTF_8)));
+
+        OrasException e = assertThrows(
+                OrasException.class, () -> registry.pushBlob(ref, new java.io.ByteArrayInputStream(content)));
+        assertTrue(e.getMessage().contains("Digest mismatch"), "Unexpected: " + e.getMessage());
+
+        // Nothing is sent to the registry
+        wireMock.verifyThat(
+                0, WireMock.anyRequestedFor(WireMock.urlPathMatching("/v2/library/stream-small-mismatch/.*")));
+    }
+
+    @Test
+    void shouldStreamDirectoryArchiveWithChunkedUpload(WireMockRuntimeInfo wmRuntimeInfo) throws IOException {
+        WireMock wireMock = wmRuntimeInfo.getWireMock();
+        String registryUrl = wmRuntimeInfo.getHttpBaseUrl().replace("http://", "");
+        String uploadPath = "/v2/library/stream-directory/blobs/uploads/";
+        String sessionPath = uploadPath + "session-4";
+
+        wireMock.register(WireMock.post(WireMock.urlPathEqualTo(uploadPath))
+                .willReturn(WireMock.aResponse().withStatus(202).withHeader(Const.LOCATION_HEADER, sessionPath)));
+        wireMock.register(WireMock.patch(WireMock.urlPathEqualTo(sessionPath))
+                .willReturn(WireMock.aResponse().withStatus(202)));
+        wireMock.register(WireMock.put(WireMock.urlPathEqualTo(sessionPath)).willReturn(WireMock.created()));
+
+        Registry registry = Registry.Builder.builder()
+                .withAuthProvider(authProvider)
+                .withInsecure(true)
+                .build();
+        Path directory = configDir.resolve("stream-directory");
+        Files.createDirectories(directory.resolve("sub"));
+        byte[] content = new byte[5000];
+        new java.util.Random(42).nextBytes(content);
+        Files.write(directory.resolve("sub").resolve("data.bin"), content);
+        Files.writeString(directory.resolve("hello.txt"), "hello");
+        LocalPath source = LocalPath.of(directory, Const.DEFAULT_BLOB_DIR_MEDIA_TYPE);
+        ArchiveUtils.PackedArchive expected =
+                ArchiveUtils.tarcompress(source, source.getMediaType(), SupportedAlgorithm.SHA256);
+        ContainerRef ref = ContainerRef.parse("%s/library/stream-directory".formatted(registryUrl));
+
+        Layer layer = registry.pushLayer(ref, Annotations.empty(), false, source, OCI.PushOptions.chunked(1024));
+
+        // Same archive as the one packed in a temporary file, no intermediate file pushed
+        assertEquals(expected.digests().digest(), layer.getDigest());
+        assertEquals(expected.digests().size(), layer.getSize());
+        assertEquals(
+                expected.digests().contentDigest(), layer.getAnnotations().get(Const.ANNOTATION_ORAS_CONTENT_DIGEST));
+        assertEquals("true", layer.getAnnotations().get(Const.ANNOTATION_ORAS_UNPACK));
+        wireMock.verifyThat(
+                (int) ((expected.digests().size() + 1023) / 1024),
+                WireMock.patchRequestedFor(WireMock.urlPathEqualTo(sessionPath)));
+        wireMock.verifyThat(
+                1,
+                WireMock.putRequestedFor(WireMock.urlPathEqualTo(sessionPath))
+                        .withQueryParam("digest", WireMock.equalTo(expected.digests().digest())));
+        wireMock.verifyThat(0, WireMock.headRequestedFor(WireMock.urlPathMatching("/v2/.*/blobs/.*")));
+    }
+
+    @Test
+    void shouldCancelChunkedUploadOfFailedArchive(WireMockRuntimeInfo wmRuntimeInfo) throws IOException {
+        WireMock wireMock = wmRuntimeInfo.getWireMock();
+        String registryUrl = wmRuntimeInfo.getHttpBaseUrl().replace("http://", "");
+        String uploadPath = "/v2/library/stream-failure/blobs/uploads/";
+        String sessionPath = uploadPath + "session-failure";
+
+        wireMock.register(WireMock.post(WireMock.urlPathEqualTo(uploadPath))
+                .willReturn(WireMock.aResponse().withStatus(202).withHeader(Const.LOCATION_HEADER, sessionPath)));
+        wireMock.register(WireMock.patch(WireMock.urlPathEqualTo(sessionPath))
+                .willReturn(WireMock.aResponse().withStatus(202)));
+        wireMock.register(WireMock.delete(WireMock.urlPathEqualTo(sessionPath)).willReturn(WireMock.noContent()));
+
+        Registry registry = Registry.Builder.builder()
+                .withAuthProvider(authProvider)
+                .withInsecure(true)
+                .build();
+        Path directory = configDir.resolve("stream-failure");
+        Files.createDirectories(directory);
+        Files.writeString(directory.resolve("hello.txt"), "hello");
+        // Attributes of a dangling link cannot be read, failing the archive
+        Files.createSymbolicLink(directory.resolve("dangling"), directory.resolve("missing"));
+        LocalPath source = LocalPath.of(directory, Const.DEFAULT_BLOB_DIR_MEDIA_TYPE);
+        ContainerRef ref = ContainerRef.parse("%s/library/stream-failure".formatted(registryUrl));
+
+        assertThrows(
+                OrasException.class,
+                () -> registry.pushLayer(ref, Annotations.empty(), false, source, OCI.PushOptions.chunked(1024)));
+
+        // The session is released without uploading the partial archive
+        wireMock.verifyThat(0, WireMock.patchRequestedFor(WireMock.urlPathEqualTo(sessionPath)));
+        wireMock.verifyThat(0, WireMock.putRequestedFor(WireMock.urlPathEqualTo(sessionPath)));
+        wireMock.verifyThat(1, WireMock.deleteRequestedFor(WireMock.urlPathEqualTo(sessionPath)));
+    }
+
+    @Test
+    void shouldSkipArchivingUnchangedDirectoryWithTreeCache(WireMockRuntimeInfo wmRuntimeInfo) throws IOException {
+        WireMock wireMock = wmRuntimeInfo.getWireMock();
+        String registryUrl = wmRuntimeInfo.getHttpBaseUrl().replace("http://", "");
+        wireMock.register(WireMock.head(WireMock.urlPathMatching("/v2/library/tree-cache/blobs/.*"))
+                .willReturn(WireMock.ok()));
+
+        Registry registry = Registry.Builder.builder()
+                .withAuthProvider(authProvider)
+                .withInsecure(true)
+                .build();
+        Path directory = configDir.resolve("tree-cache");
+        Files.createDirectories(directory);
+        Path file = directory.resolve("hello.txt");
+        Files.writeString(file, "hello");
+        LocalPath source = LocalPath.of(directory, Const.DEFAULT_BLOB_DIR_MEDIA_TYPE);
+        ContainerRef ref = ContainerRef.parse("%s/library/tree-cache".formatted(registryUrl));
+
+        TreeCache.enable();
+        try {
+            Layer first = registry.pushLayer(ref, Annotations.empty(), false, source, OCI.PushOptions.defaults());
+
+            // Same size and modification time, the directory is not archived again
+            FileTime modified = Files.getLastModifiedTime(file);
+            Files.writeString(file, "world");
+            Files.setLastModifiedTime(file, modified);
+            Layer second = registry.pushLayer(ref, Annotations.empty(), false, source, OCI.PushOptions.defaults());
+            assertEquals(first.getDigest(), second.getDigest());
+            assertEquals(first.getSize(), second.getSize());
+            assertEquals(
+                    first.getAnnotations().get(Const.ANNOTATION_ORAS_CONTENT_DIGEST),
+                    second.getAnnotations().get(Const.ANNOTATION_ORAS_CONTENT_DIGEST));
+
+            // A changed record is detected
+            Files.setLastModifiedTime(file, FileTime.fromMillis(modified.toMillis() + 1000));
+            Layer third = registry.pushLayer(ref, Annotations.empty(), false, source, OCI.PushOptions.defaults());
+            assertNotEquals(first.getDigest(), third.getDigest());
+        } finally {
+            TreeCache.disable();
+        }
+        // The second push is known to be present
+        wireMock.verifyThat(2, WireMock.headRequestedFor(WireMock.urlPathMatching("/v2/library/tree-cache/blobs/.*")));
+        wireMock.verifyThat(0, WireMock.postRequestedFor(WireMock.urlPathMatching("/v2/library/tree-cache/.*")));
+    }
+
+    @Test
+    void shouldReuseDerivedRegistries() {
+        Registry registry = Registry.Builder.builder()
+                .withAuthProvider(authProvider)
+                .build();
+
+        Registry insecure = registry.asInsecure();
+        assertSame(insecure, registry.asInsecure());
+        assertTrue(insecure.isInsecure());
+
+        Registry secure = insecure.asSecure();
+        assertSame(secure, insecure.asSecure());
+        assertFalse(secure.isInsecure());
+
+        // Derived registries share the transfer executor
+        assertSame(registry.getExecutorService(), insecure.getExecutorService());
+        assertSame(registry.getExecutorService(), secure.getExecutorService());
+    }
+
+    @Test
+    void shouldAuthenticateBeforeUploadingLargeBlob(WireMockRuntimeInfo wmRuntimeInfo) throws IOException {
+        WireMock wireMock = wmRuntimeInfo.getWireMock();
+        String registryUrl = wmRuntimeInfo.getHttpBaseUrl().replace("http://", "");
+        String repo = "pre-auth";
+        String challenge = "Bearer realm=\"http://%s/token\",service=\"localhost\",scope=\"repository:library/%s:%s\"";
+
+        // Blob does not exist yet
+        wireMock.register(WireMock.head(WireMock.urlPathMatching("/v2/library/%s/blobs/sha256.*".formatted(repo)))
+                .willReturn(WireMock.status(404)));
+
+        // Upload endpoint only accepts the push token, a HEAD probe is challenged for pull only
+        wireMock.register(WireMock.post(WireMock.urlPathMatching("/v2/library/%s/blobs/uploads/.*".formatted(repo)))
+                .atPriority(1)
+                .withHeader(Const.AUTHORIZATION_HEADER, WireMock.equalTo("Bearer push-token"))
+                .willReturn(WireMock.created()));
+        wireMock.register(WireMock.post(WireMock.urlPathMatching("/v2/library/%s/blobs/uploads/.*".formatted(repo)))
+                .atPriority(2)
+                .willReturn(WireMock.unauthorized()
+                        .withHeader(
+                                Const.WWW_AUTHENTICATE_HEADER, challenge.formatted(registryUrl, repo, "pull,push"))));
+        wireMock.register(WireMock.head(WireMock.urlPathMatching("/v2/library/%s/blobs/uploads/.*".formatted(repo)))
+                .willReturn(WireMock.unauthorized()
+                        .withHeader(Const.WWW_AUTHENTICATE_HEADER, challenge.formatted(registryUrl, repo, "pull"))));
+        wireMock.register(
+                WireMock.get(WireMock.urlEqualTo("/token?scope=repository:library/%s:pull,push&service=localhost"
+                                .formatted(repo)))
+                        .willReturn(WireMock.okJson(JsonUtils.toJson(new HttpClient.TokenResponse(
+                                "push-token", null, "localhost", 300, ZonedDateTime.now())))));
+
+        Registry registry = Registry.Builder.builder()
+                .withAuthProvider(authProvider)
+                .withInsecure(true)
+                .build();
+        Path blob = configDir.resolve("pre-auth.bin");
+        byte[] content = new byte[2 * 1024 * 1024];
+        new Random(42).nextBytes(content);
+        Files.write(blob, content);
+
+        ContainerRef containerRef = ContainerRef.parse("%s/library/%s".formatted(registryUrl, repo));
+        Layer layer = registry.pushBlob(containerRef, blob);
+        assertEquals((long) content.length, layer.getSize());
+
+        // The body was sent once, and never without the token
+        String uploads = "/v2/library/%s/blobs/uploads/.*".formatted(repo);
+        wireMock.verifyThat(1, WireMock.postRequestedFor(WireMock.urlPathMatching(uploads)));
+        wireMock.verifyThat(1, WireMock.headRequestedFor(WireMock.urlPathMatching(uploads)));
+    }
+
+    @Test
+    void shouldSkipPresenceCheckOfKnownBlobs(WireMockRuntimeInfo wmRuntimeInfo) {
+        WireMock wireMock = wmRuntimeInfo.getWireMock();
+        String registryUrl = wmRuntimeInfo.getHttpBaseUrl().replace("http://", "");
+        byte[] data = "known-blob".getBytes(StandardCharsets.UTF_8);
+        String blobPath = "/v2/library/known-blob/blobs/%s".formatted(SupportedAlgorithm.SHA256.digest(data));
+
+        wireMock.register(WireMock.head(WireMock.urlPathEqualTo(blobPath)).willReturn(WireMock.notFound()));
+        wireMock.register(WireMock.post(WireMock.urlPathEqualTo("/v2/library/known-blob/blobs/uploads/"))
+                .willReturn(WireMock.created()));
+        wireMock.register(WireMock.delete(WireMock.urlPathEqualTo(blobPath)).willReturn(WireMock.accepted()));
+
+        Registry registry = Registry.Builder.builder()
+                .withAuthProvider(authProvider)
+                .withInsecure(true)
+                .build();
+        ContainerRef ref = ContainerRef.parse("%s/library/known-blob".formatted(registryUrl));
+
+        // Pushed once, then known to be present, also by derived registries
+        registry.pushBlob(ref, data);
+        registry.pushBlob(ref, data);
+        registry.asInsecure().pushBlob(ref, data);
+        wireMock.verifyThat(1, WireMock.headRequestedFor(WireMock.urlPathEqualTo(blobPath)));
+        wireMock.verifyThat(
+                1, WireMock.postRequestedFor(WireMock.urlPathEqualTo("/v2/library/known-blob/blobs/uploads/")));
+
+        // Other credentials check the blob again
+        registry.withAuthToken("other-token").pushBlob(ref, data);
+        wireMock.verifyThat(2, WireMock.headRequestedFor(WireMock.urlPathEqualTo(blobPath)));
+        wireMock.verifyThat(
+                2, WireMock.postRequestedFor(WireMock.urlPathEqualTo("/v2/library/known-blob/blobs/uploads/")));
+
+        // Deleting the blob forgets it
+        registry.deleteBlob(ref.withDigest(SupportedAlgorithm.SHA256.digest(data)));
+        registry.pushBlob(ref, data);
+        wireMock.verifyThat(3, WireMock.headRequestedFor(WireMock.urlPathEqualTo(blobPath)));
+        wireMock.verifyThat(
+                3, WireMock.postRequestedFor(WireMock.urlPathEqualTo("/v2/library/known-blob/blobs/uploads/")));
+    }
+
+    @Test
+    void shouldServeDigestPinnedManifestFromCache(WireMockRuntimeInfo wmRuntimeInfo) {
+        WireMock wireMock = wmRuntimeInfo.getWireMock();
+        String registryUrl = wmRuntimeInfo.getHttpBaseUrl().replace("http://", "");
+        String json = Manifest.empty().toJson();
+        String digest = SupportedAlgorithm.SHA256.digest(json.getBytes(StandardCharsets.UTF_8));
+        String manifestPath = "/v2/library/pinned-manifest/manifests/%s".formatted(digest);
+
+        wireMock.register(WireMock.head(WireMock.urlEqualTo(manifestPath))
+                .willReturn(WireMock.ok()
+                        .withHeader(Const.CONTENT_TYPE_HEADER, Const.DEFAULT_MANIFEST_MEDIA_TYPE)
+                        .withHeader(Const.DOCKER_CONTENT_DIGEST_HEADER, digest)));
+        wireMock.register(WireMock.get(WireMock.urlEqualTo(manifestPath))
+                .willReturn(WireMock.ok()
+                        .withHeader(Const.CONTENT_TYPE_HEADER, Const.DEFAULT_MANIFEST_MEDIA_TYPE)
+                        .withHeader(Const.DOCKER_CONTENT_DIGEST_HEADER, digest)
+                        .withBody(json)));
+
+        Path cacheDir = configDir.resolve("manifests");
+        Registry registry = Registry.Builder.builder()
+                .withAuthProvider(authProvider)
+                .withInsecure(true)
+                .withManifestCacheDirectory(cacheDir)
+                .build();
+        ContainerRef ref = ContainerRef.parse("%s/library/pinned-manifest@%s".formatted(registryUrl, digest));
+
+        // Fetched and parsed once
+        Manifest manifest = registry.getManifest(ref);
+        assertSame(manifest, registry.getManifest(ref));
+        assertEquals(digest, registry.getDescriptor(ref).getDigest());
+        assertEquals(json, registry.getDescriptor(ref).getJson());
+        wireMock.verifyThat(1, WireMock.headRequestedFor(WireMock.urlEqualTo(manifestPath)));
+        wireMock.verifyThat(1, WireMock.getRequestedFor(WireMock.urlEqualTo(manifestPath)));
+
+        // Persisted for other registries
+        Registry other = Registry.Builder.builder()
+                .withAuthProvider(authProvider)
+                .withInsecure(true)
+                .withManifestCacheDirectory(cacheDir)
+                .build();
+        assertEquals(digest, other.getManifest(ref).getDigest());
+        wireMock.verifyThat(1, WireMock.getRequestedFor(WireMock.urlEqualTo(manifestPath)));
+
+        // Other credentials are authorized by the registry again
+        assertEquals(digest, registry.withAuthToken("other-token").getManifest(ref).getDigest());
+        wireMock.verifyThat(2, WireMock.getRequestedFor(WireMock.urlEqualTo(manifestPath)));
+    }
+
+    @Test
+    void shouldNotResendBodyToRegistryIgnoringMonolithicPost(WireMockRuntimeInfo wmRuntimeInfo) throws IOException {
+        WireMock wireMock = wmRuntimeInfo.getWireMock();
+        String registryUrl = wmRuntimeInfo.getHttpBaseUrl().replace("http://", "");
+        String uploadPath = "/v2/library/post-put/blobs/uploads/";
+
+        wireMock.register(WireMock.head(WireMock.urlPathMatching("/v2/library/post-put/blobs/sha256.*"))
+                .willReturn(WireMock.notFound()));
+        wireMock.register(WireMock.post(WireMock.urlPathEqualTo(uploadPath))
+                .willReturn(WireMock.aResponse().withStatus(202).withHeader(Const.LOCATION_HEADER, uploadPath + "1")));
+        wireMock.register(WireMock.put(WireMock.urlPathEqualTo(uploadPath + "1")).willReturn(WireMock.created()));
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        Registry registry = Registry.Builder.builder()
+                .withInsecure(true)
+                .withMeterRegistry(meterRegistry)
+                .build();
+        ContainerRef ref = ContainerRef.parse("%s/library/post-put".formatted(registryUrl));
+        Path first = configDir.resolve("post-put-1.txt");
+        Files.writeString(first, "first blob");
+        Path second = configDir.resolve("post-put-2.txt");
+        Files.writeString(second, "second blob!");
+
+        // First push learns that the registry answers a monolithic POST with an upload session
+        registry.pushBlob(ref, first);
+        assertEquals(UploadStrategy.POST_PUT, registry.getUploadStrategy(registryUrl));
+
+        // Second push only opens the session
+        registry.pushBlob(ref, second);
+        wireMock.verifyThat(
+                1, WireMock.postRequestedFor(WireMock.urlPathEqualTo(uploadPath)).withQueryParam("digest", absent()));
+        wireMock.verifyThat(2, WireMock.putRequestedFor(WireMock.urlPathEqualTo(uploadPath + "1")));
+        assertEquals(
+                (double) Files.size(second),
+                meterRegistry
+                        .counter(
+                                Const.METRIC_UPLOAD_BYTES_SAVED, "registry", registryUrl, "strategy", "post_put")
+                        .count());
+    }
+
+    @Test
+    void shouldSwitchToChunkedUploadWhenSinglePutIsTooLarge(WireMockRuntimeInfo wmRuntimeInfo) throws IOException {
+        WireMock wireMock = wmRuntimeInfo.getWireMock();
+        String registryUrl = wmRuntimeInfo.getHttpBaseUrl().replace("http://", "");
+        String uploadPath = "/v2/library/too-large/blobs/uploads/";
+
+        wireMock.register(WireMock.head(WireMock.urlPathMatching("/v2/library/too-large/blobs/sha256.*"))
+                .willReturn(WireMock.notFound()));
+        wireMock.register(WireMock.post(WireMock.urlPathEqualTo(uploadPath))
+                .willReturn(WireMock.aResponse().withStatus(202).withHeader(Const.LOCATION_HEADER, uploadPath + "1")));
+        wireMock.register(WireMock.patch(WireMock.urlPathEqualTo(uploadPath + "1"))
+                .willReturn(WireMock.aResponse().withStatus(202)));
+        // Bodies of 10 bytes and more are too large for a single PUT
+        wireMock.register(WireMock.put(WireMock.urlPathEqualTo(uploadPath + "1"))
+                .atPriority(1)
+                .withHeader(Const.CONTENT_LENGTH_HEADER, WireMock.matching("[1-9][0-9]+"))
+                .willReturn(WireMock.status(413)));
+        wireMock.register(WireMock.put(WireMock.urlPathEqualTo(uploadPath + "1"))
+                .atPriority(2)
+                .willReturn(WireMock.created()));
+        wireMock.register(WireMock.delete(WireMock.urlPathEqualTo(uploadPath + "1"))
+                .willReturn(WireMock.noContent()));
+
+        Registry registry = Registry.Builder.builder().withInsecure(true).build();
+        ContainerRef ref = ContainerRef.parse("%s/library/too-large".formatted(registryUrl));
+        Path first = configDir.resolve("too-large-1.txt");
+        Files.writeString(first, "first blob");
+        Path second = configDir.resolve("too-large-2.txt");
+        Files.writeString(second, "second blob!");
+        Path small = configDir.resolve("too-large-3.txt");
+        Files.writeString(small, "small");
+
+        assertEquals(SupportedAlgorithm.SHA256.digest(first), registry.pushBlob(ref, first).getDigest());
+        assertEquals(UploadStrategy.CHUNKED, registry.getUploadStrategy(registryUrl));
+        assertEquals(SupportedAlgorithm.SHA256.digest(second), registry.pushBlob(ref, second).getDigest());
+        assertEquals(SupportedAlgorithm.SHA256.digest(small), registry.pushBlob(ref, small).getDigest());
+        assertEquals(UploadStrategy.CHUNKED, registry.getUploadStrategy(registryUrl));
+
+        // The session of the rejected PUT is cancelled
+        wireMock.verifyThat(1, WireMock.deleteRequestedFor(WireMock.urlPathEqualTo(uploadPath + "1")));
+        // A blob smaller than the rejected one is still sent in a single PUT
+        wireMock.verifyThat(
+                1,
+                WireMock.putRequestedFor(WireMock.urlPathEqualTo(uploadPath + "1"))
+                        .withRequestBody(WireMock.equalTo("small")));
+
+        // Only the first push tried a monolithic POST and a single PUT
+        wireMock.verifyThat(
+                1,
+                WireMock.postRequestedFor(WireMock.urlPathEqualTo(uploadPath))
+                        .withQueryParam("digest", matching(".+")));
+        wireMock.verifyThat(2, WireMock.patchRequestedFor(WireMock.urlPathEqualTo(uploadPath + "1")));
+    }
+
+    @Test
+    void shouldHeadEachPlannedBlobOnce(WireMockRuntimeInfo wmRuntimeInfo) throws IOException {
+        WireMock wireMock = wmRuntimeInfo.getWireMock();
+        String registryUrl = wmRuntimeInfo.getHttpBaseUrl().replace("http://", "");
+        Path present = configDir.resolve("planned-present.txt");
+        Files.writeString(present, "present blob");
+        Path missing = configDir.resolve("planned-missing.txt");
+        Files.writeString(missing, "missing blob");
+        String presentPath = "/v2/library/planned/blobs/%s".formatted(SupportedAlgorithm.SHA256.digest(present));
+        String missingPath = "/v2/library/planned/blobs/%s".formatted(SupportedAlgorithm.SHA256.digest(missing));
+        String uploadPath = "/v2/library/planned/blobs/uploads/";
+
+        wireMock.register(WireMock.head(WireMock.urlPathEqualTo(presentPath)).willReturn(WireMock.ok()));
+        wireMock.register(WireMock.head(WireMock.urlPathEqualTo(missingPath)).willReturn(WireMock.notFound()));
+        wireMock.register(WireMock.post(WireMock.urlPathEqualTo(uploadPath)).willReturn(WireMock.created()));
+
+        Registry registry = Registry.Builder.builder()
+                .withAuthProvider(authProvider)
+                .withInsecure(true)
+                .build();
+        ContainerRef ref = ContainerRef.parse("%s/library/planned".formatted(registryUrl));
+
+        List<Layer> layers =
+                registry.pushLayers(ref, Annotations.empty(), false, LocalPath.of(present), LocalPath.of(missing));
+
+        assertEquals(SupportedAlgorithm.SHA256.digest(present), layers.get(0).getDigest());
+        assertEquals("planned-present.txt", layers.get(0).getAnnotations().get(Const.ANNOTATION_TITLE));
+        assertEquals(SupportedAlgorithm.SHA256.digest(missing), layers.get(1).getDigest());
+        // Each blob is checked once by the plan, and only the missing one is uploaded
+        wireMock.verifyThat(1, WireMock.headRequestedFor(WireMock.urlPathEqualTo(presentPath)));
+        wireMock.verifyThat(1, WireMock.headRequestedFor(WireMock.urlPathEqualTo(missingPath)));
+        wireMock.verifyThat(1, WireMock.postRequestedFor(WireMock.urlPathEqualTo(uploadPath)));
+        wireMock.verifyThat(
+                1,
+                WireMock.postRequestedFor(WireMock.urlPathEqualTo(uploadPath))
+                        .withQueryParam("digest", WireMock.equalTo(SupportedAlgorithm.SHA256.digest(missing))));
+    }
+
+    @Test
+    void shouldProbeOnceWithoutBearerChallenge(WireMockRuntimeInfo wmRuntimeInfo) throws IOException {
+        WireMock wireMock = wmRuntimeInfo.getWireMock();
+        String registryUrl = wmRuntimeInfo.getHttpBaseUrl().replace("http://", "");
+        String uploadPath = "/v2/library/probe-once/blobs/uploads/";
+        String sessionPath = uploadPath + "session-probe";
+
+        // No bearer challenge, the probe of the session is not found
+        wireMock.register(WireMock.head(WireMock.urlPathMatching("/v2/library/probe-once/blobs/.*"))
+                .willReturn(WireMock.notFound()));
+        wireMock.register(WireMock.post(WireMock.urlPathEqualTo(uploadPath))
+                .willReturn(WireMock.aResponse().withStatus(202).withHeader(Const.LOCATION_HEADER, sessionPath)));
+        wireMock.register(WireMock.patch(WireMock.urlPathEqualTo(sessionPath))
+                .willReturn(WireMock.aResponse().withStatus(202).withHeader(Const.LOCATION_HEADER, sessionPath)));
+        wireMock.register(WireMock.put(WireMock.urlPathEqualTo(sessionPath)).willReturn(WireMock.created()));
+
+        Registry registry = Registry.Builder.builder()
+                .withAuthProvider(authProvider)
+                .withInsecure(true)
+                .build();
+        ContainerRef ref = ContainerRef.parse("%s/library/probe-once".formatted(registryUrl));
+        long chunkSize = 3 * 1024 * 1024 / 2;
+        Random random = new Random(42);
+        for (int i = 0; i < 2; i++) {
+            Path blob = configDir.resolve("probe-once-%d.bin".formatted(i));
+            byte[] content = new byte[4 * 1024 * 1024];
+            random.nextBytes(content);
+            Files.write(blob, content);
+            registry.pushBlobChunked(ref, blob, chunkSize);
+        }
+
+        // Six large chunks were sent, only the first one was probed
+        wireMock.verifyThat(6, WireMock.patchRequestedFor(WireMock.urlPathEqualTo(sessionPath)));
+        wireMock.verifyThat(1, WireMock.headRequestedFor(WireMock.urlPathMatching(uploadPath + ".*")));
+    }
+
+    @Test
+    void shouldNotShareUnchallengedScopesAcrossClients(WireMockRuntimeInfo wmRuntimeInfo) throws IOException {
+        WireMock wireMock = wmRuntimeInfo.getWireMock();
+        String registryUrl = wmRuntimeInfo.getHttpBaseUrl().replace("http://", "");
+        String uploadPath = "/v2/library/probe-per-client/blobs/uploads/";
+        String sessionPath = uploadPath + "session-probe";
+
+        // No bearer challenge, the probe of the session is not found
+        wireMock.register(WireMock.head(WireMock.urlPathMatching("/v2/library/probe-per-client/blobs/.*"))
+                .willReturn(WireMock.notFound()));
+        wireMock.register(WireMock.post(WireMock.urlPathEqualTo(uploadPath))
+                .willReturn(WireMock.aResponse().withStatus(202).withHeader(Const.LOCATION_HEADER, sessionPath)));
+        wireMock.register(WireMock.patch(WireMock.urlPathEqualTo(sessionPath))
+                .willReturn(WireMock.aResponse().withStatus(202).withHeader(Const.LOCATION_HEADER, sessionPath)));
+        wireMock.register(WireMock.put(WireMock.urlPathEqualTo(sessionPath)).willReturn(WireMock.created()));
+
+        ContainerRef ref = ContainerRef.parse("%s/library/probe-per-client".formatted(registryUrl));
+        Random random = new Random(42);
+        for (int i = 0; i < 2; i++) {
+            Registry registry = Registry.Builder.builder()
+                    .withAuthProvider(authProvider)
+                    .withInsecure(true)
+                    .build();
+            Path blob = configDir.resolve("probe-per-client-%d.bin".formatted(i));
+            byte[] content = new byte[2 * 1024 * 1024];
+            random.nextBytes(content);
+            Files.write(blob, content);
+            registry.pushBlobChunked(ref, blob, content.length);
+        }
+
+        // Each client probes on its own first large body
+        wireMock.verifyThat(2, WireMock.patchRequestedFor(WireMock.urlPathEqualTo(sessionPath)));
+        wireMock.verifyThat(2, WireMock.headRequestedFor(WireMock.urlPathMatching(uploadPath + ".*")));
+    }
+
     @Test
     void shouldFailCopyWhenIndexNestingExceedsMaxDepth(WireMockRuntimeInfo wmRuntimeInfo) {
         WireMock wireMock = wmRuntimeInfo.getWireMock();
@@ -1717,6 +2501,228 @@ class RegistryWireMockTest {
         assertTrue(ex.getMessage().contains("Digest mismatch"), "Unexpected: " + ex.getMessage());
     }
 
+    @Test
+    void shouldFetchBlobToPathInSinglePass(WireMockRuntimeInfo wmRuntimeInfo) throws IOException {
+        byte[] content = "single-pass".getBytes(StandardCharsets.UTF_8);
+        String digest = SupportedAlgorithm.SHA256.digest(content);
+
+        WireMock wireMock = wmRuntimeInfo.getWireMock();
+        wireMock.register(WireMock.get(WireMock.urlEqualTo("/v2/library/single-pass/blobs/%s".formatted(digest)))
+                .willReturn(WireMock.ok().withBody(content).withHeader(Const.DOCKER_CONTENT_DIGEST_HEADER, digest)));
+
+        Registry registry = Registry.Builder.builder()
+                .withAuthProvider(authProvider)
+                .withInsecure(true)
+                .build();
+        ContainerRef ref = ContainerRef.parse("localhost:%d/library/single-pass".formatted(wmRuntimeInfo.getHttpPort()))
+                .withDigest(digest);
+        Path dir = Files.createDirectories(configDir.resolve("single-pass"));
+        Path out = dir.resolve("blob.bin");
+        Files.writeString(out, "previous content");
+
+        registry.fetchBlob(ref, out);
+
+        assertArrayEquals(content, Files.readAllBytes(out));
+        try (var files = Files.list(dir)) {
+            assertEquals(List.of(out), files.toList(), "No temporary file should be left behind");
+        }
+    }
+
+    @Test
+    void shouldKeepExistingFileOnFetchBlobDigestMismatch(WireMockRuntimeInfo wmRuntimeInfo) throws IOException {
+        String pinnedDigest = SupportedAlgorithm.SHA256.digest("good".getBytes(StandardCharsets.UTF_8));
+
+        WireMock wireMock = wmRuntimeInfo.getWireMock();
+        wireMock.register(WireMock.get(WireMock.urlEqualTo("/v2/library/evil-keep/blobs/%s".formatted(pinnedDigest)))
+                .willReturn(WireMock.ok().withBody("tampered")));
+
+        Registry registry = Registry.Builder.builder()
+                .withAuthProvider(authProvider)
+                .withInsecure(true)
+                .build();
+        ContainerRef ref = ContainerRef.parse("localhost:%d/library/evil-keep".formatted(wmRuntimeInfo.getHttpPort()))
+                .withDigest(pinnedDigest);
+        Path dir = Files.createDirectories(configDir.resolve("evil-keep"));
+        Path out = dir.resolve("blob.bin");
+        Files.writeString(out, "previous content");
+
+        assertThrows(OrasException.class, () -> registry.fetchBlob(ref, out));
+
+        // Target untouched and partial download removed
+        assertEquals("previous content", Files.readString(out));
+        try (var files = Files.list(dir)) {
+            assertEquals(List.of(out), files.toList());
+        }
+    }
+
+    @Test
+    void shouldFetchBlobInParallelSegments(WireMockRuntimeInfo wmRuntimeInfo) throws IOException {
+        byte[] content = "0123456789abcdefghijklmnopqrstuvwxyz".getBytes(StandardCharsets.UTF_8);
+        String digest = SupportedAlgorithm.SHA256.digest(content);
+        String path = "/v2/library/segmented/blobs/%s".formatted(digest);
+
+        WireMock wireMock = wmRuntimeInfo.getWireMock();
+        wireMock.register(WireMock.head(WireMock.urlEqualTo(path))
+                .willReturn(WireMock.ok()
+                        .withHeader(Const.CONTENT_LENGTH_HEADER, String.valueOf(content.length))
+                        .withHeader(Const.DOCKER_CONTENT_DIGEST_HEADER, digest)));
+        for (int offset = 0; offset < content.length; offset += 10) {
+            int end = Math.min(offset + 10, content.length) - 1;
+            wireMock.register(WireMock.get(WireMock.urlEqualTo(path))
+                    .withHeader(Const.RANGE_HEADER, WireMock.equalTo("bytes=%d-%d".formatted(offset, end)))
+                    .willReturn(WireMock.aResponse()
+                            .withStatus(206)
+                            .withHeader(
+                                    Const.CONTENT_RANGE_HEADER,
+                                    "bytes %d-%d/%d".formatted(offset, end, content.length))
+                            .withHeader(Const.DOCKER_CONTENT_DIGEST_HEADER, digest)
+                            .withBody(Arrays.copyOfRange(content, offset, end + 1))));
+        }
+
+        Registry registry = Registry.Builder.builder()
+                .withAuthProvider(authProvider)
+                .withInsecure(true)
+                .withParallelism(3)
+                .withSegmentedDownload(1, 10)
+                .build();
+        ContainerRef ref = ContainerRef.parse("localhost:%d/library/segmented".formatted(wmRuntimeInfo.getHttpPort()))
+                .withDigest(digest);
+        Path dir = Files.createDirectories(configDir.resolve("segmented"));
+        Path out = dir.resolve("blob.bin");
+
+        registry.fetchBlob(ref, out);
+
+        assertArrayEquals(content, Files.readAllBytes(out));
+        wireMock.verifyThat(4, WireMock.getRequestedFor(WireMock.urlEqualTo(path)));
+        try (var files = Files.list(dir)) {
+            assertEquals(List.of(out), files.toList(), "No temporary file should be left behind");
+        }
+    }
+
+    @Test
+    void shouldFetchAsManySegmentedBlobsAsParallelism(WireMockRuntimeInfo wmRuntimeInfo) throws Exception {
+        WireMock wireMock = wmRuntimeInfo.getWireMock();
+        int parallelism = 2;
+        Registry registry = Registry.Builder.builder()
+                .withAuthProvider(authProvider)
+                .withInsecure(true)
+                .withParallelism(parallelism)
+                .withSegmentedDownload(1, 10)
+                .build();
+        Path dir = Files.createDirectories(configDir.resolve("segmented-pool"));
+        Map<Path, byte[]> blobs = new HashMap<>();
+        List<CompletableFuture<Void>> pulls = new ArrayList<>();
+        for (int i = 0; i < parallelism; i++) {
+            byte[] content = "%d-0123456789abcdefghijklmnopqrstuvwxyz".formatted(i).getBytes(StandardCharsets.UTF_8);
+            String digest = SupportedAlgorithm.SHA256.digest(content);
+            String path = "/v2/library/segmented-pool/blobs/%s".formatted(digest);
+            wireMock.register(WireMock.head(WireMock.urlEqualTo(path))
+                    .willReturn(WireMock.ok()
+                            .withHeader(Const.CONTENT_LENGTH_HEADER, String.valueOf(content.length))
+                            .withHeader(Const.DOCKER_CONTENT_DIGEST_HEADER, digest)));
+            for (int offset = 0; offset < content.length; offset += 10) {
+                int end = Math.min(offset + 10, content.length) - 1;
+                wireMock.register(WireMock.get(WireMock.urlEqualTo(path))
+                        .withHeader(Const.RANGE_HEADER, WireMock.equalTo("bytes=%d-%d".formatted(offset, end)))
+                        .willReturn(WireMock.aResponse()
+                                .withStatus(206)
+                                .withHeader(
+                                        Const.CONTENT_RANGE_HEADER,
+                                        "bytes %d-%d/%d".formatted(offset, end, content.length))
+                                .withHeader(Const.DOCKER_CONTENT_DIGEST_HEADER, digest)
+                                .withBody(Arrays.copyOfRange(content, offset, end + 1))));
+            }
+            ContainerRef ref = ContainerRef.parse(
+                            "localhost:%d/library/segmented-pool".formatted(wmRuntimeInfo.getHttpPort()))
+                    .withDigest(digest);
+            Path out = dir.resolve("blob-%d.bin".formatted(i));
+            blobs.put(out, content);
+            // Like layers of a pull, every fetch runs on the registry executor and occupies one of its threads
+            pulls.add(CompletableFuture.runAsync(() -> registry.fetchBlob(ref, out), registry.getExecutorService()));
+        }
+
+        CompletableFuture.allOf(pulls.toArray(CompletableFuture[]::new)).get(30, TimeUnit.SECONDS);
+
+        for (Map.Entry<Path, byte[]> blob : blobs.entrySet()) {
+            assertArrayEquals(blob.getValue(), Files.readAllBytes(blob.getKey()));
+        }
+    }
+
+    @Test
+    void shouldFallbackToSingleStreamWhenRangeIgnored(WireMockRuntimeInfo wmRuntimeInfo) throws IOException {
+        byte[] content = "0123456789abcdefghijklmnopqrstuvwxyz".getBytes(StandardCharsets.UTF_8);
+        String digest = SupportedAlgorithm.SHA256.digest(content);
+        String path = "/v2/library/no-range/blobs/%s".formatted(digest);
+
+        WireMock wireMock = wmRuntimeInfo.getWireMock();
+        wireMock.register(WireMock.head(WireMock.urlEqualTo(path))
+                .willReturn(WireMock.ok().withHeader(Const.CONTENT_LENGTH_HEADER, String.valueOf(content.length))));
+        wireMock.register(WireMock.get(WireMock.urlEqualTo(path))
+                .willReturn(WireMock.ok().withBody(content).withHeader(Const.DOCKER_CONTENT_DIGEST_HEADER, digest)));
+
+        Registry registry = Registry.Builder.builder()
+                .withAuthProvider(authProvider)
+                .withInsecure(true)
+                .withParallelism(3)
+                .withSegmentedDownload(1, 10)
+                .build();
+        ContainerRef ref = ContainerRef.parse("localhost:%d/library/no-range".formatted(wmRuntimeInfo.getHttpPort()))
+                .withDigest(digest);
+        Path dir = Files.createDirectories(configDir.resolve("no-range"));
+        Path out = dir.resolve("blob.bin");
+
+        registry.fetchBlob(ref, out);
+
+        assertArrayEquals(content, Files.readAllBytes(out));
+        wireMock.verifyThat(1, WireMock.getRequestedFor(WireMock.urlEqualTo(path)));
+    }
+
+    @Test
+    void shouldResumeBlobDownloadAfterTruncatedResponse(WireMockRuntimeInfo wmRuntimeInfo) throws IOException {
+        byte[] content = "0123456789abcdefghijklmnopqrstuvwxyz".getBytes(StandardCharsets.UTF_8);
+        String digest = SupportedAlgorithm.SHA256.digest(content);
+        String path = "/v2/library/resume/blobs/%s".formatted(digest);
+
+        // First attempt announces the full length but the connection drops after 16 bytes
+        WireMock wireMock = wmRuntimeInfo.getWireMock();
+        wireMock.register(WireMock.get(WireMock.urlEqualTo(path))
+                .inScenario("resume download")
+                .whenScenarioStateIs(Scenario.STARTED)
+                .willReturn(WireMock.ok()
+                        .withHeader(Const.CONTENT_LENGTH_HEADER, String.valueOf(content.length))
+                        .withBody(Arrays.copyOfRange(content, 0, 16)))
+                .willSetStateTo("resume"));
+        wireMock.register(WireMock.get(WireMock.urlEqualTo(path))
+                .inScenario("resume download")
+                .whenScenarioStateIs("resume")
+                .withHeader(Const.RANGE_HEADER, WireMock.equalTo("bytes=16-"))
+                .willReturn(WireMock.aResponse()
+                        .withStatus(206)
+                        .withHeader(Const.CONTENT_RANGE_HEADER, "bytes 16-35/36")
+                        .withBody(Arrays.copyOfRange(content, 16, content.length))));
+
+        Registry registry = Registry.Builder.builder()
+                .withAuthProvider(authProvider)
+                .withInsecure(true)
+                .withRetryDelay(0)
+                .build();
+        ContainerRef ref = ContainerRef.parse("localhost:%d/library/resume".formatted(wmRuntimeInfo.getHttpPort()))
+                .withDigest(digest);
+        Path dir = Files.createDirectories(configDir.resolve("resume"));
+        Path out = dir.resolve("blob.bin");
+
+        registry.fetchBlob(ref, out);
+
+        assertArrayEquals(content, Files.readAllBytes(out));
+        wireMock.verifyThat(
+                1,
+                WireMock.getRequestedFor(WireMock.urlEqualTo(path))
+                        .withHeader(Const.RANGE_HEADER, WireMock.equalTo("bytes=16-")));
+        try (var files = Files.list(dir)) {
+            assertEquals(List.of(out), files.toList(), "No temporary file should be left behind");
+        }
+    }
+
     @Test
     void shouldRejectBlobStreamOnDigestMismatch(WireMockRuntimeInfo wmRuntimeInfo) {
         String pinnedDigest = SupportedAlgorithm.SHA256.digest("good".getBytes(StandardCharsets.UTF_8));
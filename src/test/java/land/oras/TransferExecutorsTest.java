@@ -0,0 +1,104 @@
+/*-
+ * =LICENSE=
+ * ORAS Java SDK
+ * ===
+ * Copyright (C) 2024 - 2026 ORAS
+ * ===
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =LICENSEEND=
+ */
+package land.oras;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+@Execution(ExecutionMode.CONCURRENT)
+class TransferExecutorsTest {
+
+    @Test
+    void shouldDefaultToProcessorAwareParallelism() {
+        int parallelism = TransferExecutors.defaultParallelism();
+        assertTrue(parallelism >= TransferExecutors.MIN_PARALLELISM);
+        assertTrue(parallelism >= Runtime.getRuntime().availableProcessors());
+    }
+
+    @Test
+    void shouldBoundConcurrencyIndependentlyOfThreads() throws Exception {
+        ExecutorService executor = new TransferExecutors.BoundedExecutorService(Executors.newCachedThreadPool(), 2);
+        try {
+            assertEquals(2, maxConcurrency(executor, 8));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void shouldRunTransfersOnVirtualThreadsWhenSupported() throws Exception {
+        Registry registry = Registry.Builder.builder()
+                .insecure()
+                .withVirtualThreads(true)
+                .withParallelism(3)
+                .build();
+        ExecutorService executor = registry.getExecutorService();
+        try {
+            assertTrue(maxConcurrency(executor, 9) <= 3);
+            String thread = executor.submit(() -> Thread.currentThread().toString())
+                    .get(5, TimeUnit.SECONDS);
+            assertEquals(TransferExecutors.isVirtualThreadsSupported(), thread.startsWith("VirtualThread"), thread);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void shouldRejectInvalidParallelism() {
+        assertThrows(IllegalArgumentException.class, () -> Registry.Builder.builder().withParallelism(0));
+    }
+
+    private static int maxConcurrency(ExecutorService executor, int tasks) throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger max = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(tasks);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < tasks; i++) {
+            futures.add(CompletableFuture.runAsync(
+                    () -> {
+                        max.accumulateAndGet(running.incrementAndGet(), Math::max);
+                        try {
+                            Thread.sleep(50);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        running.decrementAndGet();
+                        done.countDown();
+                    },
+                    executor));
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+        return max.get();
+    }
+}
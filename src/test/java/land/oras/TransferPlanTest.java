@@ -0,0 +1,141 @@
+/*-
+ * =LICENSE=
+ * ORAS Java SDK
+ * ===
+ * Copyright (C) 2024 - 2026 ORAS
+ * ===
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =LICENSEEND=
+ */
+
+package land.oras;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import land.oras.utils.SupportedAlgorithm;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+@Execution(ExecutionMode.CONCURRENT)
+class TransferPlanTest {
+
+    @TempDir
+    private Path layoutPath;
+
+    @TempDir
+    private Path blobDir;
+
+    @Test
+    void shouldPlanOnlyMissingBlobsLargestFirst() throws Exception {
+        Path path = layoutPath.resolve("shouldPlanOnlyMissingBlobsLargestFirst");
+        LayoutRef layoutRef = LayoutRef.parse(path.toString());
+        OCILayout ociLayout = OCILayout.Builder.builder().defaults(path).build();
+
+        byte[] present = "present".getBytes(StandardCharsets.UTF_8);
+        ociLayout.pushBlob(layoutRef.withDigest(SupportedAlgorithm.SHA256.digest(present)), present);
+
+        Descriptor presentBlob = Descriptor.of(SupportedAlgorithm.SHA256.digest(present), (long) present.length);
+        Descriptor small = Descriptor.of(SupportedAlgorithm.SHA256.digest("small".getBytes()), 5L);
+        Descriptor large = Descriptor.of(SupportedAlgorithm.SHA256.digest("large".getBytes()), 500L);
+
+        // Duplicates are planned once
+        TransferPlan plan = TransferPlan.of(ociLayout, layoutRef, List.of(small, presentBlob, large, small));
+
+        assertEquals(List.of(large, small), plan.getMissing());
+        assertEquals(2, plan.getMissingCount());
+        assertEquals(505L, plan.getMissingBytes());
+        assertEquals(List.of(presentBlob), plan.getPresent());
+        assertEquals(1, plan.getPresentCount());
+        assertEquals(present.length, plan.getPresentBytes());
+        assertTrue(plan.isMissing(large.getDigest()));
+        assertFalse(plan.isMissing(presentBlob.getDigest()));
+        assertFalse(plan.isComplete());
+    }
+
+    @Test
+    void shouldPlanPushOfFiles() throws Exception {
+        Path path = layoutPath.resolve("shouldPlanPushOfFiles");
+        LayoutRef layoutRef = LayoutRef.parse(path.toString());
+        OCILayout ociLayout = OCILayout.Builder.builder().defaults(path).build();
+
+        Path existing = blobDir.resolve("existing.txt");
+        Files.writeString(existing, "existing");
+        Path missing = blobDir.resolve("missing.txt");
+        Files.writeString(missing, "missing content");
+        Path directory = Files.createDirectories(blobDir.resolve("directory"));
+        Files.writeString(directory.resolve("file.txt"), "file");
+        ociLayout.pushBlob(layoutRef.withDigest(SupportedAlgorithm.SHA256.digest(existing)), existing);
+
+        // Directories are only archived on push
+        TransferPlan plan =
+                ociLayout.planPush(layoutRef, LocalPath.of(existing), LocalPath.of(missing), LocalPath.of(directory));
+        assertEquals(1, plan.getMissingCount());
+        assertEquals(Files.size(missing), plan.getMissingBytes());
+        assertTrue(plan.isMissing(SupportedAlgorithm.SHA256.digest(missing)));
+        assertEquals(1, plan.getPresentCount());
+
+        // Nothing is pushed by a plan
+        assertFalse(ociLayout.hasBlob(layoutRef.withDigest(SupportedAlgorithm.SHA256.digest(missing))));
+    }
+
+    @Test
+    void shouldCompletePlanAfterPush() throws Exception {
+        Path path = layoutPath.resolve("shouldCompletePlanAfterPush");
+        LayoutRef layoutRef = LayoutRef.parse("%s:latest".formatted(path.toString()));
+        OCILayout ociLayout = OCILayout.Builder.builder().defaults(path).build();
+
+        Path small = blobDir.resolve("small.txt");
+        Files.writeString(small, "small");
+        Path large = blobDir.resolve("large.txt");
+        Files.writeString(large, "large".repeat(100));
+
+        Manifest manifest = ociLayout.pushArtifact(layoutRef, LocalPath.of(small), LocalPath.of(large));
+
+        // Layers keep the order of the paths, whatever the push order
+        assertEquals(2, manifest.getLayers().size());
+        assertEquals(SupportedAlgorithm.SHA256.digest(small), manifest.getLayers().get(0).getDigest());
+        assertEquals(SupportedAlgorithm.SHA256.digest(large), manifest.getLayers().get(1).getDigest());
+        assertTrue(ociLayout.planPush(layoutRef, LocalPath.of(small), LocalPath.of(large)).isComplete());
+    }
+
+    @Test
+    void shouldPlanCopyOfManifest() throws Exception {
+        Path sourcePath = layoutPath.resolve("source");
+        Path targetPath = layoutPath.resolve("target");
+        LayoutRef sourceRef = LayoutRef.parse("%s:latest".formatted(sourcePath.toString()));
+        LayoutRef targetRef = LayoutRef.parse("%s:latest".formatted(targetPath.toString()));
+        OCILayout source = OCILayout.Builder.builder().defaults(sourcePath).build();
+        OCILayout target = OCILayout.Builder.builder().defaults(targetPath).build();
+
+        Path file = blobDir.resolve("file.txt");
+        Files.writeString(file, "file content");
+        Manifest manifest = source.pushArtifact(sourceRef, LocalPath.of(file));
+
+        // Layer and config are missing
+        TransferPlan plan = CopyUtils.plan(source, sourceRef, target, targetRef, CopyUtils.CopyOptions.shallow());
+        assertEquals(2, plan.getMissingCount());
+        assertEquals(Files.size(file) + manifest.getConfig().getSize(), plan.getMissingBytes());
+
+        CopyUtils.copy(source, sourceRef, target, targetRef, CopyUtils.CopyOptions.shallow());
+        assertTrue(CopyUtils.plan(source, sourceRef, target, targetRef, CopyUtils.CopyOptions.shallow())
+                .isComplete());
+    }
+}
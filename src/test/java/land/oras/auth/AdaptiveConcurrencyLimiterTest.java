@@ -0,0 +1,180 @@
+/*-
+ * =LICENSE=
+ * ORAS Java SDK
+ * ===
+ * Copyright (C) 2024 - 2026 ORAS
+ * ===
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =LICENSEEND=
+ */
+
+package land.oras.auth;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import land.oras.ContainerRef;
+import land.oras.exception.OrasException;
+import land.oras.utils.Const;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+@Execution(ExecutionMode.CONCURRENT)
+class AdaptiveConcurrencyLimiterTest {
+
+    @Test
+    void shouldGrowOnSuccessWhileWindowIsUsed() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("localhost:80", 4);
+        limiter.onResponse(System.nanoTime(), 200, 1_000_000, true);
+        assertEquals(4, limiter.getLimit(), "Idle window must not grow");
+
+        for (int i = 0; i < 4; i++) {
+            limiter.acquire();
+        }
+        for (int i = 0; i < 5; i++) {
+            assertEquals(4, limiter.getLimit(), "Window grows by about one per window of successes");
+            limiter.onResponse(System.nanoTime(), 200, 1_000_000, true);
+        }
+        assertEquals(5, limiter.getLimit());
+        for (int i = 0; i < 4; i++) {
+            limiter.release();
+        }
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void shouldHalveOncePerRoundTripWhenThrottled() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("localhost:80", 16);
+        long sent = System.nanoTime();
+        limiter.onResponse(sent, 429, 1_000_000, true);
+        limiter.onResponse(sent, 503, 1_000_000, true);
+        limiter.onFailure(sent);
+        assertEquals(8, limiter.getLimit());
+
+        limiter.onResponse(System.nanoTime(), 429, 1_000_000, true);
+        assertEquals(4, limiter.getLimit());
+    }
+
+    @Test
+    void shouldShrinkWhenLatencyRises() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("localhost:80", 20);
+        limiter.onResponse(System.nanoTime(), 200, 10_000_000, true);
+        limiter.onResponse(System.nanoTime(), 200, 500_000_000, false);
+        assertEquals(20, limiter.getLimit(), "Large transfers must not count as queuing");
+
+        limiter.onResponse(System.nanoTime(), 200, 500_000_000, true);
+        assertEquals(18, limiter.getLimit());
+    }
+
+    @Test
+    void shouldRegisterLimitGaugeOnEachMeterRegistry() {
+        String host = "limiter-gauge.example:443";
+        SimpleMeterRegistry first = new SimpleMeterRegistry();
+        SimpleMeterRegistry second = new SimpleMeterRegistry();
+        AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.forHost(host, first);
+        assertSame(limiter, AdaptiveConcurrencyLimiter.forHost(host, second));
+        assertSame(limiter, AdaptiveConcurrencyLimiter.forHost(host, second));
+
+        for (SimpleMeterRegistry meterRegistry : List.of(first, second)) {
+            assertEquals(
+                    AdaptiveConcurrencyLimiter.INITIAL_LIMIT,
+                    meterRegistry.get(Const.METRIC_HTTP_CONCURRENCY_LIMIT).tag("host", host).gauge().value());
+            assertEquals(1, meterRegistry.getMeters().size());
+        }
+    }
+
+    @Test
+    void shouldConvergeToRegistryCapacity() throws Exception {
+        int capacity = 4;
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger throttled = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        ExecutorService handlers = Executors.newCachedThreadPool();
+        server.setExecutor(handlers);
+        // Stand-in registry throttling above its capacity
+        server.createContext("/v2/", exchange -> {
+            try {
+                int status = inFlight.incrementAndGet() > capacity ? 429 : 200;
+                if (status == 429) {
+                    throttled.incrementAndGet();
+                } else {
+                    Thread.sleep(5);
+                }
+                exchange.sendResponseHeaders(status, -1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+                exchange.close();
+            }
+        });
+        server.start();
+        ExecutorService callers = Executors.newFixedThreadPool(32);
+        try {
+            SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+            HttpClient client = HttpClient.Builder.builder()
+                    .withMeterRegistry(meterRegistry)
+                    .withMaxRetries(1)
+                    .build();
+            URI uri = URI.create("http://localhost:%d/v2/".formatted(server.getAddress().getPort()));
+            Scopes scopes = Scopes.empty(ContainerRef.parse("localhost/library/test"), "localhost");
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                futures.add(CompletableFuture.runAsync(
+                        () -> {
+                            for (int j = 0; j < 25; j++) {
+                                try {
+                                    client.head(uri, Map.of(), scopes, new NoAuthProvider());
+                                } catch (OrasException e) {
+                                    // Connection dropped by the stand-in registry, also fed to the limiter
+                                }
+                            }
+                        },
+                        callers));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+            AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.forHost(
+                    "localhost:%d".formatted(server.getAddress().getPort()), meterRegistry);
+            int limit = limiter.getLimit();
+            assertTrue(throttled.get() > 0, "Initial window should exceed the capacity");
+            assertTrue(limit < AdaptiveConcurrencyLimiter.INITIAL_LIMIT, "Limit should shrink, was " + limit);
+            assertTrue(limit <= capacity * 2, "Limit should converge around the capacity, was " + limit);
+            assertEquals(0, limiter.getInFlight());
+            assertEquals(
+                    limit,
+                    meterRegistry
+                            .get(Const.METRIC_HTTP_CONCURRENCY_LIMIT)
+                            .tag("host", "localhost:%d".formatted(server.getAddress().getPort()))
+                            .gauge()
+                            .value());
+        } finally {
+            callers.shutdownNow();
+            server.stop(0);
+            handlers.shutdownNow();
+        }
+    }
+}
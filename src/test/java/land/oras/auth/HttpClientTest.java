@@ -24,6 +24,7 @@ import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.net.URI;
@@ -31,6 +32,7 @@ import java.net.http.HttpResponse;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import land.oras.exception.OrasException;
+import land.oras.utils.Const;
 import land.oras.utils.TlsUtils;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
@@ -176,6 +178,45 @@ class HttpClientTest {
                 () -> HttpClient.Builder.builder().withCaContent(ROOT_CA_PEM).build());
     }
 
+    @Test
+    void shouldShareTransportForSameTlsConfiguration() {
+        HttpClient first = HttpClient.Builder.builder().withCaContent(ROOT_CA_PEM).build();
+        HttpClient second = HttpClient.Builder.builder()
+                .withCaContent(ROOT_CA_PEM)
+                .withMaxRetries(1)
+                .build();
+        HttpClient otherCa = HttpClient.Builder.builder().withCaContent(ISSUING_CA_PEM).build();
+        HttpClient otherTimeout = HttpClient.Builder.builder()
+                .withCaContent(ROOT_CA_PEM)
+                .withTimeout(5)
+                .build();
+
+        assertSame(first.getTransport(), second.getTransport());
+        assertNotSame(first.getTransport(), otherCa.getTransport());
+        assertNotSame(first.getTransport(), otherTimeout.getTransport());
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        HttpClient.Builder.builder()
+                .withCaContent(ROOT_CA_PEM)
+                .withMeterRegistry(meterRegistry)
+                .build();
+        assertTrue(HttpClient.getTransportPoolSize() >= 3);
+        assertTrue(meterRegistry.get(Const.METRIC_HTTP_TRANSPORTS).gauge().value() >= 3);
+    }
+
+    @Test
+    void shouldBoundPooledTransports() {
+        HttpClient first = HttpClient.Builder.builder().withTimeout(1000).build();
+        for (int i = 1; i <= HttpClient.MAX_TRANSPORTS * 2; i++) {
+            HttpClient client = HttpClient.Builder.builder().withTimeout(1000 + i).build();
+            assertSame(client.getTransport(), client.getTransport());
+        }
+        assertTrue(HttpClient.getTransportPoolSize() <= HttpClient.MAX_TRANSPORTS);
+
+        // An evicted transport is created again on use
+        assertSame(first.getTransport(), first.getTransport());
+    }
+
     @Test
     void whenCaContentIsEmptyThenThrow() {
         OrasException exception = assertThrows(
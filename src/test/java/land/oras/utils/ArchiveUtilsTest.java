@@ -25,15 +25,28 @@ import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
 import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
+import java.util.TimeZone;
+import java.util.stream.Stream;
 import land.oras.LocalPath;
 import land.oras.exception.OrasException;
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
 import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.X5455_ExtendedTimestamp;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
@@ -255,6 +268,243 @@ class ArchiveUtilsTest {
         assertTrue(Files.exists(temp), "Temp should exist");
     }
 
+    @ParameterizedTest
+    @ValueSource(
+            strings = {
+                Const.DEFAULT_BLOB_MEDIA_TYPE,
+                Const.DEFAULT_BLOB_DIR_MEDIA_TYPE,
+                Const.BLOB_DIR_ZSTD_MEDIA_TYPE
+            })
+    void shouldTarCompressAndDigestInSinglePass(String mediaType) throws Exception {
+        LocalPath directory = LocalPath.of(archiveDir);
+        ArchiveUtils.PackedArchive packed = ArchiveUtils.tarcompress(directory, mediaType, SupportedAlgorithm.SHA256);
+        Path archive = packed.path().getPath();
+        assertEquals(mediaType, packed.path().getMediaType());
+
+        // Same digests as the multi pass approach
+        LocalPath tar = ArchiveUtils.tar(directory);
+        assertEquals(SupportedAlgorithm.SHA256.digest(tar.getPath()), packed.digests().contentDigest());
+        assertEquals(SupportedAlgorithm.SHA256.digest(archive), packed.digests().digest());
+        assertEquals(Files.size(archive), packed.digests().size());
+
+        // Can be extracted
+        Path extracted = ArchiveUtils.uncompressuntar(archive, mediaType);
+        Path extractedDir = extracted.resolve(directory.getPath().getFileName());
+        assertEquals("file1", Files.readString(extractedDir.resolve("dir1").resolve("file1")));
+        assertEquals("file4", Files.readString(extractedDir.resolve("dir2").resolve("dir3").resolve("file4")));
+    }
+
+    @Test
+    void shouldUncompressAndUntarStreamWithContentDigest(@TempDir Path target) throws Exception {
+        LocalPath directory = LocalPath.of(archiveDir);
+        ArchiveUtils.PackedArchive packed =
+                ArchiveUtils.tarcompress(directory, Const.DEFAULT_BLOB_DIR_MEDIA_TYPE, SupportedAlgorithm.SHA256);
+        Files.createDirectories(target.resolve(directory.getPath().getFileName()).resolve("dir1"));
+        Files.writeString(target.resolve(directory.getPath().getFileName()).resolve("dir1").resolve("file1"), "old");
+
+        try (InputStream is = Files.newInputStream(packed.path().getPath())) {
+            ArchiveUtils.uncompressuntar(
+                    is, target, Const.DEFAULT_BLOB_DIR_MEDIA_TYPE, packed.digests().contentDigest());
+        }
+
+        // Staged content promoted and existing files replaced
+        Path extractedDir = target.resolve(directory.getPath().getFileName());
+        assertEquals("file1", Files.readString(extractedDir.resolve("dir1").resolve("file1")));
+        assertEquals("file4", Files.readString(extractedDir.resolve("dir2").resolve("dir3").resolve("file4")));
+        if (OsUtils.isPosixFileSystemSupported()) {
+            assertTrue(Files.isSymbolicLink(extractedDir.resolve("dir1").resolve("file3")), "file3 should be symlink");
+        }
+        try (Stream<Path> entries = Files.list(target)) {
+            assertEquals(List.of(extractedDir), entries.toList());
+        }
+    }
+
+    @Test
+    void shouldNotPromoteStreamWithContentDigestMismatch(@TempDir Path target) throws Exception {
+        LocalPath directory = LocalPath.of(archiveDir);
+        ArchiveUtils.PackedArchive packed =
+                ArchiveUtils.tarcompress(directory, Const.DEFAULT_BLOB_DIR_MEDIA_TYPE, SupportedAlgorithm.SHA256);
+        String wrongDigest = SupportedAlgorithm.SHA256.digest("wrong".getBytes(StandardCharsets.UTF_8));
+
+        try (InputStream is = Files.newInputStream(packed.path().getPath())) {
+            OrasException e = assertThrows(
+                    OrasException.class,
+                    () -> ArchiveUtils.uncompressuntar(is, target, Const.DEFAULT_BLOB_DIR_MEDIA_TYPE, wrongDigest));
+            assertTrue(e.getMessage().contains("Digest mismatch"), "Unexpected: " + e.getMessage());
+        }
+
+        // Nothing extracted into the target
+        try (Stream<Path> entries = Files.list(target)) {
+            assertEquals(0, entries.count());
+        }
+    }
+
+    @Test
+    void shouldUntarAndUnzipWithParallelWriters(@TempDir Path target) throws Exception {
+        LocalPath directory = LocalPath.of(archiveDir);
+        LocalPath tar = ArchiveUtils.tar(directory);
+        LocalPath zip = ArchiveUtils.zip(directory);
+        Path tarTarget = target.resolve("tar");
+        Path zipTarget = target.resolve("zip");
+
+        try (InputStream is = Files.newInputStream(tar.getPath())) {
+            ArchiveUtils.untar(is, tarTarget, 4);
+        }
+        ArchiveUtils.unzip(zip.getPath(), zipTarget, 4);
+
+        for (Path extracted : List.of(tarTarget, zipTarget)) {
+            Path extractedDir = extracted.resolve(directory.getPath().getFileName());
+            assertEquals("file1", Files.readString(extractedDir.resolve("dir1").resolve("file1")));
+            assertEquals("file2", Files.readString(extractedDir.resolve("dir2").resolve("file2")));
+            assertEquals("file4", Files.readString(extractedDir.resolve("dir2").resolve("dir3").resolve("file4")));
+            assertTrue(Files.isDirectory(extractedDir.resolve("empty")), "empty should exist");
+            if (OsUtils.isPosixFileSystemSupported()) {
+                assertTrue(
+                        Files.isSymbolicLink(extractedDir.resolve("dir1").resolve("file3")), "file3 should be symlink");
+            }
+        }
+    }
+
+    @Test
+    void shouldZipWithParallelDeflate(@TempDir Path target) throws Exception {
+        LocalPath directory = LocalPath.of(archiveDir);
+        List<String> expectedNames = zipEntryNames(ArchiveUtils.zip(directory).getPath());
+        LocalPath zip = ArchiveUtils.zip(directory, CompressionOptions.defaults().withThreads(4));
+        assertEquals(expectedNames, zipEntryNames(zip.getPath()));
+        ArchiveUtils.unzip(zip.getPath(), target);
+        Path extractedDir = target.resolve(directory.getPath().getFileName());
+        assertEquals("file1", Files.readString(extractedDir.resolve("dir1").resolve("file1")));
+        assertEquals("file4", Files.readString(extractedDir.resolve("dir2").resolve("dir3").resolve("file4")));
+        assertTrue(Files.isDirectory(extractedDir.resolve("empty")), "empty should exist");
+        if (OsUtils.isPosixFileSystemSupported()) {
+            assertTrue(Files.isSymbolicLink(extractedDir.resolve("dir1").resolve("file3")), "file3 should be symlink");
+        }
+    }
+
+    private static List<String> zipEntryNames(Path zip) throws Exception {
+        try (ZipFile zipFile = ZipFile.builder().setPath(zip).get()) {
+            return Collections.list(zipFile.getEntriesInPhysicalOrder()).stream()
+                    .map(ZipArchiveEntry::getName)
+                    .toList();
+        }
+    }
+
+    @Test
+    void shouldWriteReproducibleArchives(@TempDir Path dir) throws Exception {
+        Path source = dir.resolve("source");
+        Files.createDirectories(source.resolve("dir1").resolve("dir2"));
+        Files.writeString(source.resolve("file1"), "file1");
+        Files.writeString(source.resolve("dir1").resolve("file2"), "file2");
+        LocalPath directory = LocalPath.of(source);
+        Instant time = Instant.parse("2024-01-01T00:00:00Z");
+        CompressionOptions options = CompressionOptions.defaults().withReproducible(true).withReproducibleTime(time);
+        String tar = SupportedAlgorithm.SHA256.digest(ArchiveUtils.tar(directory, true, options).getPath());
+        String zip = SupportedAlgorithm.SHA256.digest(ArchiveUtils.zip(directory, options).getPath());
+        String tarGz = ArchiveUtils.tarcompress(
+                        directory, Const.DEFAULT_BLOB_DIR_MEDIA_TYPE, SupportedAlgorithm.SHA256, options)
+                .digests()
+                .digest();
+
+        Files.setLastModifiedTime(source.resolve("file1"), FileTime.from(Instant.parse("2020-01-01T00:00:00Z")));
+        Files.setLastModifiedTime(source.resolve("dir1"), FileTime.from(Instant.parse("2021-01-01T00:00:00Z")));
+        if (OsUtils.isPosixFileSystemSupported()) {
+            Files.setPosixFilePermissions(source.resolve("file1"), PosixFilePermissions.fromString("rw-rw-r--"));
+        }
+
+        assertEquals(tar, SupportedAlgorithm.SHA256.digest(ArchiveUtils.tar(directory, true, options).getPath()));
+        assertEquals(zip, SupportedAlgorithm.SHA256.digest(ArchiveUtils.zip(directory, options).getPath()));
+        assertEquals(
+                tarGz,
+                ArchiveUtils.tarcompress(
+                                directory, Const.DEFAULT_BLOB_DIR_MEDIA_TYPE, SupportedAlgorithm.SHA256, options)
+                        .digests()
+                        .digest());
+
+        try (TarArchiveInputStream tais =
+                new TarArchiveInputStream(Files.newInputStream(ArchiveUtils.tar(directory, true, options).getPath()))) {
+            TarArchiveEntry entry;
+            while ((entry = tais.getNextEntry()) != null) {
+                assertEquals(time, entry.getLastModifiedTime().toInstant());
+                assertEquals(entry.isDirectory() ? 0755 : 0644, entry.getMode(), entry.getName());
+            }
+        }
+
+        // Options are passed per call, archives written with the defaults keep the file times
+        try (TarArchiveInputStream tais =
+                new TarArchiveInputStream(Files.newInputStream(ArchiveUtils.tar(directory).getPath()))) {
+            TarArchiveEntry entry;
+            while ((entry = tais.getNextEntry()) != null) {
+                if (entry.getName().endsWith("file1")) {
+                    assertEquals(Instant.parse("2020-01-01T00:00:00Z"), entry.getLastModifiedTime().toInstant());
+                }
+            }
+        }
+    }
+
+    @Test
+    void shouldWriteReproducibleZipInAnyTimeZone(@TempDir Path dir) throws Exception {
+        Path source = dir.resolve("source");
+        Files.createDirectories(source);
+        Files.writeString(source.resolve("file1"), "file1");
+        LocalPath directory = LocalPath.of(source);
+        Instant time = Instant.parse("2024-01-01T00:00:00Z");
+        CompressionOptions options = CompressionOptions.defaults().withReproducible(true).withReproducibleTime(time);
+        TimeZone defaultTimeZone = TimeZone.getDefault();
+        try {
+            TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+            Path utc = ArchiveUtils.zip(directory, options).getPath();
+            TimeZone.setDefault(TimeZone.getTimeZone("America/New_York"));
+            Path newYork = ArchiveUtils.zip(directory, options).getPath();
+
+            assertEquals(SupportedAlgorithm.SHA256.digest(utc), SupportedAlgorithm.SHA256.digest(newYork));
+            try (ZipFile zipFile = ZipFile.builder().setPath(newYork).get()) {
+                for (ZipArchiveEntry entry : Collections.list(zipFile.getEntries())) {
+                    X5455_ExtendedTimestamp timestamp =
+                            (X5455_ExtendedTimestamp) entry.getExtraField(X5455_ExtendedTimestamp.HEADER_ID);
+                    assertEquals(time, timestamp.getModifyJavaTime().toInstant(), entry.getName());
+                }
+            }
+        } finally {
+            TimeZone.setDefault(defaultTimeZone);
+        }
+    }
+
+    @Test
+    void shouldTarCompressGzipWithThreads() throws Exception {
+        LocalPath directory = LocalPath.of(archiveDir);
+        CompressionOptions options = CompressionOptions.defaults().withThreads(4);
+        assertEquals(4, options.threads());
+        Path archive = ArchiveUtils.compress(ArchiveUtils.tar(directory), Const.DEFAULT_BLOB_DIR_MEDIA_TYPE, options)
+                .getPath();
+        Path extracted = ArchiveUtils.uncompressuntar(archive, Const.DEFAULT_BLOB_DIR_MEDIA_TYPE);
+        Path extractedDir = extracted.resolve(directory.getPath().getFileName());
+        assertEquals("file1", Files.readString(extractedDir.resolve("dir1").resolve("file1")));
+        assertEquals("file4", Files.readString(extractedDir.resolve("dir2").resolve("dir3").resolve("file4")));
+    }
+
+    @Test
+    void shouldTarCompressZstdWithWorkersLevelAndLongDistanceMatching() throws Exception {
+        LocalPath directory = LocalPath.of(archiveDir);
+        CompressionOptions options = CompressionOptions.defaults()
+                .withThreads(2)
+                .withLevel(19)
+                .withLongDistanceMatching(true);
+        LocalPath archive = ArchiveUtils.compress(ArchiveUtils.tar(directory), Const.BLOB_DIR_ZSTD_MEDIA_TYPE, options);
+        assertTrue(archive.getPath().toString().endsWith(".tar.zst"), "Archive should have zst extension");
+        Path extracted = ArchiveUtils.uncompressuntar(archive.getPath(), Const.BLOB_DIR_ZSTD_MEDIA_TYPE);
+        Path extractedDir = extracted.resolve(directory.getPath().getFileName());
+        assertEquals("file1", Files.readString(extractedDir.resolve("dir1").resolve("file1")));
+        assertEquals("file4", Files.readString(extractedDir.resolve("dir2").resolve("dir3").resolve("file4")));
+    }
+
+    @Test
+    void shouldNotTarCompressZipInSinglePass() {
+        LocalPath directory = LocalPath.of(archiveDir);
+        assertThrows(
+                OrasException.class,
+                () -> ArchiveUtils.tarcompress(directory, Const.ZIP_MEDIA_TYPE, SupportedAlgorithm.SHA256));
+    }
+
     @ParameterizedTest
     @ValueSource(strings = {"jenkins-chart.tgz", "jenkins-sources.tar.gz", "flux-manifests.tgz"})
     @Disabled("https://issues.apache.org/jira/browse/COMPRESS-705")
@@ -0,0 +1,184 @@
+/*-
+ * =LICENSE=
+ * ORAS Java SDK
+ * ===
+ * Copyright (C) 2024 - 2026 ORAS
+ * ===
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =LICENSEEND=
+ */
+
+package land.oras.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.atomic.AtomicInteger;
+import land.oras.LayoutRef;
+import land.oras.LocalPath;
+import land.oras.OCILayout;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+import org.junit.jupiter.api.parallel.Isolated;
+import org.junit.jupiter.api.parallel.ResourceLock;
+
+/**
+ * Isolated since some tests enable the JVM wide digest cache
+ */
+@Isolated
+@Execution(ExecutionMode.CONCURRENT)
+class DigestCacheTest {
+
+    @TempDir
+    private Path dir;
+
+    @Test
+    void shouldReuseDigestOfUnchangedFile() throws IOException {
+        Path file = dir.resolve("unchanged.txt");
+        Files.writeString(file, "hello");
+        DigestCache cache = new DigestCache(null);
+        AtomicInteger computed = new AtomicInteger();
+
+        String first = cache.digest(file, "sha256", () -> count(computed, file));
+        String second = cache.digest(file, "sha256", () -> count(computed, file));
+
+        assertEquals("sha256:2cf24dba5fb0a30e26e83b2ac5b9e29e1b161e5c1fa7425e73043362938b9824", first);
+        assertEquals(first, second);
+        assertEquals(1, computed.get());
+    }
+
+    @Test
+    void shouldInvalidateOnAttributeChange() throws IOException {
+        Path file = dir.resolve("changed.txt");
+        Files.writeString(file, "hello");
+        FileTime modified = Files.getLastModifiedTime(file);
+        DigestCache cache = new DigestCache(null);
+        AtomicInteger computed = new AtomicInteger();
+
+        cache.digest(file, "sha256", () -> count(computed, file));
+
+        // Same size, only the modification time differs
+        Files.writeString(file, "world");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(modified.toMillis() + 1000));
+        String digest = cache.digest(file, "sha256", () -> count(computed, file));
+
+        assertEquals(SupportedAlgorithm.SHA256.digest("world".getBytes()), digest);
+        assertEquals(2, computed.get());
+
+        // Another algorithm is a distinct entry
+        cache.digest(file, "sha512", () -> SupportedAlgorithm.SHA512.digest("world".getBytes()));
+        assertEquals(digest, cache.digest(file, "sha256", () -> count(computed, file)));
+        assertEquals(2, computed.get());
+    }
+
+    @Test
+    void shouldPersistEntriesOnDisk() throws IOException {
+        Path file = dir.resolve("persisted.txt");
+        Files.writeString(file, "hello");
+        Path store = dir.resolve("store");
+        AtomicInteger computed = new AtomicInteger();
+
+        String digest = new DigestCache(store).digest(file, "sha256", () -> count(computed, file));
+        String reloaded = new DigestCache(store).digest(file, "sha256", () -> count(computed, file));
+
+        assertEquals(digest, reloaded);
+        assertEquals(1, computed.get());
+    }
+
+    @Test
+    void shouldNotPersistTemporaryArchives() throws IOException {
+        Path file = ArchiveUtils.createTempTar();
+        Path store = dir.resolve("temporary-store");
+        try {
+            Files.writeString(file, "hello");
+            new DigestCache(store).digest(file, "sha256", () -> count(new AtomicInteger(), file));
+            assertFalse(Files.exists(store));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    @ResourceLock("digest-cache")
+    void shouldNotUseCacheToVerifyContent() throws IOException {
+        Path file = dir.resolve("tampered.txt");
+        Files.writeString(file, "hello");
+        FileTime modified = Files.getLastModifiedTime(file);
+        DigestCache.enable();
+        try {
+            String cached = SupportedAlgorithm.SHA256.cachedDigest(file);
+
+            // Same size and modification time, only the content differs
+            Files.writeString(file, "world");
+            Files.setLastModifiedTime(file, modified);
+
+            assertEquals(cached, SupportedAlgorithm.SHA256.cachedDigest(file));
+            assertEquals(SupportedAlgorithm.SHA256.digest("world".getBytes()), SupportedAlgorithm.SHA256.digest(file));
+        } finally {
+            DigestCache.disable();
+        }
+    }
+
+    @Test
+    @ResourceLock("digest-cache")
+    void shouldHashEachPushedFileOnce() throws IOException {
+        Path layout = dir.resolve("layout");
+        LocalPath[] files = new LocalPath[3];
+        for (int i = 0; i < files.length; i++) {
+            Path file = dir.resolve("file%d.txt".formatted(i));
+            Files.writeString(file, "content%d".formatted(i));
+            files[i] = LocalPath.of(file, "text/plain");
+        }
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        DigestCache.setMeterRegistry(meterRegistry);
+        DigestCache.enable();
+        try {
+            OCILayout ociLayout = OCILayout.Builder.builder().defaults(layout).build();
+            ociLayout.pushArtifact(LayoutRef.parse("%s:latest".formatted(layout)), files);
+
+            // A single digest pass per file, a second one would be served from the cache
+            assertEquals(files.length, cacheGets(meterRegistry, "miss"));
+            assertEquals(0, cacheGets(meterRegistry, "hit"));
+        } finally {
+            DigestCache.disable();
+            DigestCache.setMeterRegistry(Metrics.globalRegistry);
+        }
+    }
+
+    private static long cacheGets(MeterRegistry meterRegistry, String result) {
+        return (long) meterRegistry
+                .get("cache.gets")
+                .tag("cache", "land.oras.digest.cache")
+                .tag("result", result)
+                .functionCounter()
+                .count();
+    }
+
+    private static String count(AtomicInteger counter, Path file) {
+        counter.incrementAndGet();
+        try {
+            return SupportedAlgorithm.SHA256.digest(Files.readAllBytes(file));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
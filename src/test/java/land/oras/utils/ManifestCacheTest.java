@@ -0,0 +1,118 @@
+/*-
+ * =LICENSE=
+ * ORAS Java SDK
+ * ===
+ * Copyright (C) 2024 - 2026 ORAS
+ * ===
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =LICENSEEND=
+ */
+
+package land.oras.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+import land.oras.Manifest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+@Execution(ExecutionMode.CONCURRENT)
+class ManifestCacheTest {
+
+    @TempDir
+    private Path dir;
+
+    private static final String JSON = "{\"schemaVersion\":2}";
+
+    private static final ManifestCache.Key KEY = new ManifestCache.Key(
+            "localhost:5000",
+            "library/test",
+            SupportedAlgorithm.SHA256.digest(JSON.getBytes(StandardCharsets.UTF_8)),
+            "BASIC:user");
+
+    @Test
+    void shouldCacheContentByRepositoryAndDigest() {
+        ManifestCache cache = new ManifestCache(null);
+        assertNull(cache.get(KEY));
+        cache.put(KEY, Const.DEFAULT_MANIFEST_MEDIA_TYPE, JSON);
+
+        ManifestCache.Entry entry = cache.get(KEY);
+        assertNotNull(entry);
+        assertEquals(Const.DEFAULT_MANIFEST_MEDIA_TYPE, entry.mediaType());
+        assertEquals(JSON, entry.json());
+        assertEquals(JSON.length(), entry.size());
+        assertNull(entry.parsed());
+
+        // Another repository is a distinct entry
+        assertNull(cache.get(new ManifestCache.Key(KEY.registry(), "library/other", KEY.digest(), KEY.identity())));
+
+        // Other credentials are a distinct entry
+        assertNull(cache.get(new ManifestCache.Key(KEY.registry(), KEY.repository(), KEY.digest(), "BASIC:other")));
+
+        cache.invalidate(KEY);
+        assertNull(cache.get(KEY));
+    }
+
+    @Test
+    void shouldAttachParsedContentOnlyToCachedContent() {
+        ManifestCache cache = new ManifestCache(null);
+        Manifest manifest = Manifest.empty();
+        cache.put(KEY, manifest);
+        assertNull(cache.get(KEY));
+
+        cache.put(KEY, Const.DEFAULT_MANIFEST_MEDIA_TYPE, JSON);
+        cache.put(KEY, manifest);
+        assertSame(manifest, cache.get(KEY).parsed());
+
+        // Content is not replaced once cached
+        cache.put(KEY, Const.DEFAULT_MANIFEST_MEDIA_TYPE, JSON);
+        assertSame(manifest, cache.get(KEY).parsed());
+    }
+
+    @Test
+    void shouldPersistEntriesOnDisk() {
+        Path store = dir.resolve("store");
+        new ManifestCache(store).put(KEY, Const.DEFAULT_MANIFEST_MEDIA_TYPE, JSON);
+
+        ManifestCache.Entry entry = new ManifestCache(store).get(KEY);
+        assertNotNull(entry);
+        assertEquals(JSON, entry.json());
+        assertEquals(Const.DEFAULT_MANIFEST_MEDIA_TYPE, entry.mediaType());
+
+        ManifestCache cache = new ManifestCache(store);
+        cache.invalidate(KEY);
+        assertNull(new ManifestCache(store).get(KEY));
+    }
+
+    @Test
+    void shouldIgnorePersistedEntryNotMatchingDigest() throws IOException {
+        Path store = dir.resolve("tampered");
+        new ManifestCache(store).put(KEY, Const.DEFAULT_MANIFEST_MEDIA_TYPE, JSON);
+        try (Stream<Path> files = Files.list(store)) {
+            for (Path file : files.toList()) {
+                Files.writeString(file, Files.readString(file).replace("schemaVersion", "tampered"));
+            }
+        }
+        assertNull(new ManifestCache(store).get(KEY));
+    }
+}
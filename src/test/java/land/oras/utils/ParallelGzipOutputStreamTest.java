@@ -0,0 +1,85 @@
+/*-
+ * =LICENSE=
+ * ORAS Java SDK
+ * ===
+ * Copyright (C) 2024 - 2026 ORAS
+ * ===
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =LICENSEEND=
+ */
+
+package land.oras.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+@Execution(ExecutionMode.CONCURRENT)
+class ParallelGzipOutputStreamTest {
+
+    @Test
+    void shouldWriteConcatenatedMembersReadableByStandardReaders() throws IOException {
+        byte[] data = new byte[300_000];
+        Random random = new Random(42);
+        // Mix of compressible and random content
+        for (int i = 0; i < data.length; i += 2) {
+            data[i] = (byte) random.nextInt();
+        }
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (ParallelGzipOutputStream gzos = new ParallelGzipOutputStream(compressed, 4, 16 * 1024)) {
+            gzos.write(data, 0, 1000);
+            gzos.write(data[1000]);
+            gzos.write(data, 1001, data.length - 1001);
+        }
+
+        try (InputStream is = new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray()))) {
+            assertArrayEquals(data, is.readAllBytes());
+        }
+        try (InputStream is = new GzipCompressorInputStream(new ByteArrayInputStream(compressed.toByteArray()), true)) {
+            assertArrayEquals(data, is.readAllBytes());
+        }
+    }
+
+    @Test
+    void shouldWriteValidGzipForEmptyStream() throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        new ParallelGzipOutputStream(compressed, 2).close();
+
+        try (InputStream is = new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray()))) {
+            assertEquals(0, is.readAllBytes().length);
+        }
+    }
+
+    @Test
+    void shouldRejectInvalidThreads() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertThrows(IllegalArgumentException.class, () -> new ParallelGzipOutputStream(out, 0));
+        assertThrows(IllegalArgumentException.class, () -> CompressionOptions.defaults().withThreads(0));
+        assertThrows(IOException.class, () -> {
+            ParallelGzipOutputStream gzos = new ParallelGzipOutputStream(out, 1);
+            gzos.close();
+            gzos.write(1);
+        });
+    }
+}
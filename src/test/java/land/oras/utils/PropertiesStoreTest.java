@@ -0,0 +1,75 @@
+/*-
+ * =LICENSE=
+ * ORAS Java SDK
+ * ===
+ * Copyright (C) 2024 - 2026 ORAS
+ * ===
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =LICENSEEND=
+ */
+package land.oras.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Properties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+@Execution(ExecutionMode.CONCURRENT)
+class PropertiesStoreTest {
+
+    @TempDir
+    private Path dir;
+
+    @Test
+    void shouldStoreLoadAndDelete() throws IOException {
+        PropertiesStore store = new PropertiesStore(dir.resolve("store"), ".session");
+        Properties properties = new Properties();
+        properties.setProperty("location", "/v2/library/test/blobs/uploads/1");
+
+        assertNull(store.load("key"));
+        store.store("key", properties);
+        assertEquals(properties, store.load("key"));
+        assertTrue(store.file("key").getFileName().toString().endsWith(".session"));
+
+        store.delete("key");
+        assertNull(store.load("key"));
+    }
+
+    @Test
+    void shouldBoundPersistedEntries() throws IOException {
+        PropertiesStore store = new PropertiesStore(dir.resolve("bounded-store"), "", 2);
+        Properties properties = new Properties();
+        store.store("first", properties);
+        store.store("second", properties);
+        Files.setLastModifiedTime(store.file("first"), FileTime.fromMillis(System.currentTimeMillis() - 60_000));
+        Files.setLastModifiedTime(store.file("second"), FileTime.fromMillis(System.currentTimeMillis() - 30_000));
+
+        // Loading marks the first entry as recently used, the second is pruned instead
+        assertNotNull(store.load("first"));
+        store.store("third", properties);
+
+        assertNotNull(store.load("first"));
+        assertNull(store.load("second"));
+        assertNotNull(store.load("third"));
+    }
+}
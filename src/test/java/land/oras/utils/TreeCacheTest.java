@@ -0,0 +1,136 @@
+/*-
+ * =LICENSE=
+ * ORAS Java SDK
+ * ===
+ * Copyright (C) 2024 - 2026 ORAS
+ * ===
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =LICENSEEND=
+ */
+package land.oras.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import land.oras.LocalPath;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+@Execution(ExecutionMode.CONCURRENT)
+class TreeCacheTest {
+
+    @TempDir
+    private Path dir;
+
+    private static final TreeCache.Archive ARCHIVE = new TreeCache.Archive(
+            SupportedAlgorithm.SHA256.digest("archive".getBytes()),
+            SupportedAlgorithm.SHA256.digest("content".getBytes()),
+            42);
+
+    @Test
+    void shouldReuseArchiveOfUnchangedDirectory() throws IOException {
+        LocalPath directory = directory("unchanged");
+        TreeCache cache = new TreeCache(null);
+
+        TreeCache.Snapshot snapshot = cache.snapshot(directory, SupportedAlgorithm.SHA256);
+        assertNotNull(snapshot);
+        assertNull(cache.get(snapshot));
+        cache.put(snapshot, ARCHIVE);
+
+        assertEquals(ARCHIVE, cache.get(cache.snapshot(directory, SupportedAlgorithm.SHA256)));
+
+        // Another media type or algorithm is a distinct entry
+        assertNull(cache.get(cache.snapshot(
+                LocalPath.of(directory.getPath(), Const.BLOB_DIR_ZSTD_MEDIA_TYPE), SupportedAlgorithm.SHA256)));
+        assertNull(cache.get(cache.snapshot(directory, SupportedAlgorithm.SHA512)));
+    }
+
+    @Test
+    void shouldInvalidateOnRecordChange() throws IOException {
+        LocalPath directory = directory("changed");
+        Path file = directory.getPath().resolve("sub").resolve("file.txt");
+        TreeCache cache = new TreeCache(null);
+        cache.put(cache.snapshot(directory, SupportedAlgorithm.SHA256), ARCHIVE);
+
+        // Same size, only the modification time differs
+        FileTime modified = Files.getLastModifiedTime(file);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(modified.toMillis() + 1000));
+        assertNull(cache.get(cache.snapshot(directory, SupportedAlgorithm.SHA256)));
+
+        // Restored
+        Files.setLastModifiedTime(file, modified);
+        assertEquals(ARCHIVE, cache.get(cache.snapshot(directory, SupportedAlgorithm.SHA256)));
+
+        // New symlink
+        if (OsUtils.isPosixFileSystemSupported()) {
+            Files.createSymbolicLink(directory.getPath().resolve("sub").resolve("link"), Path.of("file.txt"));
+            assertNull(cache.get(cache.snapshot(directory, SupportedAlgorithm.SHA256)));
+        }
+    }
+
+    @Test
+    void shouldNotCacheDirectoryChangedWhilePacking() throws IOException {
+        LocalPath directory = directory("packing");
+        TreeCache cache = new TreeCache(null);
+
+        TreeCache.Snapshot snapshot = cache.snapshot(directory, SupportedAlgorithm.SHA256);
+        assertNotNull(snapshot);
+        Files.writeString(directory.getPath().resolve("added.txt"), "added");
+        cache.put(snapshot, ARCHIVE);
+
+        assertNull(cache.get(snapshot));
+    }
+
+    @Test
+    void shouldPersistEntriesOnDisk() throws IOException {
+        LocalPath directory = directory("persisted");
+        Path store = dir.resolve("store");
+
+        TreeCache cache = new TreeCache(store);
+        cache.put(cache.snapshot(directory, SupportedAlgorithm.SHA256), ARCHIVE);
+
+        TreeCache reloaded = new TreeCache(store);
+        assertEquals(ARCHIVE, reloaded.get(reloaded.snapshot(directory, SupportedAlgorithm.SHA256)));
+    }
+
+    @Test
+    void shouldKeyEntriesByEntryPrefix() throws IOException {
+        LocalPath directory = directory("prefixed");
+        Path relative = Path.of("").toAbsolutePath().relativize(directory.getPath());
+        Path store = dir.resolve("prefixed-store");
+        TreeCache cache = new TreeCache(store);
+        cache.put(cache.snapshot(directory, SupportedAlgorithm.SHA256), ARCHIVE);
+
+        // Same directory, but the archive entries are named after the relative path
+        LocalPath relativeDirectory = LocalPath.of(relative, Const.DEFAULT_BLOB_DIR_MEDIA_TYPE);
+        assertNull(cache.get(cache.snapshot(relativeDirectory, SupportedAlgorithm.SHA256)));
+        TreeCache reloaded = new TreeCache(store);
+        assertNull(reloaded.get(reloaded.snapshot(relativeDirectory, SupportedAlgorithm.SHA256)));
+        assertEquals(ARCHIVE, reloaded.get(reloaded.snapshot(directory, SupportedAlgorithm.SHA256)));
+    }
+
+    private LocalPath directory(String name) throws IOException {
+        Path directory = dir.resolve(name);
+        Files.createDirectories(directory.resolve("sub"));
+        Files.writeString(directory.resolve("sub").resolve("file.txt"), "hello");
+        Files.writeString(directory.resolve("root.txt"), "root");
+        return LocalPath.of(directory, Const.DEFAULT_BLOB_DIR_MEDIA_TYPE);
+    }
+}